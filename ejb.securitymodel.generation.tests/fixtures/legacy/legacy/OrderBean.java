@@ -0,0 +1,13 @@
+package legacy;
+
+import javax.annotation.security.PermitAll;
+import javax.ejb.Stateless;
+
+//same simple name as the bean of the orders application
+@Stateless
+@PermitAll
+public class OrderBean {
+	
+	public void cancel(long id){
+	}
+}
@@ -0,0 +1,16 @@
+package mixed;
+
+import javax.annotation.security.RolesAllowed;
+import javax.ejb.Stateless;
+
+import app.Roles;
+
+@Stateless
+//constants and literals in one array, each element resolved on its own
+@RolesAllowed({ Roles.AUDITOR, "trainee" })
+public class AuditBean {
+	
+	@RolesAllowed(value = { "archivist", Roles.SUPERVISOR, app.Roles.CLERK })
+	public void archive(long id){
+	}
+}
@@ -0,0 +1,24 @@
+package app;
+
+import javax.annotation.security.DeclareRoles;
+import javax.annotation.security.PermitAll;
+import javax.annotation.security.RolesAllowed;
+
+@DeclareRoles(Roles.AUDITOR)
+@RolesAllowed(Roles.AUDITOR)
+public abstract class BaseService {
+	
+	public void audit(String entry){
+	}
+	
+	@PermitAll
+	public String ping(){
+		return "pong";
+	}
+	
+	public void overridden(){
+	}
+	
+	protected void log(String message){
+	}
+}
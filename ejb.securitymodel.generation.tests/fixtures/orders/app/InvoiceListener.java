@@ -0,0 +1,12 @@
+package app;
+
+import javax.annotation.security.RolesAllowed;
+import javax.ejb.MessageDriven;
+
+@MessageDriven
+public class InvoiceListener {
+	
+	@RolesAllowed("clerk")
+	public void onMessage(Object message){
+	}
+}
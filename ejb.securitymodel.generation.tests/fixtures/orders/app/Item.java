@@ -0,0 +1,8 @@
+package app;
+
+public class Item {
+	
+	public String getSku(){
+		return "";
+	}
+}
@@ -0,0 +1,47 @@
+package app;
+
+import java.util.List;
+
+import javax.annotation.security.DeclareRoles;
+import javax.annotation.security.DenyAll;
+import javax.annotation.security.PermitAll;
+import javax.annotation.security.RolesAllowed;
+import javax.ejb.Asynchronous;
+import javax.ejb.Stateless;
+
+@Stateless
+@DeclareRoles({ Roles.CLERK, Roles.MANAGER })
+@RolesAllowed(Roles.CLERK)
+public class OrderBean extends BaseService {
+	
+	public void order(Item item){
+	}
+	
+	public void order(Item item, int quantity){
+	}
+	
+	@RolesAllowed({ Roles.SUPERVISOR })
+	public void cancel(long id){
+	}
+	
+	@DenyAll
+	@Override
+	public void overridden(){
+	}
+	
+	@Asynchronous
+	public void notifyCustomer(String message){
+	}
+	
+	private void validate(Item item){
+	}
+	
+	@Stateless
+	public static class ArchiveBean {
+		
+		@PermitAll
+		public List<String> list(){
+			return null;
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package app;
+
+import javax.annotation.security.PermitAll;
+import javax.annotation.security.RunAs;
+import javax.ejb.Singleton;
+
+@Singleton
+@RunAs(Roles.MANAGER)
+@PermitAll
+public class ReportBean {
+	
+	public String[] report(int[] years){
+		return new String[0];
+	}
+}
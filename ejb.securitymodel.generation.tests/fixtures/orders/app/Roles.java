@@ -0,0 +1,13 @@
+package app;
+
+public final class Roles {
+	
+	public static final String CLERK = "clerk";
+	public static final String MANAGER = "manager";
+	public static final String AUDITOR = "auditor";
+	//refers to another constant, resolved through it in the sources
+	public static final String SUPERVISOR = Roles.MANAGER;
+	
+	private Roles(){
+	}
+}
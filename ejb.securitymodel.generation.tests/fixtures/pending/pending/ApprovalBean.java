@@ -0,0 +1,13 @@
+package pending;
+
+import javax.annotation.security.RolesAllowed;
+import javax.ejb.Stateless;
+
+@Stateless
+public class ApprovalBean {
+	
+	//Approvals is missing until the test adds it
+	@RolesAllowed(Approvals.APPROVER)
+	public void approve(long id){
+	}
+}
@@ -0,0 +1,144 @@
+package ejb.securitymodel.generation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the facts read from the compiled classes of the <code>orders</code> fixture, which have to equal the facts of its sources.
+ *
+ */
+public class ClassFileScannerTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private File classes;
+	private List<BeanFacts> beans;
+	
+	@Before
+	public void scanFixture() throws IOException{
+		classes = Fixtures.compile(folder.newFolder(), "stubs", "orders");
+		beans = new ClassFileScanner().scan(Collections.singletonList(classes), new NullProgressMonitor());
+	}
+	
+	@Test
+	public void beansAreFoundInNameOrder(){
+		List<String> names = new ArrayList<>();
+		for(BeanFacts facts : beans){
+			names.add(facts.getQualifiedName());
+		}
+		//the abstract base class, the constants and the parameter type aren't beans
+		assertEquals(Arrays.asList("app.InvoiceListener", "app.OrderBean", "app.OrderBean.ArchiveBean", "app.ReportBean"), names);
+		assertEquals("ArchiveBean", beans.get(2).getName());
+		assertEquals(JavaBeanType.MESSAGEDRIVEN, beans.get(0).getBeanType());
+	}
+	
+	@Test
+	public void beanInheritsMethodsOfItsBaseClass(){
+		BeanFacts orderBean = beans.get(1);
+		assertArrayEquals(new String[]{ "auditor" }, getMethod(orderBean, "audit(String)").getAnnotations().getValues(SecurityAnnotation.ROLES_ALLOWED));
+		assertTrue(getMethod(orderBean, "ping()").getAnnotations().has(SecurityAnnotation.PERMIT_ALL));
+		assertEquals("String", getMethod(orderBean, "ping()").getReturnType());
+		//the override keeps its own annotations only
+		AnnotationSnapshot overridden = getMethod(orderBean, "overridden()").getAnnotations();
+		assertTrue(overridden.has(SecurityAnnotation.DENY_ALL));
+		assertFalse(overridden.has(SecurityAnnotation.ROLES_ALLOWED));
+		assertArrayEquals(new String[]{ "clerk", "manager", "auditor" }, orderBean.getClassAnnotations().getValues(SecurityAnnotation.DECLARE_ROLES));
+		//protected methods aren't business methods
+		assertFalse(hasMethod(orderBean, "log(String)"));
+	}
+	
+	@Test
+	public void constantsAreInlined(){
+		//a constant referring to another constant
+		assertArrayEquals(new String[]{ "manager" }, getMethod(beans.get(1), "cancel(long)").getAnnotations().getValues(SecurityAnnotation.ROLES_ALLOWED));
+		assertArrayEquals(new String[]{ "manager" }, beans.get(3).getClassAnnotations().getValues(SecurityAnnotation.RUN_AS));
+	}
+	
+	@Test
+	public void archiveGivesSameFactsAsDirectory() throws IOException{
+		File archive = new File(folder.newFolder(), "orders.jar");
+		try(ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(archive.toPath()))){
+			for(Map.Entry<String, File> entry : getClassFiles(classes, "", new TreeMap<String, File>()).entrySet()){
+				out.putNextEntry(new ZipEntry(entry.getKey()));
+				Files.copy(entry.getValue().toPath(), (OutputStream)out);
+				out.closeEntry();
+			}
+		}
+		List<BeanFacts> archiveBeans = new ClassFileScanner().scan(Collections.singletonList(archive), new NullProgressMonitor());
+		assertEquals(describe(beans), describe(archiveBeans));
+	}
+	
+	private static Map<String, File> getClassFiles(File dir, String prefix, Map<String, File> classFiles){
+		for(File file : dir.listFiles()){
+			if(file.isDirectory()){
+				getClassFiles(file, prefix + file.getName() + "/", classFiles);
+			}
+			else{
+				classFiles.put(prefix + file.getName(), file);
+			}
+		}
+		return classFiles;
+	}
+	
+	/**
+	 * @return one line per bean and method, with the annotations and their values
+	 */
+	private static List<String> describe(List<BeanFacts> beans){
+		List<String> lines = new ArrayList<>();
+		for(BeanFacts facts : beans){
+			lines.add(facts.getQualifiedName() + " " + describe(facts.getClassAnnotations()));
+			for(BeanFacts.MethodFacts method : facts.getMethods()){
+				lines.add("  " + method.getKey() + ":" + method.getReturnType() + " " + describe(method.getAnnotations()));
+			}
+		}
+		return lines;
+	}
+	
+	private static String describe(AnnotationSnapshot annotations){
+		StringBuilder description = new StringBuilder();
+		for(SecurityAnnotation annotation : annotations.getAnnotations()){
+			description.append(annotation).append(Arrays.toString(annotations.getValues(annotation)));
+		}
+		return description.toString();
+	}
+	
+	private static boolean hasMethod(BeanFacts facts, String key){
+		for(BeanFacts.MethodFacts method : facts.getMethods()){
+			if(method.getKey().equals(key)){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static BeanFacts.MethodFacts getMethod(BeanFacts facts, String key){
+		for(BeanFacts.MethodFacts method : facts.getMethods()){
+			if(method.getKey().equals(key)){
+				return method;
+			}
+		}
+		throw new AssertionError("No method " + key + " in " + facts.getName());
+	}
+}
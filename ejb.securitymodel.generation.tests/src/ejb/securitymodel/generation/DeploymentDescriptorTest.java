@@ -0,0 +1,184 @@
+package ejb.securitymodel.generation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the override rules of the deployment descriptor merge, with the descriptor of the <code>descriptors</code> fixture
+ * merged over facts like the ones read from the <code>orders</code> fixture.
+ *
+ */
+public class DeploymentDescriptorTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private DeploymentDescriptor descriptor;
+	
+	@Before
+	public void readDescriptor() throws IOException{
+		descriptor = new DeploymentDescriptor();
+		try(InputStream in = new FileInputStream(Fixtures.getFile("descriptors/META-INF/" + DeploymentDescriptor.FILE_NAME))){
+			descriptor.read(in);
+		}
+		assertEquals(1, descriptor.getDescriptorCount());
+	}
+	
+	@Test
+	public void permissionOfAllMethodsReplacesAnnotations(){
+		BeanFacts merged = descriptor.merge(orderBean());
+		AnnotationSnapshot order = getMethod(merged, "order(Item)").getAnnotations();
+		assertFalse(order.has(SecurityAnnotation.PERMIT_ALL));
+		assertTrue(order.has(SecurityAnnotation.ROLES_ALLOWED));
+		assertArrayEquals(new String[]{ "clerk" }, order.getValues(SecurityAnnotation.ROLES_ALLOWED));
+	}
+	
+	@Test
+	public void permissionsOfAllMatchingMethodElementsAreJoined(){
+		BeanFacts merged = descriptor.merge(orderBean());
+		//named with its parameters, the method gets the permission of all methods as well
+		assertArrayEquals(new String[]{ "clerk", "manager" },
+				getMethod(merged, "order(Item,int)").getAnnotations().getValues(SecurityAnnotation.ROLES_ALLOWED));
+	}
+	
+	@Test
+	public void excludeListDeniesRegardlessOfPermissions(){
+		AnnotationSnapshot cancel = getMethod(descriptor.merge(orderBean()), "cancel(long)").getAnnotations();
+		assertTrue(cancel.has(SecurityAnnotation.DENY_ALL));
+		assertFalse(cancel.has(SecurityAnnotation.ROLES_ALLOWED));
+		assertNull(cancel.getValues(SecurityAnnotation.ROLES_ALLOWED));
+	}
+	
+	@Test
+	public void uncheckedPermitsAll(){
+		//no ejb-class given, the bean is named by its default ejb-name
+		BeanFacts merged = descriptor.merge(reportBean());
+		AnnotationSnapshot report = getMethod(merged, "report(int[])").getAnnotations();
+		assertTrue(report.has(SecurityAnnotation.PERMIT_ALL));
+		assertFalse(report.has(SecurityAnnotation.ROLES_ALLOWED));
+	}
+	
+	@Test
+	public void methodsNotNamedKeepTheirAnnotations(){
+		BeanFacts facts = reportBean();
+		BeanFacts.MethodFacts archive = getMethod(descriptor.merge(facts), "archive()");
+		assertSame(getMethod(facts, "archive()"), archive);
+		assertTrue(archive.getAnnotations().has(SecurityAnnotation.DENY_ALL));
+	}
+	
+	@Test
+	public void runAsReplacesAnnotation(){
+		AnnotationSnapshot classAnnotations = descriptor.merge(orderBean()).getClassAnnotations();
+		assertArrayEquals(new String[]{ "system" }, classAnnotations.getValues(SecurityAnnotation.RUN_AS));
+	}
+	
+	@Test
+	public void securityRolesAreDeclaredByAllBeans(){
+		assertEquals(Arrays.asList("clerk", "manager", "auditor"),
+				Arrays.asList(descriptor.merge(orderBean()).getClassAnnotations().getValues(SecurityAnnotation.DECLARE_ROLES)));
+		
+		//beans the descriptor doesn't name keep their methods
+		BeanFacts listener = new BeanFacts("InvoiceListener", "app.InvoiceListener", annotations(SecurityAnnotation.MESSAGEDRIVEN, null),
+				Collections.singletonList(method("onMessage", new String[]{ "Object" }, annotations(SecurityAnnotation.ROLES_ALLOWED, "clerk"))),
+				Collections.<BeanFacts>emptyList());
+		BeanFacts merged = descriptor.merge(listener);
+		assertArrayEquals(new String[]{ "auditor" }, merged.getClassAnnotations().getValues(SecurityAnnotation.DECLARE_ROLES));
+		assertSame(listener.getMethods().get(0), merged.getMethods().get(0));
+	}
+	
+	@Test
+	public void beanIsNamedByItsClass(){
+		//same simple name as the bean named Orders, but another class
+		BeanFacts other = new BeanFacts("OrderBean", "legacy.OrderBean", annotations(SecurityAnnotation.STATELESS, null),
+				Collections.singletonList(method("cancel", new String[]{ "long" }, AnnotationSnapshot.NONE)),
+				Collections.<BeanFacts>emptyList());
+		BeanFacts merged = descriptor.merge(other);
+		assertFalse(getMethod(merged, "cancel(long)").getAnnotations().has(SecurityAnnotation.DENY_ALL));
+		assertNull(merged.getClassAnnotations().getValues(SecurityAnnotation.RUN_AS));
+	}
+	
+	@Test
+	public void descriptorOfCompiledApplicationIsMerged() throws IOException{
+		File classes = Fixtures.compile(folder.newFolder(), "stubs", "orders");
+		ModelGenerator generator = new ModelGenerator();
+		generator.setIndexPermissions(true);
+		generator.generateModel(Arrays.asList(classes, Fixtures.getFile("descriptors")), new File(folder.newFolder(), OutputFormat.XMI.getFileName()),
+				new NullProgressMonitor());
+		PermissionIndex index = generator.getPermissionIndex();
+		assertEquals(PermissionIndex.Access.DENY_ALL, index.getOperation("app.OrderBean.cancel(long)").getAccess());
+		assertEquals(new HashSet<>(Arrays.asList("clerk", "manager")), index.getOperation("app.OrderBean.order(Item,int)").getRoles());
+		assertEquals("system", index.getOperation("app.OrderBean.order(Item)").getRunAs());
+		assertEquals(PermissionIndex.Access.PERMIT_ALL, index.getOperation("app.ReportBean.report(int[])").getAccess());
+		//the annotations of beans the descriptor doesn't name are kept
+		assertEquals(Collections.singleton("clerk"), index.getOperation("app.InvoiceListener.onMessage(Object)").getRoles());
+	}
+	
+	/**
+	 * @return facts of the OrderBean of the orders fixture
+	 */
+	private static BeanFacts orderBean(){
+		Map<SecurityAnnotation, String[]> values = new EnumMap<>(SecurityAnnotation.class);
+		values.put(SecurityAnnotation.DECLARE_ROLES, new String[]{ "clerk", "manager" });
+		values.put(SecurityAnnotation.ROLES_ALLOWED, new String[]{ "clerk" });
+		values.put(SecurityAnnotation.RUN_AS, new String[]{ "manager" });
+		AnnotationSnapshot classAnnotations = new AnnotationSnapshot(EnumSet.of(SecurityAnnotation.STATELESS, SecurityAnnotation.DECLARE_ROLES,
+				SecurityAnnotation.ROLES_ALLOWED, SecurityAnnotation.RUN_AS), values);
+		return new BeanFacts("OrderBean", "app.OrderBean", classAnnotations, Arrays.asList(
+				method("order", new String[]{ "Item" }, annotations(SecurityAnnotation.PERMIT_ALL, null)),
+				method("order", new String[]{ "Item", "int" }, AnnotationSnapshot.NONE),
+				method("cancel", new String[]{ "long" }, annotations(SecurityAnnotation.ROLES_ALLOWED, "manager"))),
+				Collections.<BeanFacts>emptyList());
+	}
+	
+	/**
+	 * @return facts of the ReportBean of the orders fixture
+	 */
+	private static BeanFacts reportBean(){
+		return new BeanFacts("ReportBean", "app.ReportBean", annotations(SecurityAnnotation.SINGLETON, null), Arrays.asList(
+				method("report", new String[]{ "int[]" }, annotations(SecurityAnnotation.ROLES_ALLOWED, "manager")),
+				method("archive", new String[0], annotations(SecurityAnnotation.DENY_ALL, null))),
+				Collections.<BeanFacts>emptyList());
+	}
+	
+	private static BeanFacts.MethodFacts method(String name, String[] parameterTypes, AnnotationSnapshot annotations){
+		return new BeanFacts.MethodFacts(name, parameterTypes, "void", annotations);
+	}
+	
+	private static AnnotationSnapshot annotations(SecurityAnnotation annotation, String value){
+		Map<SecurityAnnotation, String[]> values = new EnumMap<>(SecurityAnnotation.class);
+		if(value != null){
+			values.put(annotation, new String[]{ value });
+		}
+		return new AnnotationSnapshot(EnumSet.of(annotation), values);
+	}
+	
+	private static BeanFacts.MethodFacts getMethod(BeanFacts facts, String key){
+		for(BeanFacts.MethodFacts method : facts.getMethods()){
+			if(method.getKey().equals(key)){
+				return method;
+			}
+		}
+		throw new AssertionError("No method " + key + " in " + facts.getName());
+	}
+}
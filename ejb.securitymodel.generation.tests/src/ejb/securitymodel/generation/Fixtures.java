@@ -0,0 +1,163 @@
+package ejb.securitymodel.generation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.compiler.batch.BatchCompiler;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
+
+/**
+ * Access to the fixtures of the tests, small EJB applications given as sources and the deployment descriptors for them.
+ * A fixture application is made of one or more fixture folders, a later folder replacing the sources of an earlier one,
+ * so a folder with a few changed sources on top of an application makes up its next release.
+ * The <code>stubs</code> folder holds the EJB annotations every application is compiled against.
+ *
+ */
+class Fixtures {
+	
+	private static final String FIXTURES = "fixtures";
+	
+	private Fixtures(){
+	}
+	
+	/**
+	 * Returns a file or folder of the fixtures, read from the fragment when running as plug-in test.
+	 * @param path path within the fixtures folder
+	 * @return fixture file
+	 * @throws IOException if the fixture doesn't exist
+	 */
+	static File getFile(String path) throws IOException{
+		//the fragment's classes get loaded by the host, whose bundle finds the entries of its fragments as well
+		Bundle bundle = FrameworkUtil.getBundle(Fixtures.class);
+		File file;
+		if(bundle == null){
+			//plain JUnit runs start in the directory of the fragment
+			file = new File(FIXTURES, path);
+		}
+		else{
+			URL url = FileLocator.find(bundle, new Path(FIXTURES).append(path), null);
+			if(url == null){
+				throw new IOException("No fixture " + path);
+			}
+			file = new File(FileLocator.toFileURL(url).getPath());
+		}
+		if(!file.exists()){
+			throw new IOException("No fixture " + path);
+		}
+		return file;
+	}
+	
+	/**
+	 * Collects the sources of a fixture application.
+	 * @param fixtures fixture folders, later ones replacing the sources of earlier ones
+	 * @return source files by their path relative to the source folder, sorted by the path
+	 * @throws IOException if a fixture doesn't exist
+	 */
+	static Map<String, File> getSources(String... fixtures) throws IOException{
+		Map<String, File> sources = new TreeMap<>();
+		for(String fixture : fixtures){
+			collectSources(getFile(fixture), "", sources);
+		}
+		return sources;
+	}
+	
+	/**
+	 * Adds the sources found in a source folder, replacing those with the same path.
+	 * @param dir source folder, or a package folder within it
+	 * @param prefix path of the folder relative to the source folder
+	 * @param sources source files by their path relative to the source folder
+	 */
+	static void collectSources(File dir, String prefix, Map<String, File> sources){
+		File[] files = dir.listFiles();
+		for(File file : files){
+			if(file.isDirectory()){
+				collectSources(file, prefix + file.getName() + "/", sources);
+			}
+			else if(file.getName().endsWith(".java")){
+				sources.put(prefix + file.getName(), file);
+			}
+		}
+	}
+	
+	/**
+	 * Compiles a fixture application.
+	 * @param outputDir directory to write the class files to
+	 * @param fixtures fixture folders making up the application
+	 * @return the output directory
+	 * @throws IOException if the sources don't compile
+	 */
+	static File compile(File outputDir, String... fixtures) throws IOException{
+		return compile(outputDir, getSources(fixtures).values());
+	}
+	
+	/**
+	 * Compiles the given sources.
+	 * @param outputDir directory to write the class files to
+	 * @param sources source files
+	 * @return the output directory
+	 * @throws IOException if the sources don't compile
+	 */
+	static File compile(File outputDir, Collection<File> sources) throws IOException{
+		List<String> arguments = new ArrayList<>();
+		arguments.add("-1.8");
+		arguments.add("-proc:none");
+		arguments.add("-nowarn");
+		arguments.add("-d");
+		arguments.add(outputDir.getAbsolutePath());
+		for(File source : sources){
+			arguments.add(source.getAbsolutePath());
+		}
+		StringWriter errors = new StringWriter();
+		if(!BatchCompiler.compile(arguments.toArray(new String[arguments.size()]), new PrintWriter(new StringWriter()), new PrintWriter(errors), null)){
+			throw new IOException("Could not compile the sources:\n" + errors);
+		}
+		return outputDir;
+	}
+	
+	/**
+	 * Writes a fixture application as Java project and opens it in the workspace.
+	 * @param parentDir directory to create the project directory in
+	 * @param name project name
+	 * @param fixtures fixture folders making up the application
+	 * @return opened Java project
+	 * @throws IOException if the project can't be written
+	 * @throws CoreException if the project can't be imported
+	 */
+	static IJavaProject createProject(File parentDir, String name, String... fixtures) throws IOException, CoreException{
+		File projectDir = new File(parentDir, name);
+		for(Map.Entry<String, File> source : getSources(fixtures).entrySet()){
+			File target = new File(projectDir, "src/" + source.getKey());
+			target.getParentFile().mkdirs();
+			Files.copy(source.getValue().toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		write(new File(projectDir, ".classpath"), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<classpath>\n"
+				+ "\t<classpathentry kind=\"src\" path=\"src\"/>\n"
+				+ "\t<classpathentry kind=\"con\" path=\"org.eclipse.jdt.launching.JRE_CONTAINER\"/>\n"
+				+ "\t<classpathentry kind=\"output\" path=\"bin\"/>\n</classpath>\n");
+		write(new File(projectDir, ".project"), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<projectDescription>\n"
+				+ "\t<name>" + name + "</name>\n\t<comment></comment>\n\t<projects></projects>\n"
+				+ "\t<buildSpec></buildSpec>\n"
+				+ "\t<natures>\n\t\t<nature>org.eclipse.jdt.core.javanature</nature>\n\t</natures>\n</projectDescription>\n");
+		return HeadlessGenerator.openProject(projectDir.getAbsolutePath());
+	}
+	
+	private static void write(File file, String content) throws IOException{
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,87 @@
+package ejb.securitymodel.generation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the diff between the models of two releases of the <code>orders</code> fixture, generated from its compiled classes.
+ * The second release inserts an overload before an existing one and denies a method to everyone.
+ *
+ */
+public class ModelDiffTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private File orders;
+	private File ordersChanged;
+	
+	@Before
+	public void generateModels() throws IOException{
+		orders = generate(Fixtures.compile(folder.newFolder(), "stubs", "orders"));
+		ordersChanged = generate(Fixtures.compile(folder.newFolder(), "stubs", "orders", "orders-changed"));
+	}
+	
+	@Test
+	public void sameModelHasNoChanges() throws IOException{
+		ModelDiff diff = ModelDiff.compare(orders, generate(Fixtures.compile(folder.newFolder(), "stubs", "orders")));
+		assertEquals(Collections.<ModelDiff.Change>emptyList(), diff.getChanges());
+		assertFalse(diff.hasPermissionChanges());
+		
+		StringWriter out = new StringWriter();
+		diff.write(out);
+		assertEquals("DIFF beans=4 unchanged=4 changes=0 permission_changes=false\n", out.toString());
+	}
+	
+	@Test
+	public void insertedOverloadChangesNoOtherOperation() throws IOException{
+		ModelDiff diff = ModelDiff.compare(orders, ordersChanged);
+		List<String> changes = new ArrayList<>();
+		for(ModelDiff.Change change : diff.getChanges()){
+			changes.add(change.toString());
+		}
+		assertEquals(Arrays.asList(
+				"ACCESS_NARROWED app.OrderBean.cancel(long) [manager] -> DENY_ALL",
+				"OPERATION_ADDED app.OrderBean.order(String) - -> [clerk]"), changes);
+		assertTrue(diff.hasPermissionChanges());
+	}
+	
+	@Test
+	public void changesAreReportedBothWays() throws IOException{
+		ModelDiff diff = ModelDiff.compare(ordersChanged, orders);
+		assertEquals(2, diff.getChanges().size());
+		assertEquals(ModelDiff.ChangeKind.OPERATION_REMOVED, diff.getChanges().get(0).getKind());
+		assertEquals("order(String)", diff.getChanges().get(0).getOperation());
+		assertEquals(ModelDiff.ChangeKind.ACCESS_WIDENED, diff.getChanges().get(1).getKind());
+		assertEquals("app.OrderBean", diff.getChanges().get(1).getBean());
+	}
+	
+	@Test
+	public void beanOfSameNameInOtherPackageIsAdded() throws IOException{
+		ModelDiff diff = ModelDiff.compare(orders, generate(Fixtures.compile(folder.newFolder(), "stubs", "orders", "legacy")));
+		assertEquals(1, diff.getChanges().size());
+		assertEquals(ModelDiff.ChangeKind.BEAN_ADDED, diff.getChanges().get(0).getKind());
+		assertEquals("legacy.OrderBean", diff.getChanges().get(0).getBean());
+	}
+	
+	private File generate(File classes) throws IOException{
+		File modelFile = new File(folder.newFolder(), OutputFormat.XMI.getFileName());
+		new ModelGenerator().generateModel(Collections.singletonList(classes), modelFile, new NullProgressMonitor());
+		return modelFile;
+	}
+}
@@ -0,0 +1,140 @@
+package ejb.securitymodel.generation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the generation from the sources of Java projects in the workspace, to be run as JUnit plug-in test.
+ *
+ */
+public class ModelGeneratorTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private final List<IJavaProject> projects = new ArrayList<>();
+	
+	@After
+	public void deleteProjects() throws CoreException{
+		for(IJavaProject project : projects){
+			//the contents are left to the temporary folder
+			project.getProject().delete(false, true, new NullProgressMonitor());
+		}
+	}
+	
+	@Test
+	public void parallelExtractionWritesSameModel() throws IOException, CoreException{
+		SyntheticProjectGenerator synthetic = new SyntheticProjectGenerator();
+		synthetic.setUnits(400);
+		IJavaProject project = synthetic.createProject(folder.newFolder());
+		projects.add(project);
+		
+		for(OutputFormat format : new OutputFormat[]{ OutputFormat.XMI, OutputFormat.XMI_STREAM }){
+			File sequential = generate(project, format, 1);
+			File parallel = generate(project, format, 4);
+			assertArrayEquals(format.name(), Files.readAllBytes(sequential.toPath()), Files.readAllBytes(parallel.toPath()));
+		}
+	}
+	
+	@Test
+	public void classFilesGiveSameModelAsSources() throws IOException, CoreException{
+		IJavaProject project = Fixtures.createProject(folder.newFolder(), "orders", "stubs", "orders");
+		projects.add(project);
+		File sourceModel = generate(project, OutputFormat.XMI, 1);
+		
+		File classModel = new File(folder.newFolder(), OutputFormat.XMI.getFileName());
+		ModelGenerator generator = new ModelGenerator();
+		generator.generateModel(Collections.singletonList(Fixtures.compile(folder.newFolder(), "stubs", "orders")), classModel,
+				new NullProgressMonitor());
+		assertEquals(4, generator.getBeanCount());
+		
+		//constants, inherited methods and nested beans are resolved the same way in both
+		StringWriter diff = new StringWriter();
+		ModelDiff.compare(sourceModel, classModel).write(diff);
+		assertEquals("DIFF beans=4 unchanged=4 changes=0 permission_changes=false\n", diff.toString());
+	}
+	
+	@Test
+	public void mixedRoleArraysResolveEveryConstant() throws IOException, CoreException{
+		IJavaProject project = Fixtures.createProject(folder.newFolder(), "mixed", "stubs", "orders", "mixed");
+		projects.add(project);
+		//the compiler inlines the constants, so the class files have the expected roles
+		File classModel = new File(folder.newFolder(), OutputFormat.XMI.getFileName());
+		new ModelGenerator().generateModel(Collections.singletonList(Fixtures.compile(folder.newFolder(), "stubs", "orders", "mixed")),
+				classModel, new NullProgressMonitor());
+		
+		for(ExtractionEngine engine : ExtractionEngine.values()){
+			File sourceModel = new File(folder.newFolder(), OutputFormat.XMI.getFileName());
+			ModelGenerator generator = new ModelGenerator();
+			generator.setExtractionEngine(engine);
+			generator.setUseCache(false);
+			generator.generateModel(project, sourceModel, new NullProgressMonitor());
+			
+			StringWriter diff = new StringWriter();
+			ModelDiff.compare(sourceModel, classModel).write(diff);
+			assertEquals(engine.name(), "DIFF beans=5 unchanged=5 changes=0 permission_changes=false\n", diff.toString());
+		}
+	}
+	
+	@Test
+	public void constantDeclaredLaterGetsResolved() throws IOException, CoreException{
+		IJavaProject project = Fixtures.createProject(folder.newFolder(), "pending", "stubs", "pending");
+		projects.add(project);
+		File modelFile = new File(folder.newFolder(), OutputFormat.XMI.getFileName());
+		ModelGenerator generator = new ModelGenerator();
+		generator.generateModel(project, modelFile, new NullProgressMonitor());
+		assertEquals(Collections.singleton("Approvals.APPROVER"),
+				PermissionIndex.load(modelFile).getOperation("pending.ApprovalBean.approve(long)").getRoles());
+		
+		IFile file = project.getProject().getFile("src/pending/Approvals.java");
+		file.create(new ByteArrayInputStream("package pending;\n\npublic class Approvals {\n\tpublic static final String APPROVER = \"approver\";\n}\n"
+				.getBytes(StandardCharsets.UTF_8)), true, new NullProgressMonitor());
+		generator.updateModel(Collections.singletonList(JavaCore.createCompilationUnitFrom(file)), new NullProgressMonitor());
+		assertEquals(Collections.singleton("approver"),
+				PermissionIndex.load(modelFile).getOperation("pending.ApprovalBean.approve(long)").getRoles());
+	}
+	
+	@Test
+	public void unchangedSourcesKeepModel() throws IOException, CoreException{
+		IJavaProject project = Fixtures.createProject(folder.newFolder(), "orders", "stubs", "orders");
+		projects.add(project);
+		File modelFile = generate(project, OutputFormat.XMI, 1);
+		byte[] content = Files.readAllBytes(modelFile.toPath());
+		
+		ModelGenerator generator = new ModelGenerator();
+		generator.setParallelism(4);
+		generator.generateModel(project, modelFile, new NullProgressMonitor());
+		assertFalse(generator.isModelChanged());
+		assertArrayEquals(content, Files.readAllBytes(modelFile.toPath()));
+	}
+	
+	private File generate(IJavaProject project, OutputFormat format, int parallelism) throws IOException, CoreException{
+		File modelFile = new File(folder.newFolder(), format.getFileName());
+		ModelGenerator generator = new ModelGenerator();
+		generator.setOutputFormat(format);
+		generator.setParallelism(parallelism);
+		generator.generateModel(project, modelFile, new NullProgressMonitor());
+		return modelFile;
+	}
+}
@@ -0,0 +1,122 @@
+package ejb.securitymodel.generation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that the written model only depends on the application, not on the order its classes are found in,
+ * and that an unchanged model is not written again. The models are generated from the compiled <code>orders</code> fixture.
+ *
+ */
+public class ModelOutputTest {
+	
+	//formats written as a whole, streamed bean by bean and split into one resource per bean
+	private static final OutputFormat[] FORMATS = { OutputFormat.XMI, OutputFormat.XMI_TUNED, OutputFormat.XMI_STREAM, OutputFormat.XMI_SPLIT };
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private File classes;
+	
+	@Before
+	public void compileFixture() throws IOException{
+		classes = Fixtures.compile(folder.newFolder(), "stubs", "orders");
+	}
+	
+	@Test
+	public void modelDoesNotDependOnClassOrder() throws IOException{
+		//the beans split over two locations, found in either order
+		File orderBeans = folder.newFolder();
+		File otherClasses = folder.newFolder();
+		for(File file : new File(classes, "app").listFiles()){
+			File target = new File(file.getName().startsWith("OrderBean") ? orderBeans : otherClasses, "app/" + file.getName());
+			target.getParentFile().mkdirs();
+			Files.copy(file.toPath(), target.toPath());
+		}
+		for(OutputFormat format : FORMATS){
+			File first = generate(format, Arrays.asList(orderBeans, otherClasses), folder.newFolder());
+			File second = generate(format, Arrays.asList(otherClasses, orderBeans), folder.newFolder());
+			assertContentEquals(format.name(), first, second);
+		}
+	}
+	
+	@Test
+	public void unchangedModelIsNotWrittenAgain() throws IOException{
+		for(OutputFormat format : FORMATS){
+			File modelFile = generate(format, Arrays.asList(classes), folder.newFolder());
+			Map<String, byte[]> content = read(modelFile);
+			//the modification times only tell a rewrite apart if the clock moved on
+			assertTrue(modelFile.setLastModified(0));
+			
+			ModelGenerator generator = createGenerator(format);
+			generator.generateModel(Arrays.asList(classes), modelFile, new NullProgressMonitor());
+			assertFalse(format.name(), generator.isModelChanged());
+			assertContentEquals(format.name(), content, read(modelFile));
+			assertEquals(format.name(), 0, modelFile.lastModified());
+		}
+	}
+	
+	@Test
+	public void changedModelIsWritten() throws IOException{
+		File changedClasses = Fixtures.compile(folder.newFolder(), "stubs", "orders", "orders-changed");
+		for(OutputFormat format : FORMATS){
+			File modelFile = generate(format, Arrays.asList(classes), folder.newFolder());
+			
+			ModelGenerator generator = createGenerator(format);
+			generator.generateModel(Arrays.asList(changedClasses), modelFile, new NullProgressMonitor());
+			assertTrue(format.name(), generator.isModelChanged());
+			assertContentEquals(format.name(), generate(format, Arrays.asList(changedClasses), folder.newFolder()), modelFile);
+		}
+	}
+	
+	private static ModelGenerator createGenerator(OutputFormat format){
+		ModelGenerator generator = new ModelGenerator();
+		generator.setOutputFormat(format);
+		return generator;
+	}
+	
+	private static File generate(OutputFormat format, List<File> locations, File outputDir) throws IOException{
+		File modelFile = new File(outputDir, format.getFileName());
+		createGenerator(format).generateModel(locations, modelFile, new NullProgressMonitor());
+		return modelFile;
+	}
+	
+	/**
+	 * @param modelFile model file, or directory of a split model
+	 * @return content of the file, or of each file of the directory, by file name
+	 */
+	private static Map<String, byte[]> read(File modelFile) throws IOException{
+		Map<String, byte[]> content = new TreeMap<>();
+		for(File file : modelFile.isDirectory() ? modelFile.listFiles() : new File[]{ modelFile }){
+			content.put(file.getName(), Files.readAllBytes(file.toPath()));
+		}
+		return content;
+	}
+	
+	private static void assertContentEquals(String message, File expected, File actual) throws IOException{
+		assertContentEquals(message, read(expected), read(actual));
+	}
+	
+	private static void assertContentEquals(String message, Map<String, byte[]> expected, Map<String, byte[]> actual){
+		assertEquals(message, expected.keySet(), actual.keySet());
+		for(Map.Entry<String, byte[]> entry : expected.entrySet()){
+			assertArrayEquals(message + " " + entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package ejb.securitymodel.generation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that extracting the beans on several threads writes the same model as extracting them on the calling thread.
+ * The models are generated from the compiled classes of a synthetic project, so the test doesn't need a workspace.
+ *
+ */
+public class ParallelGenerationTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private File classes;
+	
+	@Before
+	public void compileSyntheticProject() throws IOException{
+		SyntheticProjectGenerator synthetic = new SyntheticProjectGenerator();
+		synthetic.setUnits(400);
+		File sourceDir = folder.newFolder();
+		synthetic.writeSources(sourceDir);
+		Map<String, File> sources = Fixtures.getSources("stubs");
+		Fixtures.collectSources(sourceDir, "", sources);
+		classes = Fixtures.compile(folder.newFolder(), sources.values());
+	}
+	
+	@Test
+	public void parallelExtractionWritesSameModel() throws IOException{
+		for(OutputFormat format : new OutputFormat[]{ OutputFormat.XMI, OutputFormat.BINARY, OutputFormat.XMI_STREAM, OutputFormat.XMI_SPLIT }){
+			Map<String, byte[]> sequential = read(generate(format, 1));
+			Map<String, byte[]> parallel = read(generate(format, 4));
+			assertEquals(format.name(), sequential.keySet(), parallel.keySet());
+			for(Map.Entry<String, byte[]> entry : sequential.entrySet()){
+				assertArrayEquals(format.name() + " " + entry.getKey(), entry.getValue(), parallel.get(entry.getKey()));
+			}
+		}
+	}
+	
+	private File generate(OutputFormat format, int parallelism) throws IOException{
+		File modelFile = new File(folder.newFolder(), format.getFileName());
+		ModelGenerator generator = new ModelGenerator();
+		generator.setOutputFormat(format);
+		generator.setParallelism(parallelism);
+		generator.setRecordMetrics(true);
+		generator.generateModel(Collections.singletonList(classes), modelFile, new NullProgressMonitor());
+		//half of the units declare a bean, all of them extracted
+		assertEquals(200, generator.getMetrics().get(GenerationMetrics.Counter.BEANS_CREATED));
+		return modelFile;
+	}
+	
+	/**
+	 * @param modelFile model file, or directory of a split model
+	 * @return content of the file, or of each file of the directory, by file name
+	 */
+	private static Map<String, byte[]> read(File modelFile) throws IOException{
+		Map<String, byte[]> content = new TreeMap<>();
+		for(File file : modelFile.isDirectory() ? modelFile.listFiles() : new File[]{ modelFile }){
+			content.put(file.getName(), Files.readAllBytes(file.toPath()));
+		}
+		return content;
+	}
+}
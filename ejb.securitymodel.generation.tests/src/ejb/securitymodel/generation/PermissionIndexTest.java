@@ -0,0 +1,99 @@
+package ejb.securitymodel.generation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the effective permissions of the <code>orders</code> fixture, together with a bean of the same simple name in another package.
+ *
+ */
+public class PermissionIndexTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private File modelFile;
+	private PermissionIndex index;
+	
+	@Before
+	public void generateModel() throws IOException{
+		File classes = Fixtures.compile(folder.newFolder(), "stubs", "orders", "legacy");
+		modelFile = new File(folder.newFolder(), OutputFormat.XMI.getFileName());
+		ModelGenerator generator = new ModelGenerator();
+		generator.setIndexPermissions(true);
+		generator.generateModel(Collections.singletonList(classes), modelFile, new NullProgressMonitor());
+		index = generator.getPermissionIndex();
+	}
+	
+	@Test
+	public void overloadsAreKeyedByParameterTypes(){
+		assertEquals("order", index.getOperation("app.OrderBean.order(Item)").getOperation());
+		assertEquals(Collections.singleton("clerk"), index.getOperation("app.OrderBean.order(Item)").getRoles());
+		assertEquals(Collections.singleton("clerk"), index.getOperation("app.OrderBean.order(Item,int)").getRoles());
+		assertNull(index.getOperation("app.OrderBean.order(Item)[2]"));
+	}
+	
+	@Test
+	public void beansAreKeyedByQualifiedName(){
+		assertEquals(PermissionIndex.Access.ROLES, index.getOperation("app.OrderBean.cancel(long)").getAccess());
+		assertEquals(PermissionIndex.Access.PERMIT_ALL, index.getOperation("legacy.OrderBean.cancel(long)").getAccess());
+		assertEquals("legacy.OrderBean", index.getOperation("legacy.OrderBean.cancel(long)").getBean());
+		assertEquals(PermissionIndex.Access.PERMIT_ALL, index.getOperation("app.OrderBean.ArchiveBean.list()").getAccess());
+	}
+	
+	@Test
+	public void methodAnnotationsOverrideClassAnnotations(){
+		PermissionIndex.OperationAccess cancel = index.getOperation("app.OrderBean.cancel(long)");
+		assertEquals(Collections.singleton("manager"), cancel.getRoles());
+		assertTrue(cancel.isAllowed("manager"));
+		assertFalse(cancel.isAllowed("clerk"));
+		assertEquals(PermissionIndex.Access.DENY_ALL, index.getOperation("app.OrderBean.overridden()").getAccess());
+		assertFalse(index.getOperation("app.OrderBean.overridden()").isAllowed("clerk"));
+		//inherited methods keep the class-level security of the base class
+		assertEquals(Collections.singleton("auditor"), index.getOperation("app.OrderBean.audit(String)").getRoles());
+		assertEquals(PermissionIndex.Access.PERMIT_ALL, index.getOperation("app.OrderBean.ping()").getAccess());
+	}
+	
+	@Test
+	public void operationsAreFoundByRole(){
+		assertEquals(Arrays.asList("app.OrderBean.cancel(long)"), getKeys(index.getOperationsAllowed("manager")));
+		assertEquals(Arrays.asList("app.ReportBean.report(int[])"), getKeys(index.getOperationsRunningAs("manager")));
+		assertEquals(Arrays.asList("app.OrderBean.ping()", "app.OrderBean.ArchiveBean.list()", "app.ReportBean.report(int[])",
+				"legacy.OrderBean.cancel(long)"), getKeys(index.getUnrestrictedOperations()));
+		assertTrue(index.getRoles().containsAll(Arrays.asList("auditor", "clerk", "manager")));
+	}
+	
+	@Test
+	public void loadedModelHasSameIndex() throws IOException{
+		StringBuilder generated = new StringBuilder();
+		index.writeOperationTable(generated);
+		index.writeRoleTable(generated);
+		PermissionIndex loadedIndex = PermissionIndex.load(modelFile);
+		StringBuilder loaded = new StringBuilder();
+		loadedIndex.writeOperationTable(loaded);
+		loadedIndex.writeRoleTable(loaded);
+		assertEquals(generated.toString(), loaded.toString());
+	}
+	
+	private static List<String> getKeys(List<PermissionIndex.OperationAccess> operations){
+		String[] keys = new String[operations.size()];
+		for(int i = 0; i < keys.length; i++){
+			keys[i] = operations.get(i).getKey();
+		}
+		return Arrays.asList(keys);
+	}
+}
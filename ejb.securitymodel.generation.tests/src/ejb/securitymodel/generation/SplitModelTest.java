@@ -0,0 +1,101 @@
+package ejb.securitymodel.generation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.mkonersmann.ejb31.EnterpriseBean;
+import de.mkonersmann.ejb31.SessionBean;
+
+/**
+ * Tests the split model of the <code>orders</code> fixture, together with a bean of the same simple name in another package.
+ *
+ */
+public class SplitModelTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private File classes;
+	private File modelDir;
+	private SplitModel model;
+	
+	@Before
+	public void generateModel() throws IOException{
+		classes = Fixtures.compile(folder.newFolder(), "stubs", "orders", "legacy");
+		modelDir = generate(OutputFormat.XMI_SPLIT);
+		model = new SplitModel(modelDir);
+	}
+	
+	@Test
+	public void beansHaveResourcesOfTheirOwn() throws IOException{
+		//the second bean of the same name gets a numbered resource
+		assertEquals(Arrays.asList("ArchiveBean", "InvoiceListener", "OrderBean", "OrderBean_2", "ReportBean"), model.getBeanNames());
+		assertEquals("app.OrderBean", model.getBean("OrderBean").getId());
+		assertEquals("legacy.OrderBean", model.getBean("OrderBean_2").getId());
+		assertNull(model.getBean("roles"));
+	}
+	
+	@Test
+	public void referencesAreResolvedOnFirstAccess() throws IOException{
+		EnterpriseBean bean = model.getBean("ReportBean");
+		assertEquals(1, model.getResourceSet().getResources().size());
+		
+		assertEquals("manager", bean.getSecuritySpecs().getRunAs().getName());
+		assertEquals(2, model.getResourceSet().getResources().size());
+		assertTrue(model.getResourceSet().getResources().get(1).getURI().toString().endsWith(SplitModel.ROLES_FILE));
+		
+		assertEquals("report", ((SessionBean)bean).getOwnedOperations().get(0).getSignature().getName());
+		assertEquals(3, model.getResourceSet().getResources().size());
+	}
+	
+	@Test
+	public void splitModelHasSamePermissionsAsSingleFile() throws IOException{
+		StringBuilder split = new StringBuilder();
+		PermissionIndex.of(model.loadAll()).writeOperationTable(split);
+		StringBuilder single = new StringBuilder();
+		PermissionIndex.load(generate(OutputFormat.XMI)).writeOperationTable(single);
+		//the beans of a split model are loaded in the order of their resource names
+		assertEquals(sortedLines(single), sortedLines(split));
+	}
+	
+	@Test
+	public void replacedModelLeavesNothingBehind() throws IOException{
+		int operations = ((SessionBean)model.getBean("OrderBean")).getOwnedOperations().size();
+		ModelGenerator generator = new ModelGenerator();
+		generator.setOutputFormat(OutputFormat.XMI_SPLIT);
+		generator.generateModel(Collections.singletonList(Fixtures.compile(folder.newFolder(), "stubs", "orders", "orders-changed")), modelDir,
+				new NullProgressMonitor());
+		assertTrue(generator.isModelChanged());
+		//neither the old model nor the temporary directory of the new one are left over
+		assertEquals(Arrays.asList(modelDir.getName()), Arrays.asList(modelDir.getParentFile().list()));
+		//the next release adds an overload
+		assertEquals(operations + 1, ((SessionBean)new SplitModel(modelDir).getBean("OrderBean")).getOwnedOperations().size());
+	}
+	
+	private static List<String> sortedLines(CharSequence text){
+		List<String> lines = Arrays.asList(text.toString().split("\n"));
+		Collections.sort(lines);
+		return lines;
+	}
+	
+	private File generate(OutputFormat format) throws IOException{
+		File modelFile = new File(folder.newFolder(), format.getFileName());
+		ModelGenerator generator = new ModelGenerator();
+		generator.setOutputFormat(format);
+		generator.generateModel(Collections.singletonList(classes), modelFile, new NullProgressMonitor());
+		return modelFile;
+	}
+}
@@ -0,0 +1,375 @@
+package ejb.securitymodel.generation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.core.IAnnotatable;
+import org.eclipse.jdt.core.IAnnotation;
+import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.core.IMemberValuePair;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.Annotation;
+import org.eclipse.jdt.core.dom.ArrayInitializer;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.MemberValuePair;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.NormalAnnotation;
+import org.eclipse.jdt.core.dom.SingleMemberAnnotation;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+
+/**
+ * Immutable snapshot of the security relevant annotations of a type or method.
+ * The annotations of an element are read from the Java model exactly once, all classification
+ * and security extraction is done on the snapshot afterwards.
+ *
+ */
+public class AnnotationSnapshot {
+	
+	/**
+	 * Snapshot of an element without any relevant annotation.
+	 */
+	public static final AnnotationSnapshot NONE = new AnnotationSnapshot(EnumSet.noneOf(SecurityAnnotation.class),
+			new EnumMap<SecurityAnnotation, String[]>(SecurityAnnotation.class));
+	
+	//annotations granting or denying access, inherited from the declaring class as a whole
+	private static final SecurityAnnotation[] PERMISSIONS = { SecurityAnnotation.PERMIT_ALL, SecurityAnnotation.DENY_ALL,
+			SecurityAnnotation.ROLES_ALLOWED };
+	
+	private final EnumSet<SecurityAnnotation> annotations;
+	private final Map<SecurityAnnotation, String[]> values;
+	
+	/**
+	 * AnnotationSnapshot constructor.
+	 * @param annotations annotations present on the element
+	 * @param values role values of the present annotations
+	 */
+	public AnnotationSnapshot(EnumSet<SecurityAnnotation> annotations, Map<SecurityAnnotation, String[]> values){
+		this.annotations = annotations;
+		this.values = values;
+	}
+	
+	/**
+	 * Reads the annotations of the given type or method in a single pass.
+	 * @param element annotated Java element
+	 * @param constants resolver for role values given as constants, null to keep the names of the constants
+	 * @return snapshot of the element's relevant annotations
+	 * @throws JavaModelException
+	 */
+	public static AnnotationSnapshot of(IAnnotatable element, ConstantResolver constants) throws JavaModelException{
+		IAnnotation[] elementAnnotations = element.getAnnotations();
+		if(elementAnnotations.length == 0){
+			return NONE;
+		}
+		
+		EnumSet<SecurityAnnotation> annotations = EnumSet.noneOf(SecurityAnnotation.class);
+		Map<SecurityAnnotation, String[]> values = new EnumMap<>(SecurityAnnotation.class);
+		for(IAnnotation annotation : elementAnnotations){
+			SecurityAnnotation securityAnnotation = SecurityAnnotation.forName(annotation.getElementName());
+			if(securityAnnotation == null){
+				continue;
+			}
+			annotations.add(securityAnnotation);
+			
+			if(hasRoleValues(securityAnnotation)){
+				String[] annotationValues = getAnnotationValues(annotation, constants, getType(element));
+				if(annotationValues != null){
+					values.put(securityAnnotation, annotationValues);
+				}
+			}
+		}
+		return new AnnotationSnapshot(annotations, values);
+	}
+	
+	/**
+	 * @param element annotated Java element
+	 * @return the element if it is a type, the type declaring it otherwise, null if there is none
+	 */
+	private static IType getType(IAnnotatable element){
+		if(element instanceof IType){
+			return (IType)element;
+		}
+		return element instanceof IMember ? ((IMember)element).getDeclaringType() : null;
+	}
+	
+	/**
+	 * @param annotation
+	 * @return true if the annotation marks a class as Java Bean
+	 */
+	static boolean isBeanAnnotation(SecurityAnnotation annotation){
+		switch(annotation){
+		case STATELESS:
+		case STATEFUL:
+		case SINGLETON:
+		case MESSAGEDRIVEN:
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * Only the role annotations carry values we are interested in.
+	 * @param annotation
+	 * @return true if the values of the annotation are kept in the snapshot
+	 */
+	static boolean hasRoleValues(SecurityAnnotation annotation){
+		switch(annotation){
+		case ROLES_ALLOWED:
+		case DECLARE_ROLES:
+		case RUN_AS:
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * Applies the class-level permissions of the class declaring an inherited method, as the EJB specification demands:
+	 * permissions given on a superclass apply to the business methods declared by that superclass.
+	 * @param classAnnotations annotations of the declaring class
+	 * @return snapshot of the method with the class-level permissions, this snapshot if the method has permissions of its own
+	 */
+	AnnotationSnapshot inheritPermissions(AnnotationSnapshot classAnnotations){
+		if(hasPermissions() || !classAnnotations.hasPermissions()){
+			return this;
+		}
+		EnumSet<SecurityAnnotation> inherited = EnumSet.copyOf(annotations);
+		Map<SecurityAnnotation, String[]> inheritedValues = new EnumMap<>(SecurityAnnotation.class);
+		inheritedValues.putAll(values);
+		for(SecurityAnnotation annotation : PERMISSIONS){
+			if(classAnnotations.has(annotation)){
+				inherited.add(annotation);
+				if(classAnnotations.getValues(annotation) != null){
+					inheritedValues.put(annotation, classAnnotations.getValues(annotation));
+				}
+			}
+		}
+		return new AnnotationSnapshot(inherited, inheritedValues);
+	}
+	
+	/**
+	 * Adds roles declared by superclasses to the roles declared on a bean class.
+	 * @param roles declared roles, may be empty
+	 * @return snapshot declaring the roles of both, this snapshot if no role is added
+	 */
+	AnnotationSnapshot declareRoles(Collection<String> roles){
+		Set<String> declared = new LinkedHashSet<>();
+		if(values.get(SecurityAnnotation.DECLARE_ROLES) != null){
+			declared.addAll(Arrays.asList(values.get(SecurityAnnotation.DECLARE_ROLES)));
+		}
+		int ownRoles = declared.size();
+		declared.addAll(roles);
+		if(declared.size() == ownRoles){
+			return this;
+		}
+		EnumSet<SecurityAnnotation> extended = EnumSet.copyOf(annotations);
+		extended.add(SecurityAnnotation.DECLARE_ROLES);
+		Map<SecurityAnnotation, String[]> extendedValues = new EnumMap<>(SecurityAnnotation.class);
+		extendedValues.putAll(values);
+		extendedValues.put(SecurityAnnotation.DECLARE_ROLES, declared.toArray(new String[declared.size()]));
+		return new AnnotationSnapshot(extended, extendedValues);
+	}
+	
+	/**
+	 * Replaces the permissions of the element by a permission given in a deployment descriptor, which overrides the annotations.
+	 * @param permission PermitAll, DenyAll or RolesAllowed
+	 * @param roles allowed roles for RolesAllowed, null otherwise
+	 * @return snapshot with the given permission as only permission
+	 */
+	AnnotationSnapshot overridePermissions(SecurityAnnotation permission, String[] roles){
+		EnumSet<SecurityAnnotation> overridden = EnumSet.copyOf(annotations);
+		Map<SecurityAnnotation, String[]> overriddenValues = new EnumMap<>(SecurityAnnotation.class);
+		overriddenValues.putAll(values);
+		for(SecurityAnnotation annotation : PERMISSIONS){
+			overridden.remove(annotation);
+			overriddenValues.remove(annotation);
+		}
+		overridden.add(permission);
+		if(roles != null){
+			overriddenValues.put(permission, roles);
+		}
+		return new AnnotationSnapshot(overridden, overriddenValues);
+	}
+	
+	/**
+	 * Replaces the run-as role of a bean class by the one given in a deployment descriptor.
+	 * @param role run-as role
+	 * @return snapshot running as the given role
+	 */
+	AnnotationSnapshot overrideRunAs(String role){
+		EnumSet<SecurityAnnotation> overridden = EnumSet.copyOf(annotations);
+		overridden.add(SecurityAnnotation.RUN_AS);
+		Map<SecurityAnnotation, String[]> overriddenValues = new EnumMap<>(SecurityAnnotation.class);
+		overriddenValues.putAll(values);
+		overriddenValues.put(SecurityAnnotation.RUN_AS, new String[]{ role });
+		return new AnnotationSnapshot(overridden, overriddenValues);
+	}
+	
+	/**
+	 * @return true if a permission annotation is present, i.e. PermitAll, DenyAll or RolesAllowed
+	 */
+	private boolean hasPermissions(){
+		for(SecurityAnnotation annotation : PERMISSIONS){
+			if(annotations.contains(annotation)){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @param annotation
+	 * @return true if the annotation is present on the element
+	 */
+	public boolean has(SecurityAnnotation annotation){
+		return annotations.contains(annotation);
+	}
+	
+	/**
+	 * Returns the values of the specified annotation.
+	 * @param annotation
+	 * @return array of annotation values, null if the annotation is absent or has no value
+	 */
+	public String[] getValues(SecurityAnnotation annotation){
+		return values.get(annotation);
+	}
+	
+	/**
+	 * @return annotations present on the element
+	 */
+	public EnumSet<SecurityAnnotation> getAnnotations(){
+		return EnumSet.copyOf(annotations);
+	}
+	
+	/**
+	 * Determines the bean type denoted by the annotations.
+	 * @return bean type, NONE if the element is no Java Bean
+	 */
+	public JavaBeanType getBeanType(){
+		if(annotations.contains(SecurityAnnotation.STATELESS)){
+			return JavaBeanType.STATELESS;
+		}
+		else if(annotations.contains(SecurityAnnotation.STATEFUL)){
+			return JavaBeanType.STATEFUL;
+		}
+		else if(annotations.contains(SecurityAnnotation.SINGLETON)){
+			return JavaBeanType.SINGLETON;
+		}
+		else if(annotations.contains(SecurityAnnotation.MESSAGEDRIVEN)){
+			return JavaBeanType.MESSAGEDRIVEN;
+		}
+		return JavaBeanType.NONE;
+	}
+	
+	/**
+	 * Returns an array of the specified annotation values.
+	 * Only one element if the annotation has just one value, multiple elements otherwise.
+	 * Values given as constants are resolved to the values of the constants, if possible. The Java model reports arrays
+	 * mixing constants and String literals as unknown kind, so for those every element is looked up in the source.
+	 * @param annotation
+	 * @param constants resolver for values given as constants, null to keep the names of the constants
+	 * @param type type the annotation is written in
+	 * @return array of annotation values
+	 */
+	private static String[] getAnnotationValues(IAnnotation annotation, ConstantResolver constants, IType type){
+		try {
+	    	IMemberValuePair[] valuePairs = annotation.getMemberValuePairs();
+	        for (IMemberValuePair valuePair : valuePairs) {
+	            if ("value".equals(valuePair.getMemberName())) {
+	            	//the Java model reports the names of constants, not their values
+	            	boolean names = constants != null && (valuePair.getValueKind() == IMemberValuePair.K_QUALIFIED_NAME
+	            			|| valuePair.getValueKind() == IMemberValuePair.K_SIMPLE_NAME);
+	            	if(valuePair.getValue() instanceof Object[]){	//multiple annotation values via Array declaration
+	            		Object[] rawValues = (Object[])valuePair.getValue();
+	            		boolean[] nameElements = constants != null && valuePair.getValueKind() == IMemberValuePair.K_UNKNOWN
+	            				? getNameElements(annotation, rawValues.length) : null;
+	            		List<String> result = new ArrayList<>(rawValues.length);
+	            		for(int i = 0; i < rawValues.length; i++){
+	            			//values the Java model can't compute are null
+	            			if(rawValues[i] instanceof String){
+	            				boolean name = nameElements != null ? nameElements[i] : names;
+	            				result.add(name ? resolve(constants, type, (String)rawValues[i]) : (String)rawValues[i]);
+	            			}
+	            		}
+		        		return result.toArray(new String[result.size()]);
+		        	}
+	            	else if(valuePair.getValue() instanceof String){	//only one annotation value via single String declaration
+	            		String value = (String)valuePair.getValue();
+	            		return new String[]{ names ? resolve(constants, type, value) : value };
+	            	}
+	            }
+	        }
+	    } catch (JavaModelException ex) {
+	    	//this can get triggered if the annotation doesnt exist, so just ignore it then and return null
+	    	return null;
+	    }
+		
+		return null;
+	}
+	
+	/**
+	 * Tells for every element of the array value of an annotation whether it is written as a name,
+	 * i.e. refers to a constant, by parsing the source of the annotation.
+	 * @param annotation annotation with an array as value
+	 * @param count number of elements reported by the Java model
+	 * @return per element true if it is a simple or qualified name, null if the source can't be matched with the elements
+	 * @throws JavaModelException
+	 */
+	private static boolean[] getNameElements(IAnnotation annotation, int count) throws JavaModelException{
+		String source = annotation.getSource();
+		if(source == null){
+			return null;
+		}
+		//the annotation on its own is no valid source, so it gets parsed on a type declaration
+		ASTParser parser = ASTParser.newParser(AST.JLS8);
+		parser.setKind(ASTParser.K_CLASS_BODY_DECLARATIONS);
+		parser.setSource((source + " class A {}").toCharArray());
+		List<?> declarations = ((TypeDeclaration)parser.createAST(null)).bodyDeclarations();
+		if(declarations.isEmpty() || ((BodyDeclaration)declarations.get(0)).modifiers().isEmpty()){
+			return null;
+		}
+		Object parsed = ((BodyDeclaration)declarations.get(0)).modifiers().get(0);
+		Expression value = null;
+		if(parsed instanceof SingleMemberAnnotation){
+			value = ((SingleMemberAnnotation)parsed).getValue();
+		}
+		else if(parsed instanceof NormalAnnotation){
+			for(Object pair : ((NormalAnnotation)parsed).values()){
+				if("value".equals(((MemberValuePair)pair).getName().getIdentifier())){
+					value = ((MemberValuePair)pair).getValue();
+				}
+			}
+		}
+		if(!(parsed instanceof Annotation) || !(value instanceof ArrayInitializer)
+				|| ((ArrayInitializer)value).expressions().size() != count){
+			return null;
+		}
+		boolean[] names = new boolean[count];
+		for(int i = 0; i < count; i++){
+			names[i] = ((ArrayInitializer)value).expressions().get(i) instanceof Name;
+		}
+		return names;
+	}
+	
+	/**
+	 * @param constants resolver for values given as constants
+	 * @param type type the annotation is written in
+	 * @param name name of the constant as written
+	 * @return value of the constant, the name if it can't be resolved
+	 */
+	private static String resolve(ConstantResolver constants, IType type, String name){
+		String value = constants.resolve(type, name);
+		return value != null ? value : name;
+	}
+}
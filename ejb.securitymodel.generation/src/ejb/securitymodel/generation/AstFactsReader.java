@@ -0,0 +1,370 @@
+package ejb.securitymodel.generation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTRequestor;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.Annotation;
+import org.eclipse.jdt.core.dom.ArrayInitializer;
+import org.eclipse.jdt.core.dom.ArrayType;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.IAnnotationBinding;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.MemberValuePair;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.NameQualifiedType;
+import org.eclipse.jdt.core.dom.NormalAnnotation;
+import org.eclipse.jdt.core.dom.ParameterizedType;
+import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.QualifiedType;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SimpleType;
+import org.eclipse.jdt.core.dom.SingleMemberAnnotation;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.StringLiteral;
+import org.eclipse.jdt.core.dom.Type;
+
+/**
+ * Reads the facts of compilation units by parsing them in batches with {@link ASTParser#createASTs}, instead of
+ * going through the handles of the Java model element by element. The annotations and their values are read
+ * from the syntax tree in one pass per unit, method bodies are not parsed at all.
+ * <p>
+ * Without bindings the facts equal the ones read from the Java model. With bindings, annotations are matched by their
+ * resolved qualified type, so e.g. annotations referenced through on-demand imports are recognized unambiguously,
+ * and role values given as constant expressions are computed, with the types declaring their constants recorded by the
+ * {@link ConstantResolver}. Without bindings, role values referring to constants are resolved through it like the Java model's ones.
+ *
+ */
+public class AstFactsReader {
+	
+	//units parsed at once, bounds the memory held by the compiler environment while resolving bindings
+	private static final int BATCH_SIZE = 200;
+	
+	private final boolean resolveBindings;
+	private final ConstantResolver constants;
+	
+	/**
+	 * AstFactsReader constructor.
+	 * @param resolveBindings true to resolve the annotation types and constant values
+	 * @param constants resolver for role values given as constants, null to keep the names of the constants
+	 */
+	public AstFactsReader(boolean resolveBindings, ConstantResolver constants){
+		this.resolveBindings = resolveBindings;
+		this.constants = constants;
+	}
+	
+	/**
+	 * Parses the given compilation units of a project and reads their facts.
+	 * @param project Java project the units belong to, used to resolve bindings
+	 * @param units compilation units
+	 * @param monitor progress monitor, may be canceled
+	 * @return facts per unit, units that could not be parsed are missing
+	 */
+	public Map<ICompilationUnit, BeanFacts> read(IJavaProject project, List<ICompilationUnit> units, IProgressMonitor monitor){
+		SubMonitor subMonitor = SubMonitor.convert(monitor, units.size());
+		final Map<ICompilationUnit, BeanFacts> facts = new HashMap<>();
+		
+		for(int from = 0; from < units.size(); from += BATCH_SIZE){
+			List<ICompilationUnit> batch = units.subList(from, Math.min(from + BATCH_SIZE, units.size()));
+			
+			@SuppressWarnings("deprecation")
+			ASTParser parser = ASTParser.newParser(AST.JLS8);
+			parser.setKind(ASTParser.K_COMPILATION_UNIT);
+			parser.setProject(project);
+			parser.setResolveBindings(resolveBindings);
+			//only declarations and their annotations are of interest
+			parser.setIgnoreMethodBodies(true);
+			
+			parser.createASTs(batch.toArray(new ICompilationUnit[batch.size()]), new String[0], new ASTRequestor() {
+				@Override
+				public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+					facts.put(source, readFacts(source, ast));
+				}
+			}, subMonitor.split(batch.size()));
+		}
+		return facts;
+	}
+	
+	/**
+	 * Reads the facts of a parsed compilation unit, just like {@link BeanFacts#of(ICompilationUnit, ConstantResolver)}.
+	 * @param unit compilation unit
+	 * @param ast syntax tree of the unit
+	 * @return facts of the unit
+	 */
+	private BeanFacts readFacts(ICompilationUnit unit, CompilationUnit ast){
+		String name = unit.getElementName().split(".java")[0];	//name without ~.java at end
+		
+		//all types in the order of the Java model: the top-level types first, then their member types level by level
+		List<AbstractTypeDeclaration> types = new ArrayList<>();
+		List<String> qualifiedNames = new ArrayList<>();
+		//handles of the types, to resolve constants in
+		List<IType> handles = new ArrayList<>();
+		String packageName = ast.getPackage() != null ? ast.getPackage().getName().getFullyQualifiedName() + "." : "";
+		for(Object type : ast.types()){
+			String typeName = ((AbstractTypeDeclaration)type).getName().getIdentifier();
+			types.add((AbstractTypeDeclaration)type);
+			qualifiedNames.add(packageName + typeName);
+			handles.add(unit.getType(typeName));
+		}
+		for(int i = 0; i < types.size(); i++){
+			for(Object declaration : types.get(i).bodyDeclarations()){
+				if(declaration instanceof AbstractTypeDeclaration){
+					String typeName = ((AbstractTypeDeclaration)declaration).getName().getIdentifier();
+					types.add((AbstractTypeDeclaration)declaration);
+					qualifiedNames.add(qualifiedNames.get(i) + "." + typeName);
+					handles.add(handles.get(i).getType(typeName));
+				}
+			}
+		}
+		
+		//the first defined class in compilation unit is described by the facts of the unit
+		if(types.isEmpty()){
+			return new BeanFacts(name, AnnotationSnapshot.NONE, Collections.<BeanFacts.MethodFacts>emptyList());
+		}
+		AnnotationSnapshot classAnnotations = readAnnotations(types.get(0).modifiers(), handles.get(0));
+		
+		//secondary and nested types only show up if they are Java Beans themselves
+		List<BeanFacts> secondaryBeans = new ArrayList<>();
+		for(int i = 1; i < types.size(); i++){
+			AnnotationSnapshot typeAnnotations = readAnnotations(types.get(i).modifiers(), handles.get(i));
+			if(typeAnnotations.getBeanType() != JavaBeanType.NONE){
+				secondaryBeans.add(new BeanFacts(types.get(i).getName().getIdentifier(), qualifiedNames.get(i), typeAnnotations,
+						readMethods(types.get(i), handles.get(i)), Collections.<BeanFacts>emptyList()));
+			}
+		}
+		
+		List<BeanFacts.MethodFacts> methods = classAnnotations.getBeanType() != JavaBeanType.NONE ? readMethods(types.get(0), handles.get(0))
+				: Collections.<BeanFacts.MethodFacts>emptyList();
+		return new BeanFacts(name, qualifiedNames.get(0), classAnnotations, methods, secondaryBeans);
+	}
+	
+	/**
+	 * Reads the methods declared in a bean class, constructors included like in the Java model.
+	 * @param type bean class
+	 * @param handle handle of the bean class
+	 * @return facts of the declared methods
+	 */
+	private List<BeanFacts.MethodFacts> readMethods(AbstractTypeDeclaration type, IType handle){
+		List<BeanFacts.MethodFacts> methods = new ArrayList<>();
+		for(Object declaration : type.bodyDeclarations()){
+			if(declaration instanceof MethodDeclaration){
+				MethodDeclaration method = (MethodDeclaration)declaration;
+				String[] parameterTypes = new String[method.parameters().size()];
+				for(int i = 0; i < parameterTypes.length; i++){
+					SingleVariableDeclaration parameter = (SingleVariableDeclaration)method.parameters().get(i);
+					StringBuilder parameterType = new StringBuilder(getSimpleName(parameter.getType()));
+					for(int dimension = 0; dimension < parameter.getExtraDimensions() + (parameter.isVarargs() ? 1 : 0); dimension++){
+						parameterType.append("[]");
+					}
+					parameterTypes[i] = parameterType.toString();
+				}
+				String returnType = null;
+				if(!method.isConstructor()){
+					StringBuilder erasedReturnType = new StringBuilder(getSimpleName(method.getReturnType2()));
+					for(int dimension = 0; dimension < method.getExtraDimensions(); dimension++){
+						erasedReturnType.append("[]");
+					}
+					returnType = erasedReturnType.toString();
+				}
+				methods.add(new BeanFacts.MethodFacts(method.getName().getIdentifier(), parameterTypes, returnType, readAnnotations(method.modifiers(), handle)));
+			}
+		}
+		return methods;
+	}
+	
+	/**
+	 * Returns the simple name of the erasure of a type, the same way the Java model reports parameter types.
+	 * @param type type as written
+	 * @return simple name, e.g. <code>List</code> for <code>java.util.List&lt;String&gt;</code>
+	 */
+	private static String getSimpleName(Type type){
+		if(type instanceof ParameterizedType){
+			return getSimpleName(((ParameterizedType)type).getType());
+		}
+		if(type instanceof ArrayType){
+			StringBuilder name = new StringBuilder(getSimpleName(((ArrayType)type).getElementType()));
+			for(int dimension = 0; dimension < ((ArrayType)type).getDimensions(); dimension++){
+				name.append("[]");
+			}
+			return name.toString();
+		}
+		if(type instanceof SimpleType){
+			Name name = ((SimpleType)type).getName();
+			return name.isQualifiedName() ? ((QualifiedName)name).getName().getIdentifier() : name.getFullyQualifiedName();
+		}
+		if(type instanceof QualifiedType){
+			return ((QualifiedType)type).getName().getIdentifier();
+		}
+		if(type instanceof NameQualifiedType){
+			return ((NameQualifiedType)type).getName().getIdentifier();
+		}
+		//primitive types
+		return type.toString();
+	}
+	
+	/**
+	 * Reads the relevant annotations among the modifiers of a declaration.
+	 * @param modifiers modifiers of a type or method declaration
+	 * @param type handle of the type the declaration is written in
+	 * @return snapshot of the relevant annotations
+	 */
+	private AnnotationSnapshot readAnnotations(List<?> modifiers, IType type){
+		EnumSet<SecurityAnnotation> annotations = null;
+		Map<SecurityAnnotation, String[]> values = null;
+		for(Object modifier : modifiers){
+			if(!(modifier instanceof Annotation)){
+				continue;
+			}
+			Annotation annotation = (Annotation)modifier;
+			SecurityAnnotation securityAnnotation = SecurityAnnotation.forName(getAnnotationName(annotation));
+			if(securityAnnotation == null){
+				continue;
+			}
+			if(annotations == null){
+				annotations = EnumSet.noneOf(SecurityAnnotation.class);
+				values = new EnumMap<>(SecurityAnnotation.class);
+			}
+			annotations.add(securityAnnotation);
+			
+			if(AnnotationSnapshot.hasRoleValues(securityAnnotation)){
+				String[] annotationValues = getAnnotationValues(getValue(annotation), type);
+				if(annotationValues != null){
+					values.put(securityAnnotation, annotationValues);
+				}
+			}
+		}
+		return annotations == null ? AnnotationSnapshot.NONE : new AnnotationSnapshot(annotations, values);
+	}
+	
+	/**
+	 * Returns the name to match an annotation by.
+	 * @param annotation
+	 * @return qualified name of the resolved annotation type, the name as written if unresolved
+	 */
+	private String getAnnotationName(Annotation annotation){
+		if(resolveBindings){
+			IAnnotationBinding binding = annotation.resolveAnnotationBinding();
+			if(binding != null){
+				ITypeBinding type = binding.getAnnotationType();
+				if(type != null && !type.isRecovered()){
+					return type.getQualifiedName();
+				}
+			}
+		}
+		return annotation.getTypeName().getFullyQualifiedName();
+	}
+	
+	/**
+	 * @param annotation
+	 * @return expression of the annotation's "value" member, null if not given
+	 */
+	private static Expression getValue(Annotation annotation){
+		if(annotation instanceof SingleMemberAnnotation){
+			return ((SingleMemberAnnotation)annotation).getValue();
+		}
+		if(annotation instanceof NormalAnnotation){
+			for(Object pair : ((NormalAnnotation)annotation).values()){
+				if("value".equals(((MemberValuePair)pair).getName().getIdentifier())){
+					return ((MemberValuePair)pair).getValue();
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns an array of the annotation values given by an expression.
+	 * Only one element if the expression is a single value, multiple elements for an array initializer.
+	 * @param expression
+	 * @param type handle of the type the annotation is written in
+	 * @return array of annotation values, null if there is no single String value
+	 */
+	private String[] getAnnotationValues(Expression expression, IType type){
+		if(expression == null){
+			return null;
+		}
+		if(expression instanceof ArrayInitializer){	//multiple annotation values via Array declaration
+			List<?> expressions = ((ArrayInitializer)expression).expressions();
+			List<String> result = new ArrayList<>(expressions.size());
+			for(Object element : expressions){
+				String value = getStringValue((Expression)element, type);
+				if(value != null){
+					result.add(value);
+				}
+			}
+			return result.toArray(new String[result.size()]);
+		}
+		String value = getStringValue(expression, type);
+		return value == null ? null : new String[]{ value };
+	}
+	
+	/**
+	 * Returns the String value of a single annotation value, the same way it is read from the Java model:
+	 * the content of a String literal or the value of a referenced constant, its name if it can't be resolved.
+	 * With bindings, constant expressions get computed instead.
+	 * @param expression
+	 * @param type handle of the type the annotation is written in
+	 * @return String value, null if it can't be determined
+	 */
+	private String getStringValue(Expression expression, IType type){
+		if(resolveBindings){
+			Object constant = expression.resolveConstantExpressionValue();
+			if(constant instanceof String){
+				addDependencies(expression, type);
+				return (String)constant;
+			}
+		}
+		if(expression instanceof StringLiteral){
+			return ((StringLiteral)expression).getLiteralValue();
+		}
+		if(expression instanceof Name){
+			String name = ((Name)expression).getFullyQualifiedName();
+			String value = constants != null ? constants.resolve(type, name) : null;
+			return value != null ? value : name;
+		}
+		return null;
+	}
+	
+	/**
+	 * Records the types declaring the constants a computed expression refers to, so the unit gets extracted again
+	 * when one of them changes.
+	 * @param expression constant expression
+	 * @param type handle of the type the annotation is written in
+	 */
+	private void addDependencies(Expression expression, final IType type){
+		if(constants == null){
+			return;
+		}
+		expression.accept(new ASTVisitor() {
+			@Override
+			public boolean visit(SimpleName name) {
+				IBinding binding = name.resolveBinding();
+				if(binding instanceof IVariableBinding && ((IVariableBinding)binding).isField()){
+					ITypeBinding declaringClass = ((IVariableBinding)binding).getDeclaringClass();
+					if(declaringClass != null){
+						constants.addDependency(type, declaringClass.getErasure().getQualifiedName());
+					}
+				}
+				return false;
+			}
+		});
+	}
+}
@@ -0,0 +1,114 @@
+package ejb.securitymodel.generation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobGroup;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.ui.PlatformUI;
+
+/**
+ * Generates the security models of several projects concurrently, each project writing its own model.
+ * The projects are processed by a job group limited to the number of available processors, a summary
+ * of the per-project results and timings gets reported once all of them are done.
+ *
+ */
+public class BatchGeneration {
+	
+	private final List<IJavaProject> projects;
+	private final String outputPath;
+	
+	/**
+	 * BatchGeneration constructor.
+	 * @param projects Java projects to generate the security models for
+	 * @param outputPath path to save the created model instances to
+	 */
+	public BatchGeneration(List<IJavaProject> projects, String outputPath){
+		this.projects = projects;
+		this.outputPath = outputPath;
+	}
+	
+	/**
+	 * Schedules the generation jobs along with a job reporting their results.
+	 */
+	public void schedule(){
+		if(projects.isEmpty()){
+			return;
+		}
+		final long start = System.nanoTime();
+		int processors = Runtime.getRuntime().availableProcessors();
+		int maxThreads = Math.min(projects.size(), processors);
+		
+		final JobGroup group = new JobGroup("Generating security models", maxThreads, projects.size()) {
+			@Override
+			protected boolean shouldCancel(IStatus lastCompletedJobResult, int numberOfFailedJobs, int numberOfCanceledJobs) {
+				//the projects are independent, one failing project must not cancel the others
+				return false;
+			}
+		};
+		final List<ModelGenerationJob> jobs = new ArrayList<>(projects.size());
+		for(IJavaProject project : projects){
+			ModelGenerationJob job = new ModelGenerationJob(project, outputPath);
+			//share the processors between the projects running at the same time
+			job.setParallelism(Math.max(1, processors / maxThreads));
+			job.setJobGroup(group);
+			jobs.add(job);
+		}
+		for(ModelGenerationJob job : jobs){
+			job.schedule();
+		}
+		
+		Job reportJob = new Job("Reporting security model generation") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				try {
+					group.join(0, monitor);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return Status.CANCEL_STATUS;
+				}
+				report(jobs, (System.nanoTime() - start) / 1000000);
+				return Status.OK_STATUS;
+			}
+		};
+		reportJob.setSystem(true);
+		reportJob.schedule();
+	}
+	
+	/**
+	 * Prints the results of all generation jobs and shows them to the user if more than one project got generated.
+	 * @param jobs finished generation jobs
+	 * @param totalMillis wall-clock time of the whole batch
+	 */
+	private void report(List<ModelGenerationJob> jobs, long totalMillis){
+		StringBuilder sb = new StringBuilder();
+		int failed = 0;
+		for(ModelGenerationJob job : jobs){
+			IStatus result = job.getResult();
+			String status = result == null ? "NOT RUN" : result.isOK() ? "OK" : result.getSeverity() == IStatus.CANCEL ? "CANCELED" : "FAILED";
+			if(result == null || !result.isOK()){
+				failed++;
+			}
+			sb.append(job.getProject().getElementName()).append(": ").append(status)
+			.append(", ").append(job.getBeanCount()).append(" beans, ").append(job.getDurationMillis()).append(" ms\n");
+		}
+		sb.append(jobs.size()).append(" projects, ").append(failed).append(" not successful, ").append(totalMillis).append(" ms in total");
+		
+		final String summary = sb.toString();
+		System.out.println(summary);
+		//this runs in a job, so only talk to the display of a running workbench instead of creating one
+		if(jobs.size() > 1 && PlatformUI.isWorkbenchRunning()){
+			PlatformUI.getWorkbench().getDisplay().asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					MessageDialog.openInformation(null, "Security Model Generation", summary);
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package ejb.securitymodel.generation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.jdt.core.ICompilationUnit;
+
+import de.mkonersmann.ejb31.EnterpriseBean;
+
+/**
+ * Result of extracting the Java Beans of a compilation unit, built independently of the model resource.
+ * Usually a unit declares a single bean, but secondary and nested types may be beans as well.
+ * Besides the beans it records the root-level objects (roles and operation signatures) they refer to,
+ * in the order they were first referenced, so the results of several units can be merged into the resource in a stable order.
+ *
+ */
+public class BeanExtraction {
+	
+	private final ICompilationUnit unit;
+	private final List<EObject> rootObjects;
+	private final List<EnterpriseBean> beans;
+	private final Set<String> supertypes;
+	
+	/**
+	 * BeanExtraction constructor.
+	 * @param unit compilation unit the beans get extracted from, null for compiled classes
+	 */
+	public BeanExtraction(ICompilationUnit unit){
+		this.unit = unit;
+		this.rootObjects = new ArrayList<>();
+		this.beans = new ArrayList<>(1);
+		this.supertypes = new LinkedHashSet<>();
+	}
+	
+	/**
+	 * @return compilation unit the beans got extracted from, null for compiled classes
+	 */
+	public ICompilationUnit getUnit(){
+		return unit;
+	}
+	
+	/**
+	 * @return extracted beans in declaration order, empty if the unit turned out to declare no Java Bean
+	 */
+	public List<EnterpriseBean> getBeans(){
+		return beans;
+	}
+	
+	/**
+	 * @param bean extracted bean
+	 */
+	public void addBean(EnterpriseBean bean){
+		beans.add(bean);
+	}
+	
+	/**
+	 * Records a superclass the beans inherit methods or security from.
+	 * @param qualifiedName qualified name of the superclass
+	 */
+	public void addSupertype(String qualifiedName){
+		supertypes.add(qualifiedName);
+	}
+	
+	/**
+	 * @return qualified names of the superclasses the beans inherit from
+	 */
+	public Set<String> getSupertypes(){
+		return supertypes;
+	}
+	
+	/**
+	 * Records a root-level object the bean refers to.
+	 * @param object role or operation signature
+	 */
+	public void addRootObject(EObject object){
+		rootObjects.add(object);
+	}
+	
+	/**
+	 * @return root-level objects the bean refers to, in order of their first reference, possibly containing shared roles, signatures and data types several times
+	 */
+	public List<EObject> getRootObjects(){
+		return rootObjects;
+	}
+}
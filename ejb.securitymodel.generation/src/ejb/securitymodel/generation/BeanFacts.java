@@ -0,0 +1,253 @@
+package ejb.securitymodel.generation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.Signature;
+
+/**
+ * Security relevant facts of a compilation unit: the name and class-level annotations of its bean class
+ * and the annotations of the declared methods. Everything needed to build the model objects of a bean,
+ * without referring back to the Java model.
+ * <p>
+ * The facts of the unit describe its first top-level type. Beans declared as secondary or nested types of the unit
+ * are described by facts of their own, see {@link #getBeans()}.
+ *
+ */
+public class BeanFacts {
+	
+	/**
+	 * Facts of a single bean method.
+	 */
+	public static class MethodFacts {
+		private final String name;
+		private final String[] parameterTypes;
+		private final String returnType;
+		private final AnnotationSnapshot annotations;
+		
+		/**
+		 * MethodFacts constructor.
+		 * @param name method name
+		 * @param parameterTypes simple names of the erased parameter types, e.g. <code>List</code> or <code>int[]</code>
+		 * @param returnType simple name of the erased return type, <code>void</code> if there is none, null for constructors
+		 * @param annotations annotations of the method
+		 */
+		public MethodFacts(String name, String[] parameterTypes, String returnType, AnnotationSnapshot annotations){
+			this.name = name;
+			this.parameterTypes = parameterTypes;
+			this.returnType = returnType;
+			this.annotations = annotations;
+		}
+		
+		/**
+		 * Reads the facts of a method from the Java model.
+		 * @param method source or binary method
+		 * @param constants resolver for role values given as constants, null to keep the names of the constants
+		 * @return facts of the method
+		 * @throws JavaModelException
+		 */
+		public static MethodFacts of(IMethod method, ConstantResolver constants) throws JavaModelException{
+			String[] parameterSignatures = method.getParameterTypes();
+			String[] parameterTypes = new String[parameterSignatures.length];
+			for(int i = 0; i < parameterSignatures.length; i++){
+				parameterTypes[i] = Signature.getSimpleName(Signature.toString(Signature.getTypeErasure(parameterSignatures[i])));
+			}
+			String returnType = method.isConstructor() ? null
+					: Signature.getSimpleName(Signature.toString(Signature.getTypeErasure(method.getReturnType())));
+			return new MethodFacts(method.getElementName(), parameterTypes, returnType, AnnotationSnapshot.of(method, constants));
+		}
+		
+		/**
+		 * @param annotations annotations replacing the ones of this method, e.g. with inherited or overridden permissions
+		 * @return facts of the same method with the given annotations
+		 */
+		public MethodFacts withAnnotations(AnnotationSnapshot annotations){
+			return new MethodFacts(name, parameterTypes, returnType, annotations);
+		}
+		
+		/**
+		 * @return method name
+		 */
+		public String getName(){
+			return name;
+		}
+		
+		/**
+		 * @return simple names of the erased parameter types
+		 */
+		public String[] getParameterTypes(){
+			return parameterTypes;
+		}
+		
+		/**
+		 * @return simple name of the erased return type, <code>void</code> if there is none, null for constructors
+		 */
+		public String getReturnType(){
+			return returnType;
+		}
+		
+		/**
+		 * Returns a key telling overloaded methods apart, equal for a method and the methods overriding it.
+		 * @return method name followed by the parameter types
+		 */
+		public String getKey(){
+			StringBuilder key = new StringBuilder(name).append('(');
+			for(int i = 0; i < parameterTypes.length; i++){
+				if(i > 0){
+					key.append(',');
+				}
+				key.append(parameterTypes[i]);
+			}
+			return key.append(')').toString();
+		}
+		
+		/**
+		 * @return annotations of the method
+		 */
+		public AnnotationSnapshot getAnnotations(){
+			return annotations;
+		}
+	}
+	
+	private final String name;
+	private final String qualifiedName;
+	private final AnnotationSnapshot classAnnotations;
+	private final List<MethodFacts> methods;
+	private final List<BeanFacts> secondaryBeans;
+	
+	/**
+	 * Creates the facts of a unit without secondary or nested beans.
+	 * @param name bean name
+	 * @param classAnnotations class-level annotations
+	 * @param methods declared methods, empty if the unit is no Java Bean
+	 */
+	public BeanFacts(String name, AnnotationSnapshot classAnnotations, List<MethodFacts> methods){
+		this(name, null, classAnnotations, methods, Collections.<BeanFacts>emptyList());
+	}
+	
+	/**
+	 * BeanFacts constructor.
+	 * @param name bean name
+	 * @param qualifiedName qualified name of the type, with dots separating nested types, null if unknown
+	 * @param classAnnotations class-level annotations
+	 * @param methods declared methods, empty if the type is no Java Bean
+	 * @param secondaryBeans facts of the beans declared as secondary or nested types of the unit
+	 */
+	public BeanFacts(String name, String qualifiedName, AnnotationSnapshot classAnnotations, List<MethodFacts> methods, List<BeanFacts> secondaryBeans){
+		this.name = name;
+		this.qualifiedName = qualifiedName;
+		this.classAnnotations = classAnnotations;
+		this.methods = Collections.unmodifiableList(methods);
+		this.secondaryBeans = Collections.unmodifiableList(secondaryBeans);
+	}
+	
+	/**
+	 * Reads the facts of a compilation unit from the Java model.
+	 * Methods are only read if the unit declares a Java Bean.
+	 * @param unit compilation unit
+	 * @param constants resolver for role values given as constants, null to keep the names of the constants
+	 * @return facts of the unit
+	 * @throws JavaModelException
+	 */
+	public static BeanFacts of(ICompilationUnit unit, ConstantResolver constants) throws JavaModelException{
+		String name = unit.getElementName().split(".java")[0];	//name without ~.java at end
+		
+		//the first defined class in compilation unit is described by the facts of the unit
+		IType[] types = unit.getAllTypes();
+		if(types.length == 0){
+			return new BeanFacts(name, AnnotationSnapshot.NONE, Collections.<MethodFacts>emptyList());
+		}
+		AnnotationSnapshot classAnnotations = AnnotationSnapshot.of(types[0], constants);
+		
+		//secondary and nested types only show up if they are Java Beans themselves
+		List<BeanFacts> secondaryBeans = new ArrayList<>();
+		for(int i = 1; i < types.length; i++){
+			AnnotationSnapshot typeAnnotations = AnnotationSnapshot.of(types[i], constants);
+			if(typeAnnotations.getBeanType() != JavaBeanType.NONE){
+				secondaryBeans.add(new BeanFacts(types[i].getElementName(), types[i].getFullyQualifiedName('.'), typeAnnotations,
+						getMethods(types[i], constants), Collections.<BeanFacts>emptyList()));
+			}
+		}
+		
+		List<MethodFacts> methods = classAnnotations.getBeanType() != JavaBeanType.NONE ? getMethods(types[0], constants) : Collections.<MethodFacts>emptyList();
+		return new BeanFacts(name, types[0].getFullyQualifiedName('.'), classAnnotations, methods, secondaryBeans);
+	}
+	
+	/**
+	 * @param type bean class
+	 * @param constants resolver for role values given as constants, null to keep the names of the constants
+	 * @return facts of all methods declared in the bean class
+	 * @throws JavaModelException
+	 */
+	private static List<MethodFacts> getMethods(IType type, ConstantResolver constants) throws JavaModelException{
+		IMethod[] typeMethods = type.getMethods();
+		List<MethodFacts> methods = new ArrayList<>(typeMethods.length);
+		for(IMethod method : typeMethods){
+			methods.add(MethodFacts.of(method, constants));
+		}
+		return methods;
+	}
+	
+	/**
+	 * @return bean name
+	 */
+	public String getName(){
+		return name;
+	}
+	
+	/**
+	 * @return qualified name of the type, with dots separating nested types, null if unknown
+	 */
+	public String getQualifiedName(){
+		return qualifiedName;
+	}
+	
+	/**
+	 * @return class-level annotations
+	 */
+	public AnnotationSnapshot getClassAnnotations(){
+		return classAnnotations;
+	}
+	
+	/**
+	 * @return bean type, NONE if the unit is no Java Bean
+	 */
+	public JavaBeanType getBeanType(){
+		return classAnnotations.getBeanType();
+	}
+	
+	/**
+	 * @return facts of the declared methods
+	 */
+	public List<MethodFacts> getMethods(){
+		return methods;
+	}
+	
+	/**
+	 * @return facts of the beans declared as secondary or nested types of the unit
+	 */
+	public List<BeanFacts> getSecondaryBeans(){
+		return secondaryBeans;
+	}
+	
+	/**
+	 * @return facts of all beans of the unit in declaration order, the first type first if it is a Java Bean
+	 */
+	public List<BeanFacts> getBeans(){
+		if(getBeanType() == JavaBeanType.NONE){
+			return secondaryBeans;
+		}
+		if(secondaryBeans.isEmpty()){
+			return Collections.singletonList(this);
+		}
+		List<BeanFacts> beans = new ArrayList<>(secondaryBeans.size() + 1);
+		beans.add(this);
+		beans.addAll(secondaryBeans);
+		return beans;
+	}
+}
@@ -0,0 +1,47 @@
+package ejb.securitymodel.generation;
+
+import org.eclipse.core.commands.AbstractHandler;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.ui.handlers.HandlerUtil;
+
+/**
+ * Handler toggling the {@link SecurityModelBuilder} for the selected Java projects.
+ * While enabled, the security model gets updated whenever the project gets built, replacing the incremental regeneration
+ * of {@link IncrementalGenerateHandler}.
+ *
+ */
+public class BuilderToggleHandler extends AbstractHandler {
+	
+	@Override
+	public Object execute(ExecutionEvent event) throws ExecutionException {
+	
+		//getting selected items
+		ISelection selection = HandlerUtil.getActiveWorkbenchWindow(event).getActivePage().getSelection();
+		if(selection != null && selection instanceof IStructuredSelection){
+			for(Object projectObj : ((IStructuredSelection) selection).toList()){
+				if(projectObj instanceof IJavaProject){
+					IProject project = ((IJavaProject)projectObj).getProject();
+					try {
+						boolean enable = !SecurityModelBuilder.isEnabled(project);
+						if(enable){
+							//the builder takes over, two updaters would only write the same model twice
+							IncrementalGenerateHandler.stop((IJavaProject)projectObj);
+						}
+						//the next build generates the model, as the builder has no delta yet
+						SecurityModelBuilder.setEnabled(project, enable);
+					} catch (CoreException e) {
+						throw new ExecutionException("Could not configure the builders of " + project.getName(), e);
+					}
+				}
+			}
+		}
+		return null;
+	}
+	
+}
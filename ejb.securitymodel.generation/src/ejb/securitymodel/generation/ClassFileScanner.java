@@ -0,0 +1,804 @@
+package ejb.securitymodel.generation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+
+/**
+ * Reads the facts of Java Beans straight from compiled classes, for applications only available as deployed archives.
+ * Directories, JARs and archives nested in EARs and WARs are streamed entry by entry without extracting anything.
+ * Each class is first checked for a bean annotation descriptor in its constant pool, only the few classes
+ * referencing one get their <code>RuntimeVisibleAnnotations</code> of class and methods parsed.
+ * <p>
+ * The facts equal the ones read from the sources with two exceptions: role values given as constants are
+ * inlined by the compiler and therefore already computed, and a no-argument constructor without annotations
+ * is taken for the default constructor added by the compiler and left out. The parameters the compiler adds to
+ * the constructors of inner classes and enums are dropped, so constructors have the signatures of the sources.
+ * <p>
+ * Nested bean classes are found just like in the sources. The superclass of every scanned class is recorded, and
+ * base classes of beans that don't carry a bean annotation themselves are parsed in a second pass over the
+ * locations, so beans inherit business methods and class-level security like in the sources. Only superclasses
+ * found in the scanned locations are resolved.
+ *
+ */
+public class ClassFileScanner {
+	
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_STATIC = 0x0008;
+	private static final int ACC_BRIDGE = 0x0040;
+	private static final int ACC_INTERFACE = 0x0200;
+	private static final int ACC_SYNTHETIC = 0x1000;
+	private static final int ACC_ENUM = 0x4000;
+	
+	private static final String OBJECT = "java/lang/Object";
+	
+	private static final byte[] RUNTIME_VISIBLE_ANNOTATIONS = utf8("RuntimeVisibleAnnotations");
+	private static final byte[] INNER_CLASSES = utf8("InnerClasses");
+	
+	//field descriptors of all annotations of interest, e.g. Ljavax/ejb/Stateless;
+	private static final Map<String, SecurityAnnotation> DESCRIPTORS = new HashMap<>();
+	//descriptors of the bean annotations, as raw bytes to compare them with the constant pool without decoding it
+	private static final List<byte[]> BEAN_DESCRIPTORS = new ArrayList<>();
+	static {
+		for(SecurityAnnotation annotation : SecurityAnnotation.values()){
+			for(String qualifiedName : annotation.getQualifiedNames()){
+				String descriptor = "L" + qualifiedName.replace('.', '/') + ";";
+				DESCRIPTORS.put(descriptor, annotation);
+				if(AnnotationSnapshot.isBeanAnnotation(annotation)){
+					BEAN_DESCRIPTORS.add(utf8(descriptor));
+				}
+			}
+		}
+	}
+	
+	//names of the primitive types by their descriptor character
+	private static final Map<Character, String> PRIMITIVE_TYPES = new HashMap<>();
+	static {
+		PRIMITIVE_TYPES.put('B', "byte");
+		PRIMITIVE_TYPES.put('C', "char");
+		PRIMITIVE_TYPES.put('D', "double");
+		PRIMITIVE_TYPES.put('F', "float");
+		PRIMITIVE_TYPES.put('I', "int");
+		PRIMITIVE_TYPES.put('J', "long");
+		PRIMITIVE_TYPES.put('S', "short");
+		PRIMITIVE_TYPES.put('Z', "boolean");
+	}
+	
+	//statistics of the last scan
+	private int classCount;
+	private int parsedCount;
+	
+	//internal names of the bean classes found so far by qualified class name, the first occurrence wins
+	private Map<String, String> beans;
+	//parsed classes by internal name, the bean classes and their superclasses
+	private Map<String, ClassInfo> classes;
+	//internal name of the superclass of every class seen, the first occurrence wins
+	private Map<String, String> superclasses;
+	//superclasses still to be parsed in the second pass, null during the first pass
+	private Set<String> wantedClasses;
+	//deployment descriptors found by the last scan
+	private DeploymentDescriptor descriptor;
+	//reused buffer holding the current class file
+	private byte[] buffer = new byte[64 * 1024];
+	
+	/**
+	 * Scans the given directories and archives for Java Beans.
+	 * @param locations class directories and JAR, WAR or EAR files
+	 * @param monitor progress monitor, may be canceled
+	 * @return facts of the found beans, ordered by qualified class name
+	 * @throws IOException if a location can't be read
+	 */
+	public List<BeanFacts> scan(List<File> locations, IProgressMonitor monitor) throws IOException{
+		SubMonitor subMonitor = SubMonitor.convert(monitor, locations.size() * 2);
+		beans = new HashMap<>();
+		classes = new HashMap<>();
+		superclasses = new HashMap<>();
+		wantedClasses = null;
+		descriptor = new DeploymentDescriptor();
+		classCount = 0;
+		parsedCount = 0;
+		try {
+			scanLocations(locations, subMonitor.split(locations.size()));
+			
+			//base classes without a bean annotation haven't been parsed, as they are only known to be needed now
+			wantedClasses = getMissingSuperclasses();
+			if(!wantedClasses.isEmpty()){
+				scanLocations(locations, subMonitor.split(locations.size()));
+			}
+			
+			//keep the order of the generated model independent of the archive layout
+			List<String> classNames = new ArrayList<>(beans.keySet());
+			Collections.sort(classNames);
+			List<BeanFacts> result = new ArrayList<>(classNames.size());
+			Map<String, SupertypeCache.Supertype> supertypes = new HashMap<>();
+			for(String className : classNames){
+				ClassInfo info = classes.get(beans.get(className));
+				BeanFacts facts = info.getFacts();
+				SupertypeCache.Supertype supertype = (info.access & ACC_INTERFACE) == 0 ? getSupertype(info.superName, supertypes) : null;
+				result.add(supertype != null ? supertype.inherit(facts) : facts);
+			}
+			return result;
+		} finally {
+			beans = null;
+			classes = null;
+			superclasses = null;
+			wantedClasses = null;
+		}
+	}
+	
+	/**
+	 * Scans the given directories and archives once.
+	 * @param locations class directories and JAR, WAR or EAR files
+	 * @param monitor progress monitor, may be canceled
+	 * @throws IOException if a location can't be read
+	 */
+	private void scanLocations(List<File> locations, SubMonitor monitor) throws IOException{
+		monitor.setWorkRemaining(locations.size());
+		for(File location : locations){
+			SubMonitor locationMonitor = monitor.split(1);
+			if(isComplete()){
+				continue;
+			}
+			locationMonitor.subTask(location.getName());
+			if(location.isDirectory()){
+				scanDirectory(location, locationMonitor);
+			}
+			else{
+				try(InputStream in = Files.newInputStream(location.toPath())){
+					scanArchive(in, locationMonitor);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return true if the second pass found all superclasses it looks for
+	 */
+	private boolean isComplete(){
+		return wantedClasses != null && wantedClasses.isEmpty();
+	}
+	
+	/**
+	 * @return internal names of the scanned superclasses of the beans that haven't been parsed
+	 */
+	private Set<String> getMissingSuperclasses(){
+		Set<String> missing = new HashSet<>();
+		Set<String> visited = new HashSet<>();
+		for(String className : beans.values()){
+			for(String name = classes.get(className).superName; name != null && !OBJECT.equals(name) && superclasses.containsKey(name)
+					&& visited.add(name); name = superclasses.get(name)){
+				if(!classes.containsKey(name)){
+					missing.add(name);
+				}
+			}
+		}
+		return missing;
+	}
+	
+	/**
+	 * Resolves a superclass along with the classes it extends, the same way the {@link SupertypeCache} does for the sources.
+	 * @param name internal name of the superclass
+	 * @param supertypes superclasses resolved so far by internal name
+	 * @return resolved superclass, null for Object and classes outside of the scanned locations
+	 */
+	private SupertypeCache.Supertype getSupertype(String name, Map<String, SupertypeCache.Supertype> supertypes){
+		if(name == null || OBJECT.equals(name) || !classes.containsKey(name)){
+			return null;
+		}
+		if(supertypes.containsKey(name)){
+			//null while the class is being resolved, which breaks cycles of corrupt class files
+			return supertypes.get(name);
+		}
+		supertypes.put(name, null);
+		ClassInfo info = classes.get(name);
+		List<BeanFacts.MethodFacts> businessMethods = new ArrayList<>();
+		for(MethodInfo method : info.methods){
+			//business methods are public instance methods
+			if((method.access & (ACC_PUBLIC | ACC_STATIC | ACC_SYNTHETIC | ACC_BRIDGE)) == ACC_PUBLIC && !method.name.startsWith("<")){
+				businessMethods.add(new BeanFacts.MethodFacts(method.name, getParameterTypes(method.descriptor),
+						getReturnType(method.descriptor), method.annotations));
+			}
+		}
+		SupertypeCache.Supertype supertype = SupertypeCache.Supertype.of(info.getQualifiedName(), info.classAnnotations, businessMethods,
+				getSupertype(info.superName, supertypes));
+		supertypes.put(name, supertype);
+		return supertype;
+	}
+	
+	/**
+	 * @return content of the deployment descriptors found by the last scan, empty if there were none
+	 */
+	public DeploymentDescriptor getDescriptor(){
+		return descriptor;
+	}
+	
+	/**
+	 * @return number of class files seen by the last scan
+	 */
+	public int getClassCount(){
+		return classCount;
+	}
+	
+	/**
+	 * @return number of class files passing the constant pool check, which got parsed completely
+	 */
+	public int getParsedCount(){
+		return parsedCount;
+	}
+	
+	private void scanDirectory(File directory, SubMonitor monitor) throws IOException{
+		File[] files = directory.listFiles();
+		if(files == null){
+			return;
+		}
+		//sorted for a deterministic choice between duplicate classes
+		Arrays.sort(files);
+		for(File file : files){
+			monitor.checkCanceled();
+			if(isComplete()){
+				return;
+			}
+			if(file.isDirectory()){
+				scanDirectory(file, monitor);
+			}
+			else if(file.getName().endsWith(".class")){
+				try(InputStream in = Files.newInputStream(file.toPath())){
+					readClass(in);
+				}
+			}
+			else if(isArchive(file.getName())){
+				try(InputStream in = Files.newInputStream(file.toPath())){
+					scanArchive(in, monitor);
+				}
+			}
+			else if(wantedClasses == null && DeploymentDescriptor.isDescriptor(file.getPath())){
+				try(InputStream in = Files.newInputStream(file.toPath())){
+					descriptor.read(in);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Streams the entries of an archive, descending into nested archives.
+	 * @param in archive content, not closed
+	 * @param monitor progress monitor, checked for cancellation
+	 * @throws IOException
+	 */
+	private void scanArchive(InputStream in, SubMonitor monitor) throws IOException{
+		//not closed, that would close the enclosing stream
+		ZipInputStream zip = new ZipInputStream(in);
+		ZipEntry entry;
+		while((entry = zip.getNextEntry()) != null){
+			monitor.checkCanceled();
+			if(isComplete()){
+				return;
+			}
+			if(entry.isDirectory()){
+				continue;
+			}
+			if(entry.getName().endsWith(".class")){
+				readClass(zip);
+			}
+			else if(isArchive(entry.getName())){
+				scanArchive(zip, monitor);
+			}
+			else if(wantedClasses == null && DeploymentDescriptor.isDescriptor(entry.getName())){
+				descriptor.read(zip);
+			}
+		}
+	}
+	
+	private static boolean isArchive(String name){
+		return name.endsWith(".jar") || name.endsWith(".war") || name.endsWith(".ear") || name.endsWith(".rar");
+	}
+	
+	/**
+	 * Reads a class file completely into the buffer and records its superclass. Parses the class if it declares
+	 * a Java Bean or, in the second pass, if it is a superclass looked for.
+	 * @param in class file content, not closed
+	 * @throws IOException
+	 */
+	private void readClass(InputStream in) throws IOException{
+		int length = 0;
+		int read;
+		while((read = in.read(buffer, length, buffer.length - length)) != -1){
+			length += read;
+			if(length == buffer.length){
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+		}
+		if(wantedClasses == null){
+			classCount++;
+		}
+		try {
+			new ClassFile(buffer, length).read();
+		} catch (IndexOutOfBoundsException e) {
+			//truncated or corrupt class file, can't declare a bean we could read anyway
+		}
+	}
+	
+	/**
+	 * Parser of a single class file, only reading as far as needed.
+	 */
+	private class ClassFile {
+		private final byte[] bytes;
+		private final int length;
+		//offset of each constant pool entry, pointing behind the tag
+		private int[] constants;
+		private int position;
+		//simple name of a nested class as given in the source, empty for anonymous and local classes
+		private String innerName;
+		//access flags of a nested class as given in the source
+		private int innerAccess;
+		
+		ClassFile(byte[] bytes, int length){
+			this.bytes = bytes;
+			this.length = length;
+		}
+		
+		/**
+		 * Records the superclass and parses the class if it is of interest.
+		 */
+		void read(){
+			if(length < 10 || readInt(0) != 0xCAFEBABE){
+				return;
+			}
+			position = 8;
+			boolean beanReference = readConstantPool();
+			
+			int access = readUnsignedShort();
+			int thisClass = readUnsignedShort();
+			String className = getClassName(thisClass);
+			int superClass = readUnsignedShort();
+			String superName = superClass == 0 ? null : getClassName(superClass);
+			if(!superclasses.containsKey(className)){
+				superclasses.put(className, superName);
+			}
+			boolean wanted = wantedClasses == null ? beanReference : wantedClasses.remove(className);
+			if(!wanted || classes.containsKey(className)){
+				return;
+			}
+			
+			parsedCount++;
+			
+			int interfaceCount = readUnsignedShort();
+			position += 2 * interfaceCount;
+			
+			//fields aren't of interest
+			int fieldCount = readUnsignedShort();
+			for(int i = 0; i < fieldCount; i++){
+				position += 6;
+				skipAttributes();
+			}
+			
+			ClassInfo info = new ClassInfo();
+			info.name = className;
+			info.superName = superName;
+			info.access = access;
+			int methodCount = readUnsignedShort();
+			for(int i = 0; i < methodCount; i++){
+				MethodInfo method = new MethodInfo();
+				method.access = readUnsignedShort();
+				method.name = getUtf8(readUnsignedShort());
+				method.descriptor = getUtf8(readUnsignedShort());
+				method.annotations = readAnnotationAttributes(-1);
+				info.methods.add(method);
+			}
+			info.classAnnotations = readAnnotationAttributes(thisClass);
+			info.innerName = innerName;
+			info.innerAccess = innerAccess;
+			
+			if(wantedClasses != null){
+				//superclass looked for in the second pass
+				classes.put(className, info);
+				return;
+			}
+			if(info.classAnnotations.getBeanType() == JavaBeanType.NONE || "".equals(innerName)){
+				//bean annotation only referenced elsewhere, or within an anonymous or local class
+				return;
+			}
+			String qualifiedName = info.getQualifiedName();
+			if(!beans.containsKey(qualifiedName)){
+				beans.put(qualifiedName, className);
+				classes.put(className, info);
+			}
+		}
+		
+		/**
+		 * Records the offsets of the constant pool entries.
+		 * @return true if the pool contains the descriptor of a bean annotation
+		 */
+		private boolean readConstantPool(){
+			int count = readUnsignedShort();
+			constants = new int[count];
+			boolean beanReference = false;
+			for(int i = 1; i < count; i++){
+				int tag = bytes[position++];
+				constants[i] = position;
+				switch(tag){
+				case 1:	//Utf8
+					int utf8Length = readUnsignedShort(position);
+					if(!beanReference && isBeanDescriptor(position + 2, utf8Length)){
+						beanReference = true;
+					}
+					position += 2 + utf8Length;
+					break;
+				case 5:	//Long
+				case 6:	//Double
+					position += 8;
+					i++;
+					break;
+				case 3:	//Integer
+				case 4:	//Float
+				case 9:	//Fieldref
+				case 10:	//Methodref
+				case 11:	//InterfaceMethodref
+				case 12:	//NameAndType
+				case 17:	//Dynamic
+				case 18:	//InvokeDynamic
+					position += 4;
+					break;
+				case 15:	//MethodHandle
+					position += 3;
+					break;
+				case 7:	//Class
+				case 8:	//String
+				case 16:	//MethodType
+				case 19:	//Module
+				case 20:	//Package
+					position += 2;
+					break;
+				default:
+					throw new IndexOutOfBoundsException("Unknown constant pool tag " + tag);
+				}
+			}
+			return beanReference;
+		}
+		
+		private boolean isBeanDescriptor(int offset, int utf8Length){
+			for(byte[] descriptor : BEAN_DESCRIPTORS){
+				if(descriptor.length == utf8Length && regionMatches(offset, descriptor)){
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		private boolean regionMatches(int offset, byte[] expected){
+			for(int i = 0; i < expected.length; i++){
+				if(bytes[offset + i] != expected[i]){
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * Reads the attributes at the current position, keeping the relevant annotations.
+		 * @param thisClass constant pool index of the class if these are class attributes, -1 for member attributes
+		 * @return snapshot of the relevant annotations
+		 */
+		private AnnotationSnapshot readAnnotationAttributes(int thisClass){
+			AnnotationSnapshot snapshot = AnnotationSnapshot.NONE;
+			int attributeCount = readUnsignedShort();
+			for(int i = 0; i < attributeCount; i++){
+				int nameIndex = readUnsignedShort();
+				int attributeLength = readInt(position);
+				position += 4;
+				int end = position + attributeLength;
+				if(utf8Equals(nameIndex, RUNTIME_VISIBLE_ANNOTATIONS)){
+					snapshot = readAnnotations();
+				}
+				else if(thisClass > 0 && utf8Equals(nameIndex, INNER_CLASSES)){
+					readInnerClass(thisClass);
+				}
+				position = end;
+			}
+			return snapshot;
+		}
+		
+		/**
+		 * Reads the InnerClasses attribute at the current position. If it lists the class itself, the simple name of the
+		 * class is recorded, empty for anonymous and local classes, along with its access flags as given in the source.
+		 * Top-level classes aren't listed, their simple name stays null.
+		 * @param thisClass constant pool index of the class
+		 */
+		private void readInnerClass(int thisClass){
+			int count = readUnsignedShort();
+			for(int i = 0; i < count; i++){
+				int innerClass = readUnsignedShort(position);
+				int outerClass = readUnsignedShort(position + 2);
+				int innerNameIndex = readUnsignedShort(position + 4);
+				int access = readUnsignedShort(position + 6);
+				position += 8;
+				if(innerClass == thisClass){
+					//local classes have a name, but no outer class
+					innerName = innerNameIndex == 0 || outerClass == 0 ? "" : getUtf8(innerNameIndex);
+					innerAccess = access;
+				}
+			}
+		}
+		
+		private AnnotationSnapshot readAnnotations(){
+			EnumSet<SecurityAnnotation> annotations = null;
+			Map<SecurityAnnotation, String[]> values = null;
+			int count = readUnsignedShort();
+			for(int i = 0; i < count; i++){
+				SecurityAnnotation securityAnnotation = DESCRIPTORS.get(getUtf8(readUnsignedShort()));
+				String[] annotationValues = null;
+				int pairCount = readUnsignedShort();
+				for(int p = 0; p < pairCount; p++){
+					String memberName = getUtf8(readUnsignedShort());
+					if(securityAnnotation != null && AnnotationSnapshot.hasRoleValues(securityAnnotation) && "value".equals(memberName)){
+						annotationValues = readValues();
+					}
+					else{
+						skipElementValue();
+					}
+				}
+				if(securityAnnotation == null){
+					continue;
+				}
+				if(annotations == null){
+					annotations = EnumSet.noneOf(SecurityAnnotation.class);
+					values = new EnumMap<>(SecurityAnnotation.class);
+				}
+				annotations.add(securityAnnotation);
+				if(annotationValues != null){
+					values.put(securityAnnotation, annotationValues);
+				}
+			}
+			return annotations == null ? AnnotationSnapshot.NONE : new AnnotationSnapshot(annotations, values);
+		}
+		
+		/**
+		 * Reads the String values of an element value, which is either a single String or an array.
+		 * @return array of String values, null if the value is no String
+		 */
+		private String[] readValues(){
+			int tag = bytes[position++];
+			if(tag == 's'){
+				return new String[]{ getUtf8(readUnsignedShort()) };
+			}
+			if(tag == '['){
+				int count = readUnsignedShort();
+				List<String> result = new ArrayList<>(count);
+				for(int i = 0; i < count; i++){
+					if(bytes[position] == 's'){
+						position++;
+						result.add(getUtf8(readUnsignedShort()));
+					}
+					else{
+						skipElementValue();
+					}
+				}
+				return result.toArray(new String[result.size()]);
+			}
+			position--;
+			skipElementValue();
+			return null;
+		}
+		
+		private void skipElementValue(){
+			int tag = bytes[position++];
+			switch(tag){
+			case 'e':
+				position += 4;
+				break;
+			case '@':
+				position += 2;
+				int pairCount = readUnsignedShort();
+				for(int i = 0; i < pairCount; i++){
+					position += 2;
+					skipElementValue();
+				}
+				break;
+			case '[':
+				int count = readUnsignedShort();
+				for(int i = 0; i < count; i++){
+					skipElementValue();
+				}
+				break;
+			default:	//constants and class literals
+				position += 2;
+				break;
+			}
+		}
+		
+		private void skipAttributes(){
+			int attributeCount = readUnsignedShort();
+			for(int i = 0; i < attributeCount; i++){
+				position += 2;
+				position += 4 + readInt(position);
+			}
+		}
+		
+		private String getClassName(int classIndex){
+			return getUtf8(readUnsignedShort(constants[classIndex]));
+		}
+		
+		private boolean utf8Equals(int index, byte[] expected){
+			int offset = constants[index];
+			return readUnsignedShort(offset) == expected.length && regionMatches(offset + 2, expected);
+		}
+		
+		private String getUtf8(int index){
+			int offset = constants[index];
+			//modified UTF-8 only differs from UTF-8 for \0 and supplementary characters, which don't occur in names and roles
+			return new String(bytes, offset + 2, readUnsignedShort(offset), StandardCharsets.UTF_8);
+		}
+		
+		private int readUnsignedShort(){
+			int value = readUnsignedShort(position);
+			position += 2;
+			return value;
+		}
+		
+		private int readUnsignedShort(int offset){
+			if(offset + 2 > length){
+				throw new IndexOutOfBoundsException();
+			}
+			return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+		}
+		
+		private int readInt(int offset){
+			return (readUnsignedShort(offset) << 16) | readUnsignedShort(offset + 2);
+		}
+	}
+	
+	/**
+	 * Parsed class file of a bean class or one of its superclasses.
+	 */
+	private static class ClassInfo {
+		String name;
+		String superName;
+		int access;
+		String innerName;
+		int innerAccess;
+		AnnotationSnapshot classAnnotations;
+		final List<MethodInfo> methods = new ArrayList<>();
+		
+		/**
+		 * @return qualified name of the class, with dots separating nested classes
+		 */
+		String getQualifiedName(){
+			return name.replace('/', '.').replace('$', '.');
+		}
+		
+		/**
+		 * @return number of parameters the compiler adds in front of the parameters of a constructor as written in the source
+		 */
+		int getImplicitParameterCount(){
+			if((access & ACC_ENUM) != 0){
+				//name and ordinal of the constant
+				return 2;
+			}
+			if(innerName != null && (innerAccess & ACC_STATIC) == 0){
+				//instance of the enclosing class
+				return 1;
+			}
+			return 0;
+		}
+		
+		/**
+		 * @return facts of the class with the methods it declares
+		 */
+		BeanFacts getFacts(){
+			//nested classes are named like in the source, Outer$Inner is just Inner
+			String simpleName = innerName != null ? innerName : name.substring(name.lastIndexOf('/') + 1);
+			int implicitParameters = getImplicitParameterCount();
+			
+			List<BeanFacts.MethodFacts> facts = new ArrayList<>(methods.size());
+			int constructorCount = 0;
+			for(MethodInfo method : methods){
+				if("<init>".equals(method.name)){
+					constructorCount++;
+				}
+			}
+			for(MethodInfo method : methods){
+				if((method.access & (ACC_SYNTHETIC | ACC_BRIDGE)) != 0 || "<clinit>".equals(method.name)){
+					continue;
+				}
+				String methodName = method.name;
+				String[] parameterTypes = getParameterTypes(method.descriptor);
+				String returnType = getReturnType(method.descriptor);
+				if("<init>".equals(methodName)){
+					parameterTypes = Arrays.copyOfRange(parameterTypes, Math.min(implicitParameters, parameterTypes.length), parameterTypes.length);
+					if(constructorCount == 1 && parameterTypes.length == 0 && method.annotations == AnnotationSnapshot.NONE){
+						//most likely the default constructor, which isn't part of the sources
+						continue;
+					}
+					methodName = simpleName;
+					returnType = null;
+				}
+				facts.add(new BeanFacts.MethodFacts(methodName, parameterTypes, returnType, method.annotations));
+			}
+			return new BeanFacts(simpleName, getQualifiedName(), classAnnotations, facts, Collections.<BeanFacts>emptyList());
+		}
+	}
+	
+	/**
+	 * Method read from a class file, before deciding whether it is part of the facts.
+	 */
+	private static class MethodInfo {
+		int access;
+		String name;
+		String descriptor;
+		AnnotationSnapshot annotations;
+	}
+	
+	/**
+	 * Decodes the parameter types of a method descriptor the same way the Java model reports them for sources.
+	 * @param descriptor method descriptor, e.g. <code>(Ljava/util/List;[I)V</code>
+	 * @return simple names of the parameter types, e.g. <code>List</code> and <code>int[]</code>
+	 */
+	private static String[] getParameterTypes(String descriptor){
+		List<String> parameterTypes = new ArrayList<>();
+		int[] index = { 1 };
+		while(descriptor.charAt(index[0]) != ')'){
+			parameterTypes.add(decodeType(descriptor, index));
+		}
+		return parameterTypes.toArray(new String[parameterTypes.size()]);
+	}
+	
+	/**
+	 * Decodes the return type of a method descriptor the same way the Java model reports it for sources.
+	 * @param descriptor method descriptor, e.g. <code>(Ljava/util/List;[I)V</code>
+	 * @return simple name of the return type, e.g. <code>void</code>
+	 */
+	private static String getReturnType(String descriptor){
+		int[] index = { descriptor.indexOf(')') + 1 };
+		return descriptor.charAt(index[0]) == 'V' ? "void" : decodeType(descriptor, index);
+	}
+	
+	/**
+	 * Decodes a single field type of a descriptor.
+	 * @param descriptor field or method descriptor
+	 * @param index start of the type, set to the end of the type afterwards
+	 * @return simple name of the type, e.g. <code>List</code> or <code>int[]</code>
+	 */
+	private static String decodeType(String descriptor, int[] index){
+		int dimensions = 0;
+		while(descriptor.charAt(index[0]) == '['){
+			dimensions++;
+			index[0]++;
+		}
+		String type;
+		if(descriptor.charAt(index[0]) == 'L'){
+			int end = descriptor.indexOf(';', index[0]);
+			String className = descriptor.substring(index[0] + 1, end);
+			type = className.substring(Math.max(className.lastIndexOf('/'), className.lastIndexOf('$')) + 1);
+			index[0] = end + 1;
+		}
+		else{
+			type = PRIMITIVE_TYPES.get(descriptor.charAt(index[0]++));
+		}
+		StringBuilder decoded = new StringBuilder(type);
+		for(int i = 0; i < dimensions; i++){
+			decoded.append("[]");
+		}
+		return decoded.toString();
+	}
+	
+	private static byte[] utf8(String value){
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,506 @@
+package ejb.securitymodel.generation;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.jdt.core.Flags;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IField;
+import org.eclipse.jdt.core.IImportDeclaration;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Resolves references to String constants, as in <code>@RolesAllowed(Roles.ADMIN)</code>, to their values.
+ * <p>
+ * The String constants of a type are read once and kept for the whole run, just like the type a name written in a
+ * type refers to, so a constants class referred to by thousands of annotations is only analysed once. Simple names
+ * are looked up in the type itself, its enclosing types, its supertypes and its static imports. Only constants given
+ * by a literal or by a reference to another constant are resolved, other constant expressions are not computed.
+ * <p>
+ * Units referring to constants declared in another source unit are recorded, so they can be extracted again when
+ * that unit changes. The source types a constant's value was followed through count as well, so a unit referring to
+ * <code>A.X = Other.Y</code> depends on both <code>A</code> and <code>Other</code>. Units referring to a constant that
+ * doesn't resolve, e.g. because its type doesn't exist yet, keep the name as value and are recorded as well, with the
+ * simple name of the type the constant is qualified with. Compiled classes don't need any of this,
+ * the compiler inlines the values into the annotations.
+ *
+ */
+public class ConstantResolver {
+	
+	//constants referring to other constants are followed up to this depth, which also breaks cycles
+	private static final int MAX_DEPTH = 4;
+	//marks names that don't resolve, as the maps can't hold null
+	private static final String UNRESOLVED = "";
+	
+	/**
+	 * String constants of a type.
+	 */
+	private static class TypeConstants {
+		final Map<String, String> values = new HashMap<>();
+		//unit declaring the type, null for compiled types
+		ICompilationUnit unit;
+		//source types the values were read from, this type and the ones of referenced constants, with their units
+		final Map<String, ICompilationUnit> sources = new HashMap<>();
+	}
+	
+	//qualified type name followed by '#' and a name as written in that type, mapped to the qualified name of the type declaring the field
+	private final ConcurrentMap<String, String> declaringTypes;
+	private final ConcurrentMap<String, TypeConstants> constants;
+	//units referring to constants of other source units, with the qualified names of the types declaring them
+	private final ConcurrentMap<ICompilationUnit, Set<String>> dependencies;
+	//units referring to constants that don't resolve, with the simple names of their qualifying types, empty for simple names
+	private final ConcurrentMap<ICompilationUnit, Set<String>> unresolved;
+	
+	/**
+	 * ConstantResolver constructor.
+	 */
+	public ConstantResolver(){
+		this.declaringTypes = new ConcurrentHashMap<>();
+		this.constants = new ConcurrentHashMap<>();
+		this.dependencies = new ConcurrentHashMap<>();
+		this.unresolved = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Resolves a reference to a String constant, recording the reference if it doesn't resolve.
+	 * @param context type the reference is written in
+	 * @param name simple or qualified name of the constant as written, e.g. <code>ADMIN</code> or <code>Roles.ADMIN</code>
+	 * @return value of the constant, null if the name doesn't denote a String constant
+	 */
+	public String resolve(IType context, String name){
+		String value = resolve(context, name, 0);
+		if(value == null && context != null && context.getCompilationUnit() != null){
+			//the type declaring the constant may still be created, e.g. Roles of Roles.ADMIN or any type for ADMIN
+			int separator = name.lastIndexOf('.');
+			addDependency(unresolved, context.getCompilationUnit(), separator < 0 ? "" : name.substring(name.lastIndexOf('.', separator - 1) + 1, separator));
+		}
+		return value;
+	}
+	
+	private String resolve(IType context, String name, int depth){
+		TypeConstants typeConstants = lookup(context, name, depth);
+		return typeConstants == null ? null : typeConstants.values.get(name.substring(name.lastIndexOf('.') + 1));
+	}
+	
+	/**
+	 * Finds the constants of the type declaring the constant a name refers to and records the dependency on it.
+	 * @param context type the name is written in
+	 * @param name simple or qualified name of the constant
+	 * @param depth number of constants followed so far
+	 * @return constants of the declaring type, null if there is none
+	 */
+	private TypeConstants lookup(IType context, String name, int depth){
+		if(context == null || depth > MAX_DEPTH){
+			return null;
+		}
+		try {
+			String typeName = getDeclaringType(context, name, depth);
+			if(typeName == null){
+				return null;
+			}
+			TypeConstants typeConstants = getConstants(context, typeName, depth);
+			addDependencies(context.getCompilationUnit(), typeConstants);
+			return typeConstants;
+		} catch (JavaModelException e) {
+			//types that can't be read declare no constants
+			return null;
+		}
+	}
+	
+	/**
+	 * Records that a constant referred to in a type is declared in the given type, for references resolved by other means,
+	 * e.g. through the bindings of a syntax tree.
+	 * @param context type the reference is written in
+	 * @param typeName qualified name of the type declaring the constant
+	 */
+	public void addDependency(IType context, String typeName){
+		if(context == null){
+			return;
+		}
+		try {
+			addDependencies(context.getCompilationUnit(), getConstants(context, typeName, 0));
+		} catch (JavaModelException e) {
+			//types that can't be read declare no constants
+		}
+	}
+	
+	/**
+	 * Records the source types a unit refers to constants of, unless they are declared in the unit itself.
+	 * @param unit unit the reference is written in, null for compiled types
+	 * @param typeConstants constants of the referenced type
+	 */
+	private void addDependencies(ICompilationUnit unit, TypeConstants typeConstants){
+		if(unit == null){
+			return;
+		}
+		for(Map.Entry<String, ICompilationUnit> source : typeConstants.sources.entrySet()){
+			if(!source.getValue().equals(unit)){
+				addDependency(dependencies, unit, source.getKey());
+			}
+		}
+	}
+	
+	/**
+	 * @param unitDependencies dependencies by unit to add to
+	 * @param unit unit the reference is written in
+	 * @param typeName name of the type the unit depends on
+	 */
+	private static void addDependency(ConcurrentMap<ICompilationUnit, Set<String>> unitDependencies, ICompilationUnit unit, String typeName){
+		Set<String> typeNames = unitDependencies.get(unit);
+		if(typeNames == null){
+			Set<String> newTypeNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+			typeNames = unitDependencies.putIfAbsent(unit, newTypeNames);
+			if(typeNames == null){
+				typeNames = newTypeNames;
+			}
+		}
+		typeNames.add(typeName);
+	}
+	
+	/**
+	 * Finds the type declaring the constant a name refers to.
+	 * @param context type the name is written in
+	 * @param name simple or qualified name of the constant
+	 * @param depth number of constants followed so far
+	 * @return qualified name of the declaring type, null if there is none
+	 * @throws JavaModelException
+	 */
+	private String getDeclaringType(IType context, String name, int depth) throws JavaModelException{
+		String key = context.getFullyQualifiedName('.') + '#' + name;
+		String typeName = declaringTypes.get(key);
+		if(typeName == null){
+			int separator = name.lastIndexOf('.');
+			if(separator >= 0){
+				typeName = resolveType(context, name.substring(0, separator));
+			}
+			else{
+				typeName = findDeclaringType(context, name, depth);
+			}
+			declaringTypes.putIfAbsent(key, typeName == null ? UNRESOLVED : typeName);
+		}
+		return typeName == null || typeName.equals(UNRESOLVED) ? null : typeName;
+	}
+	
+	/**
+	 * Looks a constant written by its simple name up in the type, its enclosing types, its supertypes and its static imports.
+	 * @param context type the name is written in
+	 * @param fieldName simple name of the constant
+	 * @param depth number of constants followed so far
+	 * @return qualified name of the declaring type, null if there is none
+	 * @throws JavaModelException
+	 */
+	private String findDeclaringType(IType context, String fieldName, int depth) throws JavaModelException{
+		for(IType type = context; type != null; type = type.getDeclaringType()){
+			String typeName = findInHierarchy(type, type.getFullyQualifiedName('.'), fieldName, depth, new HashSet<String>());
+			if(typeName != null){
+				return typeName;
+			}
+		}
+		
+		ICompilationUnit unit = context.getCompilationUnit();
+		if(unit == null){
+			return null;
+		}
+		for(IImportDeclaration importDeclaration : unit.getImports()){
+			if(!Flags.isStatic(importDeclaration.getFlags())){
+				continue;
+			}
+			String imported = importDeclaration.getElementName();
+			int separator = imported.lastIndexOf('.');
+			if(separator < 0){
+				continue;
+			}
+			//either import static Roles.ADMIN or import static Roles.*
+			String member = imported.substring(separator + 1);
+			if(member.equals(fieldName) || (importDeclaration.isOnDemand() && member.equals("*"))){
+				String typeName = imported.substring(0, separator);
+				if(getConstants(context, typeName, depth).values.containsKey(fieldName)){
+					return typeName;
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @param context type to resolve supertype names in
+	 * @param typeName qualified name of the type to search
+	 * @param fieldName simple name of the constant
+	 * @param depth number of constants followed so far
+	 * @param visited qualified names of the types searched already
+	 * @return qualified name of the type or supertype declaring the constant, null if there is none
+	 * @throws JavaModelException
+	 */
+	private String findInHierarchy(IType context, String typeName, String fieldName, int depth, Set<String> visited) throws JavaModelException{
+		if(typeName == null || !visited.add(typeName)){
+			return null;
+		}
+		TypeConstants typeConstants = getConstants(context, typeName, depth);
+		if(typeConstants.values.containsKey(fieldName)){
+			return typeName;
+		}
+		IType type = context.getJavaProject().findType(typeName);
+		if(type == null){
+			return null;
+		}
+		String superclass = type.getSuperclassName();
+		if(superclass != null){
+			String found = findInHierarchy(type, resolveType(type, superclass), fieldName, depth, visited);
+			if(found != null){
+				return found;
+			}
+		}
+		for(String superInterface : type.getSuperInterfaceNames()){
+			String found = findInHierarchy(type, resolveType(type, superInterface), fieldName, depth, visited);
+			if(found != null){
+				return found;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @param context type the name is written in
+	 * @param typeName simple or qualified type name as written
+	 * @return qualified name of the type, null if it can't be resolved unambiguously
+	 * @throws JavaModelException
+	 */
+	private static String resolveType(IType context, String typeName) throws JavaModelException{
+		String[][] resolved = context.resolveType(typeName);
+		if(resolved == null || resolved.length != 1){
+			return null;
+		}
+		return resolved[0][0].isEmpty() ? resolved[0][1] : resolved[0][0] + "." + resolved[0][1];
+	}
+	
+	/**
+	 * Returns the String constants of a type, reading them on first request.
+	 * @param context type whose project the type is looked up in
+	 * @param typeName qualified name of the type
+	 * @param depth number of constants followed so far
+	 * @return constants of the type, empty if the type doesn't exist
+	 * @throws JavaModelException
+	 */
+	private TypeConstants getConstants(IType context, String typeName, int depth) throws JavaModelException{
+		TypeConstants typeConstants = constants.get(typeName);
+		if(typeConstants != null){
+			return typeConstants;
+		}
+		typeConstants = new TypeConstants();
+		IType type = context.getJavaProject().findType(typeName);
+		if(type != null){
+			typeConstants.unit = type.getCompilationUnit();
+			if(typeConstants.unit != null){
+				typeConstants.sources.put(typeName, typeConstants.unit);
+			}
+			//initializers referring to other constants, resolved once all literals are known
+			Map<String, String> references = new LinkedHashMap<>();
+			for(IField field : type.getFields()){
+				Object constant = field.getConstant();
+				if(!(constant instanceof String)){
+					continue;
+				}
+				//compiled fields report the value, source fields the initializer as written
+				String initializer = ((String)constant).trim();
+				if(field.isBinary()){
+					typeConstants.values.put(field.getElementName(), (String)constant);
+				}
+				else if(isLiteral(initializer)){
+					String value = unescape(initializer.substring(1, initializer.length() - 1));
+					if(value != null){
+						typeConstants.values.put(field.getElementName(), value);
+					}
+				}
+				else if(isName(initializer)){
+					references.put(field.getElementName(), initializer);
+				}
+			}
+			resolveReferences(type, typeConstants, references, depth);
+		}
+		TypeConstants known = constants.putIfAbsent(typeName, typeConstants);
+		return known != null ? known : typeConstants;
+	}
+	
+	/**
+	 * Resolves the constants of a type that refer to other constants, those of the same type included.
+	 * @param type type declaring the constants
+	 * @param typeConstants constants of the type given by a literal, completed by the resolved ones
+	 * @param references initializers of the constants referring to other constants
+	 * @param depth number of constants followed so far
+	 */
+	private void resolveReferences(IType type, TypeConstants typeConstants, Map<String, String> references, int depth){
+		//constants of the same type may refer to each other in any order
+		boolean resolved = true;
+		while(resolved && !references.isEmpty()){
+			resolved = false;
+			for(Iterator<Map.Entry<String, String>> entries = references.entrySet().iterator(); entries.hasNext();){
+				Map.Entry<String, String> entry = entries.next();
+				String value = typeConstants.values.get(entry.getValue());
+				if(value != null){
+					typeConstants.values.put(entry.getKey(), value);
+					entries.remove();
+					resolved = true;
+				}
+			}
+		}
+		for(Map.Entry<String, String> entry : references.entrySet()){
+			//a simple name left over refers to no constant of this type, as long as the references don't form a cycle
+			if(entry.getValue().indexOf('.') >= 0 || !references.containsKey(entry.getValue())){
+				TypeConstants referenced = lookup(type, entry.getValue(), depth + 1);
+				String value = referenced == null ? null : referenced.values.get(entry.getValue().substring(entry.getValue().lastIndexOf('.') + 1));
+				if(value != null){
+					typeConstants.values.put(entry.getKey(), value);
+					//units referring to this constant depend on the types it got its value from
+					typeConstants.sources.putAll(referenced.sources);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @param initializer initializer as written
+	 * @return true if the initializer starts and ends like a String literal
+	 */
+	private static boolean isLiteral(String initializer){
+		return initializer.length() >= 2 && initializer.charAt(0) == '"' && initializer.charAt(initializer.length() - 1) == '"';
+	}
+	
+	/**
+	 * @param literal content of a String literal
+	 * @return represented String, null if the literal is no single String literal, e.g. a concatenation
+	 */
+	private static String unescape(String literal){
+		StringBuilder value = new StringBuilder(literal.length());
+		for(int i = 0; i < literal.length(); i++){
+			char c = literal.charAt(i);
+			if(c == '"'){
+				return null;
+			}
+			if(c != '\\' || i + 1 == literal.length()){
+				value.append(c);
+				continue;
+			}
+			c = literal.charAt(++i);
+			switch(c){
+			case 'b': value.append('\b'); break;
+			case 't': value.append('\t'); break;
+			case 'n': value.append('\n'); break;
+			case 'f': value.append('\f'); break;
+			case 'r': value.append('\r'); break;
+			case 'u':
+				while(i + 1 < literal.length() && literal.charAt(i + 1) == 'u'){
+					i++;
+				}
+				if(i + 4 >= literal.length()){
+					return null;
+				}
+				try {
+					value.append((char)Integer.parseInt(literal.substring(i + 1, i + 5), 16));
+				} catch (NumberFormatException e) {
+					return null;
+				}
+				i += 4;
+				break;
+			default:
+				//quotes, backslashes and octal escapes of the first digit only
+				value.append(c >= '0' && c <= '7' ? (char)(c - '0') : c);
+			}
+		}
+		return value.toString();
+	}
+	
+	/**
+	 * @param text initializer
+	 * @return true if the text is a simple or qualified name
+	 */
+	private static boolean isName(String text){
+		boolean start = true;
+		for(int i = 0; i < text.length(); i++){
+			char c = text.charAt(i);
+			if(c == '.' && !start){
+				start = true;
+			}
+			else if(start ? Character.isJavaIdentifierStart(c) : Character.isJavaIdentifierPart(c)){
+				start = false;
+			}
+			else{
+				return false;
+			}
+		}
+		return !start;
+	}
+	
+	/**
+	 * @param unit compilation unit
+	 * @return true if annotations of the unit refer to constants declared in another source unit or to constants that don't resolve
+	 */
+	public boolean hasDependencies(ICompilationUnit unit){
+		return dependencies.containsKey(unit) || unresolved.containsKey(unit);
+	}
+	
+	/**
+	 * @param typeNames qualified names of changed types
+	 * @return units referring to constants declared in one of the types, or followed through them,
+	 * and units referring to constants that don't resolve and might be declared in one of them
+	 */
+	public Collection<ICompilationUnit> getDependentUnits(Set<String> typeNames){
+		Set<ICompilationUnit> units = new HashSet<>();
+		for(Map.Entry<ICompilationUnit, Set<String>> entry : dependencies.entrySet()){
+			if(!Collections.disjoint(entry.getValue(), typeNames)){
+				units.add(entry.getKey());
+			}
+		}
+		if(!unresolved.isEmpty() && !typeNames.isEmpty()){
+			Set<String> simpleNames = new HashSet<>();
+			//a simple name may be declared in any type
+			simpleNames.add("");
+			for(String typeName : typeNames){
+				simpleNames.add(typeName.substring(typeName.lastIndexOf('.') + 1));
+			}
+			for(Map.Entry<ICompilationUnit, Set<String>> entry : unresolved.entrySet()){
+				if(!Collections.disjoint(entry.getValue(), simpleNames)){
+					units.add(entry.getKey());
+				}
+			}
+		}
+		return units;
+	}
+	
+	/**
+	 * Forgets the dependencies of units about to be extracted again, which records their current dependencies.
+	 * @param units units to be extracted again
+	 */
+	public void removeDependencies(Collection<ICompilationUnit> units){
+		dependencies.keySet().removeAll(units);
+		unresolved.keySet().removeAll(units);
+	}
+	
+	/**
+	 * Forgets what has been read from the given types, as they have been changed.
+	 * All constants are read again if one of them has been read, as constants of other types may refer to it.
+	 * @param typeNames qualified names of the changed types
+	 */
+	public void invalidate(Set<String> typeNames){
+		if(!Collections.disjoint(constants.keySet(), typeNames)){
+			constants.clear();
+			declaringTypes.clear();
+			return;
+		}
+		//the imports of a changed type may have changed, names that didn't resolve may refer to a changed type now
+		for(Iterator<Map.Entry<String, String>> entries = declaringTypes.entrySet().iterator(); entries.hasNext();){
+			Map.Entry<String, String> entry = entries.next();
+			if(entry.getValue().equals(UNRESOLVED) || typeNames.contains(entry.getKey().substring(0, entry.getKey().indexOf('#')))){
+				entries.remove();
+			}
+		}
+	}
+}
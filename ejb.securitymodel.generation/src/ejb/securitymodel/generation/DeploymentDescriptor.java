@@ -0,0 +1,477 @@
+package ejb.securitymodel.generation;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.IJavaProject;
+
+/**
+ * Security relevant content of the <code>ejb-jar.xml</code> deployment descriptors of an application, merged over the
+ * facts read from the annotations. The descriptors are streamed in a single pass, only the security roles, the run-as
+ * identities, the method permissions and the exclude list are kept.
+ * <p>
+ * The override rules of the EJB specification apply: a method covered by a method permission of the descriptor gets
+ * exactly the permissions of all matching method permissions, whether they name all methods of the bean, the method
+ * name or the method name and its parameters, instead of its annotations. An unchecked method permission permits all,
+ * a method on the exclude list is denied to everyone regardless of any permission. A run-as identity replaces the
+ * RunAs annotation and the security roles are declared by all beans.
+ *
+ */
+public class DeploymentDescriptor {
+	
+	/**
+	 * Name of the deployment descriptor file.
+	 */
+	public static final String FILE_NAME = "ejb-jar.xml";
+	
+	//method name of a method element naming all methods of a bean
+	private static final String ALL_METHODS = "*";
+	
+	private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+	static {
+		//descriptors are data, never resolve anything outside of them
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+	}
+	
+	/**
+	 * Permissions given to a method by the descriptor.
+	 */
+	private static class Permission {
+		final Set<String> roles = new LinkedHashSet<>();
+		boolean unchecked;
+		boolean excluded;
+		
+		void add(Permission permission){
+			roles.addAll(permission.roles);
+			unchecked |= permission.unchecked;
+			excluded |= permission.excluded;
+		}
+		
+		/**
+		 * @param annotations annotations of the method
+		 * @return annotations with the permissions replaced by the ones of the descriptor
+		 */
+		AnnotationSnapshot apply(AnnotationSnapshot annotations){
+			if(excluded){
+				return annotations.overridePermissions(SecurityAnnotation.DENY_ALL, null);
+			}
+			if(unchecked){
+				return annotations.overridePermissions(SecurityAnnotation.PERMIT_ALL, null);
+			}
+			if(!roles.isEmpty()){
+				return annotations.overridePermissions(SecurityAnnotation.ROLES_ALLOWED, roles.toArray(new String[roles.size()]));
+			}
+			return annotations;
+		}
+	}
+	
+	/**
+	 * Descriptor content of a bean, with the method permissions indexed by the way they name the methods.
+	 */
+	private static class BeanEntry {
+		String runAs;
+		//method permissions naming all methods, the method name, or the method name and its parameter types
+		Permission allMethods;
+		final Map<String, Permission> byName = new HashMap<>();
+		final Map<String, Permission> byKey = new HashMap<>();
+		
+		boolean hasPermissions(){
+			return allMethods != null || !byName.isEmpty() || !byKey.isEmpty();
+		}
+		
+		/**
+		 * @param method facts of a method
+		 * @return union of the permissions matching the method, null if none does
+		 */
+		Permission getPermission(BeanFacts.MethodFacts method){
+			Permission byMethodName = byName.get(method.getName());
+			Permission byMethodKey = byKey.isEmpty() ? null : byKey.get(method.getKey());
+			if(byMethodName == null && byMethodKey == null){
+				return allMethods;
+			}
+			Permission permission = new Permission();
+			for(Permission matching : new Permission[]{ allMethods, byMethodName, byMethodKey }){
+				if(matching != null){
+					permission.add(matching);
+				}
+			}
+			return permission;
+		}
+	}
+	
+	/**
+	 * A method element, naming one or more methods of a bean.
+	 */
+	private static class MethodElement {
+		String ejbName;
+		String methodName;
+		//null if the parameters aren't given, naming all overloaded methods
+		List<String> parameterTypes;
+	}
+	
+	//descriptor content by ejb-name
+	private final Map<String, BeanEntry> beans;
+	//ejb-name by qualified name of the bean class, with dots separating nested classes
+	private final Map<String, String> ejbNames;
+	private final Set<String> declaredRoles;
+	private int descriptorCount;
+	
+	/**
+	 * Creates a descriptor without any content, see {@link #read(InputStream)}.
+	 */
+	public DeploymentDescriptor(){
+		this.beans = new HashMap<>();
+		this.ejbNames = new HashMap<>();
+		this.declaredRoles = new LinkedHashSet<>();
+	}
+	
+	/**
+	 * Reads the deployment descriptors within the META-INF and WEB-INF folders of a Java project, skipping the build output.
+	 * @param project Java project
+	 * @return content of all descriptors of the project, empty if it has none
+	 * @throws IOException if a descriptor can't be read
+	 */
+	public static DeploymentDescriptor of(IJavaProject project) throws IOException{
+		DeploymentDescriptor descriptor = new DeploymentDescriptor();
+		final List<IFile> files = new ArrayList<>();
+		try {
+			final IPath outputLocation = project.getOutputLocation();
+			project.getProject().accept(new IResourceProxyVisitor() {
+				@Override
+				public boolean visit(IResourceProxy proxy) {
+					if(proxy.isDerived()){
+						return false;
+					}
+					switch(proxy.getType()){
+					case IResource.FILE:
+						if(FILE_NAME.equals(proxy.getName())){
+							IResource file = proxy.requestResource();
+							if(isDescriptor(file.getProjectRelativePath().toString())){
+								files.add((IFile)file);
+							}
+						}
+						return false;
+					case IResource.FOLDER:
+						return !outputLocation.isPrefixOf(proxy.requestFullPath());
+					default:
+						return true;
+					}
+				}
+			}, IResource.NONE);
+			
+			//read in a stable order, in case several descriptors name the same bean
+			Collections.sort(files, new Comparator<IFile>() {
+				@Override
+				public int compare(IFile file1, IFile file2) {
+					return file1.getFullPath().toString().compareTo(file2.getFullPath().toString());
+				}
+			});
+			for(IFile file : files){
+				try(InputStream in = file.getContents()){
+					descriptor.read(in);
+				}
+			}
+		} catch (CoreException e) {
+			throw new IOException("Could not read the deployment descriptors of " + project.getElementName(), e);
+		}
+		return descriptor;
+	}
+	
+	/**
+	 * @param path path of a file within a project, archive or directory
+	 * @return true if the file is a deployment descriptor of an EJB or web module
+	 */
+	public static boolean isDescriptor(String path){
+		String normalized = path.replace('\\', '/');
+		return normalized.endsWith("META-INF/" + FILE_NAME) || normalized.endsWith("WEB-INF/" + FILE_NAME);
+	}
+	
+	/**
+	 * Streams a deployment descriptor and adds its security relevant content.
+	 * @param in descriptor content, not closed
+	 * @throws IOException if the descriptor can't be parsed
+	 */
+	public void read(InputStream in) throws IOException{
+		//the parser closes its input once done, which must not close an enclosing archive
+		InputStream unclosable = new FilterInputStream(in) {
+			@Override
+			public void close() {
+				//left to the caller
+			}
+		};
+		try {
+			XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(unclosable);
+			try {
+				read(reader);
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Invalid deployment descriptor: " + e.getMessage(), e);
+		}
+		descriptorCount++;
+	}
+	
+	/**
+	 * Reads all elements of a descriptor, keeping track of the enclosing element of each one.
+	 * @param reader descriptor reader
+	 * @throws XMLStreamException
+	 */
+	private void read(XMLStreamReader reader) throws XMLStreamException{
+		Deque<String> elements = new ArrayDeque<>();
+		StringBuilder text = new StringBuilder();
+		
+		//enterprise bean being read
+		String ejbName = null;
+		String ejbClass = null;
+		String runAs = null;
+		//method permission or exclude list being read
+		List<String> roles = new ArrayList<>();
+		boolean unchecked = false;
+		List<MethodElement> methods = new ArrayList<>();
+		MethodElement method = null;
+		
+		while(reader.hasNext()){
+			switch(reader.next()){
+			case XMLStreamConstants.START_ELEMENT:
+				String startName = reader.getLocalName();
+				if("method".equals(startName)){
+					method = new MethodElement();
+				}
+				else if("method-params".equals(startName) && method != null){
+					method.parameterTypes = new ArrayList<>();
+				}
+				else if("unchecked".equals(startName)){
+					unchecked = true;
+				}
+				elements.push(startName);
+				text.setLength(0);
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+				text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				String name = elements.pop();
+				String parent = elements.peek();
+				String value = text.toString().trim();
+				text.setLength(0);
+				switch(name){
+				case "ejb-name":
+					if("method".equals(parent) && method != null){
+						method.ejbName = value;
+					}
+					else if(isBeanElement(parent)){
+						ejbName = value;
+					}
+					break;
+				case "ejb-class":
+					if(isBeanElement(parent)){
+						ejbClass = value;
+					}
+					break;
+				case "role-name":
+					if("method-permission".equals(parent)){
+						roles.add(value);
+					}
+					else if("run-as".equals(parent)){
+						runAs = value;
+					}
+					else if("security-role".equals(parent)){
+						declaredRoles.add(value);
+					}
+					break;
+				case "method-name":
+					if(method != null){
+						method.methodName = value;
+					}
+					break;
+				case "method-param":
+					if(method != null && method.parameterTypes != null){
+						method.parameterTypes.add(getSimpleName(value));
+					}
+					break;
+				case "method":
+					//methods of container transactions and the like are of no interest
+					if(method != null && method.ejbName != null && method.methodName != null
+							&& ("method-permission".equals(parent) || "exclude-list".equals(parent))){
+						methods.add(method);
+					}
+					method = null;
+					break;
+				case "session":
+				case "message-driven":
+				case "entity":
+					if(ejbName != null){
+						BeanEntry bean = getBean(ejbName);
+						if(runAs != null){
+							bean.runAs = runAs;
+						}
+						if(ejbClass != null){
+							ejbNames.put(ejbClass.replace('$', '.'), ejbName);
+						}
+					}
+					ejbName = null;
+					ejbClass = null;
+					runAs = null;
+					break;
+				case "method-permission":
+				case "exclude-list":
+					Permission permission = new Permission();
+					permission.roles.addAll(roles);
+					permission.unchecked = unchecked;
+					permission.excluded = "exclude-list".equals(name);
+					for(MethodElement element : methods){
+						addPermission(element, permission);
+					}
+					roles.clear();
+					unchecked = false;
+					methods.clear();
+					break;
+				default:
+					break;
+				}
+				break;
+			default:
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * @param element element name, null for the root
+	 * @return true if the element declares an enterprise bean
+	 */
+	private static boolean isBeanElement(String element){
+		return "session".equals(element) || "message-driven".equals(element) || "entity".equals(element);
+	}
+	
+	/**
+	 * Indexes a permission by the way the method element names the methods.
+	 * @param method method element
+	 * @param permission permission of the named methods
+	 */
+	private void addPermission(MethodElement method, Permission permission){
+		BeanEntry bean = getBean(method.ejbName);
+		Permission indexed;
+		if(ALL_METHODS.equals(method.methodName)){
+			if(bean.allMethods == null){
+				bean.allMethods = new Permission();
+			}
+			indexed = bean.allMethods;
+		}
+		else{
+			Map<String, Permission> index = method.parameterTypes == null ? bean.byName : bean.byKey;
+			String key = method.parameterTypes == null ? method.methodName : getKey(method);
+			indexed = index.get(key);
+			if(indexed == null){
+				indexed = new Permission();
+				index.put(key, indexed);
+			}
+		}
+		indexed.add(permission);
+	}
+	
+	private BeanEntry getBean(String ejbName){
+		BeanEntry bean = beans.get(ejbName);
+		if(bean == null){
+			bean = new BeanEntry();
+			beans.put(ejbName, bean);
+		}
+		return bean;
+	}
+	
+	/**
+	 * @param method method element with parameters
+	 * @return key of the method like {@link BeanFacts.MethodFacts#getKey()}
+	 */
+	private static String getKey(MethodElement method){
+		StringBuilder key = new StringBuilder(method.methodName).append('(');
+		for(int i = 0; i < method.parameterTypes.size(); i++){
+			if(i > 0){
+				key.append(',');
+			}
+			key.append(method.parameterTypes.get(i));
+		}
+		return key.append(')').toString();
+	}
+	
+	/**
+	 * @param type fully qualified parameter type as given in the descriptor, e.g. <code>java.lang.String[]</code>
+	 * @return simple name of the type like in the method facts, e.g. <code>String[]</code>
+	 */
+	private static String getSimpleName(String type){
+		int arrayStart = type.indexOf('[');
+		String componentType = arrayStart < 0 ? type : type.substring(0, arrayStart);
+		int nameStart = Math.max(componentType.lastIndexOf('.'), componentType.lastIndexOf('$')) + 1;
+		return type.substring(nameStart).trim();
+	}
+	
+	/**
+	 * @return true if no descriptor with relevant content has been read
+	 */
+	public boolean isEmpty(){
+		return beans.isEmpty() && declaredRoles.isEmpty();
+	}
+	
+	/**
+	 * @return number of descriptors read
+	 */
+	public int getDescriptorCount(){
+		return descriptorCount;
+	}
+	
+	/**
+	 * Merges the descriptor content over the facts of a bean. The bean is identified by its class if the descriptor
+	 * names it, by its name, the default ejb-name, otherwise.
+	 * @param facts facts of a single bean, without secondary beans
+	 * @return facts of the bean with the descriptor's security, the given facts if the descriptor doesn't cover the bean
+	 */
+	public BeanFacts merge(BeanFacts facts){
+		String ejbName = facts.getQualifiedName() != null ? ejbNames.get(facts.getQualifiedName()) : null;
+		BeanEntry bean = beans.get(ejbName != null ? ejbName : facts.getName());
+		if(bean == null && declaredRoles.isEmpty()){
+			return facts;
+		}
+		
+		AnnotationSnapshot classAnnotations = facts.getClassAnnotations().declareRoles(declaredRoles);
+		List<BeanFacts.MethodFacts> methods = facts.getMethods();
+		if(bean != null){
+			if(bean.runAs != null){
+				classAnnotations = classAnnotations.overrideRunAs(bean.runAs);
+			}
+			if(bean.hasPermissions()){
+				methods = new ArrayList<>(facts.getMethods().size());
+				for(BeanFacts.MethodFacts method : facts.getMethods()){
+					Permission permission = bean.getPermission(method);
+					methods.add(permission == null ? method : method.withAnnotations(permission.apply(method.getAnnotations())));
+				}
+			}
+		}
+		return new BeanFacts(facts.getName(), facts.getQualifiedName(), classAnnotations, methods, Collections.<BeanFacts>emptyList());
+	}
+}
@@ -0,0 +1,12 @@
+package ejb.securitymodel.generation;
+
+/**
+ * Enum representing the possible strategies to find the Java Beans of a project.
+ *
+ */
+public enum DiscoveryMode {
+	/** open every compilation unit of the project and check its annotations */
+	SCAN,
+	/** query the JDT search index for references to the bean annotations and only check the matching units */
+	INDEX
+}
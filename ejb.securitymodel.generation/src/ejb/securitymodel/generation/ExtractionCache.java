@@ -0,0 +1,351 @@
+package ejb.securitymodel.generation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+
+/**
+ * Persistent cache of the facts extracted per compilation unit, stored in the project's working location.
+ * An entry is valid as long as the modification stamp of the unit's file is unchanged. If the stamp differs,
+ * e.g. after importing the project into a fresh workspace, the entry is still used if the file content hash matches.
+ * The extraction engines don't read exactly the same facts, e.g. only bindings compute constant expressions, so every
+ * engine has a cache file of its own.
+ *
+ */
+public class ExtractionCache {
+	
+	//bump whenever the file layout or the content of the facts changes
+	private static final int FORMAT_VERSION = 4;
+	private static final String CACHE_FILE_PREFIX = "extraction-";
+	private static final String CACHE_FILE_SUFFIX = ".cache";
+	
+	/**
+	 * Cached facts of a single compilation unit.
+	 */
+	private static class Entry {
+		long modificationStamp;
+		byte[] contentHash;
+		BeanFacts facts;
+	}
+	
+	private final File cacheFile;
+	private final Map<String, Entry> entries;
+	//handle identifiers of the units requested since loading
+	private final Set<String> touched;
+	//content hashes of changed units computed while looking them up, until their new facts are stored
+	private final Map<String, byte[]> pendingHashes;
+	private boolean dirty;
+	
+	private ExtractionCache(File cacheFile){
+		this.cacheFile = cacheFile;
+		this.entries = new HashMap<>();
+		this.touched = new HashSet<>();
+		this.pendingHashes = new HashMap<>();
+	}
+	
+	/**
+	 * Loads the cache of the given project, starting with an empty cache if there is none or it can't be read.
+	 * @param project Java project
+	 * @param engine extraction engine the cached facts are read with
+	 * @return extraction cache of the project for the engine
+	 */
+	public static ExtractionCache load(IJavaProject project, ExtractionEngine engine){
+		String fileName = CACHE_FILE_PREFIX + engine.name().toLowerCase(Locale.ROOT) + CACHE_FILE_SUFFIX;
+		File cacheFile = project.getProject().getWorkingLocation(ModelGenerationJob.PLUGIN_ID).append(fileName).toFile();
+		ExtractionCache cache = new ExtractionCache(cacheFile);
+		if(cacheFile.isFile()){
+			try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile.toPath())))){
+				cache.read(in);
+			} catch (IOException e) {
+				//outdated or corrupt cache, simply start over
+				cache.entries.clear();
+			}
+		}
+		return cache;
+	}
+	
+	/**
+	 * Returns the cached facts of the given compilation unit if the unit is unchanged.
+	 * Units are looked up from parallel extraction threads, so only the map access is synchronized, not the hashing.
+	 * @param unit compilation unit
+	 * @return facts of the unit, null if they have to be read again
+	 */
+	public BeanFacts getCachedFacts(ICompilationUnit unit){
+		String key = unit.getHandleIdentifier();
+		Entry entry;
+		synchronized(this){
+			touched.add(key);
+			entry = entries.get(key);
+		}
+		
+		IResource resource = unit.getResource();
+		if(entry == null || !(resource instanceof IFile)){
+			return null;
+		}
+		long modificationStamp = resource.getModificationStamp();
+		synchronized(this){
+			if(entry.modificationStamp == modificationStamp){
+				return entry.facts;
+			}
+		}
+		
+		byte[] contentHash = hash((IFile)resource);
+		synchronized(this){
+			if(contentHash != null && Arrays.equals(entry.contentHash, contentHash)){
+				//same content with a new stamp, e.g. after a workspace import
+				entry.modificationStamp = modificationStamp;
+				dirty = true;
+				return entry.facts;
+			}
+			//keep the hash for the facts read next, so the file doesn't have to be hashed twice
+			if(contentHash != null){
+				pendingHashes.put(key, contentHash);
+			}
+			return null;
+		}
+	}
+	
+	/**
+	 * Stores the freshly read facts of the given compilation unit.
+	 * @param unit compilation unit
+	 * @param facts facts of the unit
+	 */
+	public void putFacts(ICompilationUnit unit, BeanFacts facts){
+		String key = unit.getHandleIdentifier();
+		byte[] contentHash;
+		synchronized(this){
+			touched.add(key);
+			contentHash = pendingHashes.remove(key);
+		}
+		
+		IResource resource = unit.getResource();
+		if(!(resource instanceof IFile)){
+			return;
+		}
+		Entry entry = new Entry();
+		entry.modificationStamp = resource.getModificationStamp();
+		entry.contentHash = contentHash != null ? contentHash : hash((IFile)resource);
+		entry.facts = facts;
+		if(entry.contentHash != null){
+			synchronized(this){
+				entries.put(key, entry);
+				dirty = true;
+			}
+		}
+	}
+	
+	/**
+	 * Drops the entries of all units not requested since loading, e.g. because they got deleted.
+	 */
+	public synchronized void retainTouched(){
+		if(entries.keySet().retainAll(touched)){
+			dirty = true;
+		}
+	}
+	
+	/**
+	 * Writes the cache back to disk if it changed.
+	 * @throws IOException
+	 */
+	public synchronized void save() throws IOException{
+		if(!dirty){
+			return;
+		}
+		File dir = cacheFile.getParentFile();
+		if(!dir.isDirectory() && !dir.mkdirs()){
+			throw new IOException("Could not create cache directory " + dir);
+		}
+		Path tempFile = Files.createTempFile(dir.toPath(), cacheFile.getName(), ".tmp");
+		try {
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))){
+				write(out);
+			}
+			try {
+				Files.move(tempFile, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			dirty = false;
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+	
+	/**
+	 * Computes the content hash of a file.
+	 * @param file
+	 * @return SHA-1 hash of the file content, null if the file can't be read
+	 */
+	private static byte[] hash(IFile file){
+		try(InputStream in = file.getContents(true)){
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = in.read(buffer)) != -1){
+				digest.update(buffer, 0, read);
+			}
+			return digest.digest();
+		} catch (CoreException | IOException | NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+	
+	private void read(DataInputStream in) throws IOException{
+		if(in.readInt() != FORMAT_VERSION){
+			return;
+		}
+		int count = in.readInt();
+		for(int i = 0; i < count; i++){
+			String key = in.readUTF();
+			Entry entry = new Entry();
+			entry.modificationStamp = in.readLong();
+			entry.contentHash = new byte[in.readUnsignedByte()];
+			in.readFully(entry.contentHash);
+			entry.facts = readFacts(in);
+			entries.put(key, entry);
+		}
+	}
+	
+	/**
+	 * Reads the facts of a unit followed by the facts of its secondary beans.
+	 */
+	private static BeanFacts readFacts(DataInputStream in) throws IOException{
+		String name = in.readUTF();
+		String qualifiedName = in.readBoolean() ? in.readUTF() : null;
+		AnnotationSnapshot classAnnotations = readSnapshot(in);
+		int methodCount = in.readInt();
+		List<BeanFacts.MethodFacts> methods = new ArrayList<>(methodCount);
+		for(int m = 0; m < methodCount; m++){
+			String methodName = in.readUTF();
+			String[] parameterTypes = new String[in.readUnsignedByte()];
+			for(int p = 0; p < parameterTypes.length; p++){
+				parameterTypes[p] = in.readUTF();
+			}
+			String returnType = in.readBoolean() ? in.readUTF() : null;
+			methods.add(new BeanFacts.MethodFacts(methodName, parameterTypes, returnType, readSnapshot(in)));
+		}
+		int secondaryCount = in.readInt();
+		List<BeanFacts> secondaryBeans = new ArrayList<>(secondaryCount);
+		for(int b = 0; b < secondaryCount; b++){
+			secondaryBeans.add(readFacts(in));
+		}
+		return new BeanFacts(name, qualifiedName, classAnnotations, methods, secondaryBeans);
+	}
+	
+	private void write(DataOutputStream out) throws IOException{
+		out.writeInt(FORMAT_VERSION);
+		out.writeInt(entries.size());
+		for(Map.Entry<String, Entry> mapEntry : entries.entrySet()){
+			Entry entry = mapEntry.getValue();
+			out.writeUTF(mapEntry.getKey());
+			out.writeLong(entry.modificationStamp);
+			out.writeByte(entry.contentHash.length);
+			out.write(entry.contentHash);
+			writeFacts(out, entry.facts);
+		}
+	}
+	
+	private static void writeFacts(DataOutputStream out, BeanFacts facts) throws IOException{
+		out.writeUTF(facts.getName());
+		out.writeBoolean(facts.getQualifiedName() != null);
+		if(facts.getQualifiedName() != null){
+			out.writeUTF(facts.getQualifiedName());
+		}
+		writeSnapshot(out, facts.getClassAnnotations());
+		out.writeInt(facts.getMethods().size());
+		for(BeanFacts.MethodFacts method : facts.getMethods()){
+			out.writeUTF(method.getName());
+			//Java limits methods to 255 parameters
+			out.writeByte(method.getParameterTypes().length);
+			for(String parameterType : method.getParameterTypes()){
+				out.writeUTF(parameterType);
+			}
+			out.writeBoolean(method.getReturnType() != null);
+			if(method.getReturnType() != null){
+				out.writeUTF(method.getReturnType());
+			}
+			writeSnapshot(out, method.getAnnotations());
+		}
+		out.writeInt(facts.getSecondaryBeans().size());
+		for(BeanFacts secondaryBean : facts.getSecondaryBeans()){
+			writeFacts(out, secondaryBean);
+		}
+	}
+	
+	/**
+	 * Reads an annotation snapshot stored as bit mask of the annotation ordinals followed by the role values.
+	 */
+	private static AnnotationSnapshot readSnapshot(DataInputStream in) throws IOException{
+		int mask = in.readInt();
+		if(mask == 0){
+			return AnnotationSnapshot.NONE;
+		}
+		EnumSet<SecurityAnnotation> annotations = EnumSet.noneOf(SecurityAnnotation.class);
+		Map<SecurityAnnotation, String[]> values = new EnumMap<>(SecurityAnnotation.class);
+		for(SecurityAnnotation annotation : SecurityAnnotation.values()){
+			if((mask & (1 << annotation.ordinal())) != 0){
+				annotations.add(annotation);
+			}
+		}
+		int valueCount = in.readUnsignedByte();
+		for(int i = 0; i < valueCount; i++){
+			SecurityAnnotation annotation = SecurityAnnotation.values()[in.readUnsignedByte()];
+			String[] roles = new String[in.readInt()];
+			for(int r = 0; r < roles.length; r++){
+				roles[r] = in.readUTF();
+			}
+			values.put(annotation, roles);
+		}
+		return new AnnotationSnapshot(annotations, values);
+	}
+	
+	private static void writeSnapshot(DataOutputStream out, AnnotationSnapshot snapshot) throws IOException{
+		int mask = 0;
+		List<SecurityAnnotation> withValues = new ArrayList<>();
+		for(SecurityAnnotation annotation : snapshot.getAnnotations()){
+			mask |= 1 << annotation.ordinal();
+			if(snapshot.getValues(annotation) != null){
+				withValues.add(annotation);
+			}
+		}
+		out.writeInt(mask);
+		if(mask == 0){
+			return;
+		}
+		out.writeByte(withValues.size());
+		for(SecurityAnnotation annotation : withValues){
+			out.writeByte(annotation.ordinal());
+			String[] roles = snapshot.getValues(annotation);
+			out.writeInt(roles.length);
+			for(String role : roles){
+				out.writeUTF(role);
+			}
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package ejb.securitymodel.generation;
+
+/**
+ * Enum representing the possible ways to read the facts of the compilation units.
+ *
+ */
+public enum ExtractionEngine {
+	/** read the annotations unit by unit through the handles of the Java model */
+	JAVA_MODEL,
+	/** parse the units in batches and read the annotations from the syntax trees, matching annotation names as written */
+	AST,
+	/** like AST, but resolve bindings to match annotations by their qualified type and compute constant role values */
+	AST_BINDINGS
+}
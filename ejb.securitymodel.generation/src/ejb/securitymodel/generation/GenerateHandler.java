@@ -1,10 +1,12 @@
 package ejb.securitymodel.generation;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.eclipse.core.commands.AbstractHandler;
 import org.eclipse.core.commands.ExecutionEvent;
 import org.eclipse.core.commands.ExecutionException;
 import org.eclipse.jdt.core.IJavaProject;
-import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.ui.handlers.HandlerUtil;
@@ -12,7 +14,7 @@ import org.eclipse.ui.handlers.HandlerUtil;
 
 
 /**
- * Handler getting called by clicking the added menu entry on a Java project to generate the security model from.
+ * Handler getting called by clicking the added menu entry on one or more Java projects to generate the security models from.
  * 
  * @author Fabian Glittenberg
  * 
@@ -22,28 +24,21 @@ public class GenerateHandler extends AbstractHandler{
 	@Override
 	public Object execute(ExecutionEvent event) throws ExecutionException {
 
-		//getting selected item
+		//getting selected items
 		ISelection selection = HandlerUtil.getActiveWorkbenchWindow(event).getActivePage().getSelection();
-		//casting it to IStructuredSelection to retrieve first element
+		List<IJavaProject> projects = new ArrayList<>();
+		//casting it to IStructuredSelection to retrieve all selected elements
 		if(selection != null && selection instanceof IStructuredSelection){
-			IStructuredSelection strucSelection = (IStructuredSelection) selection;
-			Object projectObj = strucSelection.getFirstElement();
-			
-			//double checking type safety before attaining IJavaProject
-			if(projectObj instanceof IJavaProject){
-				
-				try {
-					IJavaProject project = (IJavaProject)projectObj;
-					
-					//Generating the security model for the selected project
-					ModelGenerator generator = new ModelGenerator();
-					generator.generateModel(project, "ejb.securitymodel.generation");					
-					
-				} catch (JavaModelException e) {
-					e.printStackTrace();
+			for(Object projectObj : ((IStructuredSelection) selection).toList()){
+				//double checking type safety before attaining IJavaProject
+				if(projectObj instanceof IJavaProject){
+					projects.add((IJavaProject)projectObj);
 				}
 			}
 		}
+		
+		//Generating the security models for the selected projects in the background
+		new BatchGeneration(projects, ModelGenerationJob.PLUGIN_ID).schedule();
 		return null;
 	}
 
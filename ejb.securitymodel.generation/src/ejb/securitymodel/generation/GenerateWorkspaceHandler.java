@@ -0,0 +1,37 @@
+package ejb.securitymodel.generation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.commands.AbstractHandler;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Handler generating the security models of all open Java projects in the workspace.
+ *
+ */
+public class GenerateWorkspaceHandler extends AbstractHandler {
+
+	@Override
+	public Object execute(ExecutionEvent event) throws ExecutionException {
+		List<IJavaProject> projects = new ArrayList<>();
+		try {
+			for(IJavaProject project : JavaCore.create(ResourcesPlugin.getWorkspace().getRoot()).getJavaProjects()){
+				if(project.getProject().isOpen()){
+					projects.add(project);
+				}
+			}
+		} catch (JavaModelException e) {
+			throw new ExecutionException("Could not read the Java projects of the workspace", e);
+		}
+		
+		new BatchGeneration(projects, ModelGenerationJob.PLUGIN_ID).schedule();
+		return null;
+	}
+	
+}
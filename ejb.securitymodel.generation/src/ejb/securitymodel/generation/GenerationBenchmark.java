@@ -0,0 +1,321 @@
+package ejb.securitymodel.generation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+
+import de.mkonersmann.ejb31.Ejb31Factory;
+
+/**
+ * Headless benchmark of the model generation on synthetic projects of increasing size.
+ * Measures bean discovery, building the model instance, role interning and saving the resource,
+ * each with warm-up iterations before the measured ones. Discovery gets measured once per extraction engine, always
+ * without the extraction cache, the other benchmarks use the first engine.
+ * <p>
+ * Usage: <code>eclipse -nosplash -application ejb.securitymodel.generation.benchmark -data &lt;workspace&gt;
+ * [-sizes 100,1000,10000,50000] [-warmup &lt;n&gt;] [-iterations &lt;n&gt;] [-methods &lt;n&gt;] [-roles &lt;n&gt;]
+ * [-rolesAllowed &lt;density&gt;] [-runAs &lt;density&gt;] [-async &lt;density&gt;] [-engines JAVA_MODEL,AST,AST_BINDINGS] [-workDir &lt;dir&gt;]
+ * [-output &lt;csv&gt;] [-baseline &lt;csv&gt;] [-threshold &lt;percent&gt;]</code>
+ * <p>
+ * The results are written as CSV with one line per benchmark and size. Passing the CSV of an earlier commit as
+ * baseline compares the medians, exit code 1 reports a slowdown beyond the threshold and 2 invalid arguments.
+ *
+ */
+public class GenerationBenchmark implements IApplication {
+	
+	public static final Integer EXIT_REGRESSION = 1;
+	public static final Integer EXIT_USAGE = 2;
+	
+	private static final String CSV_HEADER = "benchmark,units,iterations,median_ms,min_ms,max_ms";
+	
+	/**
+	 * Code being measured, run once per iteration.
+	 */
+	private interface Measured {
+		void run() throws Exception;
+	}
+	
+	/**
+	 * Timings of one benchmark at one project size.
+	 */
+	private static class Result {
+		final String benchmark;
+		final int units;
+		final double[] millis;
+		
+		Result(String benchmark, int units, double[] millis){
+			this.benchmark = benchmark;
+			this.units = units;
+			this.millis = millis.clone();
+			Arrays.sort(this.millis);
+		}
+		
+		String getKey(){
+			return benchmark + "," + units;
+		}
+		
+		double getMedian(){
+			return millis[millis.length / 2];
+		}
+		
+		String toCsv(){
+			return String.format(Locale.ROOT, "%s,%d,%d,%.3f,%.3f,%.3f", benchmark, units, millis.length,
+					getMedian(), millis[0], millis[millis.length - 1]);
+		}
+	}
+	
+	private int[] sizes = { 100, 1000, 10000, 50000 };
+	private int warmup = 2;
+	private int iterations = 5;
+	private ExtractionEngine[] engines = ExtractionEngine.values();
+	private SyntheticProjectGenerator projectGenerator = new SyntheticProjectGenerator();
+	private File workDir = new File(System.getProperty("java.io.tmpdir"), "ejb-securitymodel-benchmark");
+	private File outputFile = new File("benchmark-results.csv");
+	private File baselineFile;
+	private double threshold = 10;
+	
+	@Override
+	public Object start(IApplicationContext context) throws Exception {
+		String[] args = (String[])context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+		try {
+			parseArguments(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Invalid arguments: " + e.getMessage());
+			return EXIT_USAGE;
+		}
+		
+		List<Result> results = new ArrayList<>();
+		for(int units : sizes){
+			projectGenerator.setUnits(units);
+			IJavaProject project = projectGenerator.createProject(workDir);
+			System.out.println("Benchmarking " + project.getElementName());
+			results.addAll(benchmark(project, units));
+		}
+		ResourcesPlugin.getWorkspace().save(true, new NullProgressMonitor());
+		
+		try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(outputFile.toPath(), StandardCharsets.UTF_8))){
+			out.println(CSV_HEADER);
+			for(Result result : results){
+				out.println(result.toCsv());
+			}
+		}
+		System.out.println("Results written to " + outputFile.getAbsolutePath());
+		
+		if(baselineFile != null){
+			return compare(results, readBaseline(baselineFile)) ? EXIT_OK : EXIT_REGRESSION;
+		}
+		return EXIT_OK;
+	}
+
+	@Override
+	public void stop() {
+		//nothing to clean up, the benchmark runs to completion
+	}
+	
+	/**
+	 * Runs all benchmarks on one synthetic project.
+	 * @param project synthetic Java project
+	 * @param units number of compilation units of the project
+	 * @return results of the benchmarks
+	 * @throws Exception if a benchmark failed
+	 */
+	private List<Result> benchmark(final IJavaProject project, int units) throws Exception{
+		final File modelFile = new File(new File(workDir, "models"), project.getElementName() + ".xmi");
+		List<Result> results = new ArrayList<>();
+		
+		//a fresh generator per iteration, so no facts are shared between iterations
+		final List<?>[] discovered = new List<?>[1];
+		for(int e = engines.length - 1; e >= 0; e--){
+			final ExtractionEngine engine = engines[e];
+			results.add(measure("discovery_" + engine.name().toLowerCase(Locale.ROOT), units, new Measured() {
+				@Override
+				public void run() {
+					ModelGenerator generator = new ModelGenerator();
+					generator.setExtractionEngine(engine);
+					generator.setUseCache(false);
+					discovered[0] = generator.getJavaBeans(project, new NullProgressMonitor());
+				}
+			}));
+		}
+		//measured last, so these are the beans of the first engine
+		@SuppressWarnings("unchecked")
+		final List<ICompilationUnit> beans = (List<ICompilationUnit>)discovered[0];
+		
+		final ModelGenerator[] built = new ModelGenerator[1];
+		results.add(measure("buildModelInstance", units, new Measured() {
+			@Override
+			public void run() throws Exception {
+				ModelGenerator generator = new ModelGenerator();
+				generator.setExtractionEngine(engines[0]);
+				generator.setUseCache(false);
+				generator.prepareModel(modelFile);
+				generator.buildModelInstance(beans, new NullProgressMonitor());
+				built[0] = generator;
+			}
+		}));
+		
+		//at most as many lookups as the generation makes: two roles per bean declaration and per method
+		final String[] roleNames = new String[beans.size() * 2 * (projectGenerator.getMethods() + 1)];
+		Random random = new Random(42);
+		for(int i = 0; i < roleNames.length; i++){
+			roleNames[i] = "role" + random.nextInt(projectGenerator.getRoles());
+		}
+		results.add(measure("roleInterning", units, new Measured() {
+			@Override
+			public void run() {
+				RoleRegistry registry = new RoleRegistry(Ejb31Factory.eINSTANCE);
+				for(String roleName : roleNames){
+					registry.intern(roleName);
+				}
+			}
+		}));
+		
+		results.add(measure("save", units, new Measured() {
+			@Override
+			public void run() throws Exception {
+				//an unchanged model file would only be hashed, not written again
+				Files.deleteIfExists(modelFile.toPath());
+				built[0].saveModel(modelFile, new NullProgressMonitor());
+			}
+		}));
+		return results;
+	}
+	
+	/**
+	 * Runs the warm-up and measured iterations of a benchmark and prints the result.
+	 * @param benchmark name of the benchmark
+	 * @param units number of compilation units of the project
+	 * @param measured code to measure
+	 * @return timings of the measured iterations
+	 * @throws Exception if the measured code failed
+	 */
+	private Result measure(String benchmark, int units, Measured measured) throws Exception{
+		for(int i = 0; i < warmup; i++){
+			measured.run();
+		}
+		double[] millis = new double[iterations];
+		for(int i = 0; i < iterations; i++){
+			//don't let garbage of earlier iterations be collected within this one
+			System.gc();
+			long start = System.nanoTime();
+			measured.run();
+			millis[i] = (System.nanoTime() - start) / 1e6;
+		}
+		Result result = new Result(benchmark, units, millis);
+		System.out.println("BENCH " + result.toCsv());
+		return result;
+	}
+	
+	/**
+	 * Compares the medians with a baseline and prints every benchmark slower than the threshold allows.
+	 * @param results current results
+	 * @param baseline medians of the baseline by benchmark and size
+	 * @return true if there is no regression
+	 */
+	private boolean compare(List<Result> results, Map<String, Double> baseline){
+		boolean ok = true;
+		for(Result result : results){
+			Double baselineMedian = baseline.get(result.getKey());
+			if(baselineMedian == null || baselineMedian <= 0){
+				continue;
+			}
+			double change = (result.getMedian() - baselineMedian) * 100 / baselineMedian;
+			boolean regression = change > threshold;
+			ok &= !regression;
+			System.out.println(String.format(Locale.ROOT, "%s %s: %.3f ms -> %.3f ms (%+.1f%%)", regression ? "REGRESSION" : "COMPARED",
+					result.getKey(), baselineMedian, result.getMedian(), change));
+		}
+		return ok;
+	}
+	
+	private static Map<String, Double> readBaseline(File file) throws IOException{
+		Map<String, Double> medians = new HashMap<>();
+		for(String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)){
+			String[] columns = line.split(",");
+			if(line.equals(CSV_HEADER) || columns.length < 4){
+				continue;
+			}
+			medians.put(columns[0] + "," + columns[1], Double.valueOf(columns[3]));
+		}
+		return medians;
+	}
+	
+	private void parseArguments(String[] args){
+		for(int i = 0; args != null && i < args.length; i++){
+			switch(args[i]){
+			case "-sizes":
+				String[] values = value(args, ++i).split(",");
+				sizes = new int[values.length];
+				for(int s = 0; s < values.length; s++){
+					sizes[s] = Integer.parseInt(values[s].trim());
+				}
+				break;
+			case "-warmup":
+				warmup = Integer.parseInt(value(args, ++i));
+				break;
+			case "-iterations":
+				iterations = Math.max(1, Integer.parseInt(value(args, ++i)));
+				break;
+			case "-methods":
+				projectGenerator.setMethods(Integer.parseInt(value(args, ++i)));
+				break;
+			case "-roles":
+				projectGenerator.setRoles(Integer.parseInt(value(args, ++i)));
+				break;
+			case "-rolesAllowed":
+				projectGenerator.setRolesAllowedDensity(Double.parseDouble(value(args, ++i)));
+				break;
+			case "-runAs":
+				projectGenerator.setRunAsDensity(Double.parseDouble(value(args, ++i)));
+				break;
+			case "-async":
+				projectGenerator.setAsyncDensity(Double.parseDouble(value(args, ++i)));
+				break;
+			case "-engines":
+				String[] names = value(args, ++i).split(",");
+				engines = new ExtractionEngine[names.length];
+				for(int e = 0; e < names.length; e++){
+					engines[e] = ExtractionEngine.valueOf(names[e].trim().toUpperCase(Locale.ROOT));
+				}
+				break;
+			case "-workDir":
+				workDir = new File(value(args, ++i));
+				break;
+			case "-output":
+				outputFile = new File(value(args, ++i));
+				break;
+			case "-baseline":
+				baselineFile = new File(value(args, ++i));
+				break;
+			case "-threshold":
+				threshold = Double.parseDouble(value(args, ++i));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown argument " + args[i]);
+			}
+		}
+	}
+	
+	private static String value(String[] args, int index){
+		if(index >= args.length){
+			throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+		}
+		return args[index];
+	}
+}
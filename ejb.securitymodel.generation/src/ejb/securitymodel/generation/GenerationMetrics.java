@@ -0,0 +1,153 @@
+package ejb.securitymodel.generation;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings and counters of a single model generation run.
+ * Recording is safe from several extraction threads at once. A disabled instance doesn't even read the clock,
+ * so the instrumentation costs no more than a field check per call.
+ * <p>
+ * The phases nest: classification is part of discovery and role interning part of security extraction.
+ * Phases running on several extraction threads report the time summed over all threads.
+ *
+ */
+public class GenerationMetrics {
+	
+	/**
+	 * Measured phases of a generation run.
+	 */
+	public enum Phase {
+		/** finding the Java Beans of the project */
+		DISCOVERY,
+		/** reading the facts of compilation units to tell beans from other units */
+		CLASSIFICATION,
+		/** building the bean objects and their security specifications */
+		SECURITY_EXTRACTION,
+		/** looking up and creating roles */
+		ROLE_INTERNING,
+		/** saving or streaming the model to disk */
+		PERSISTENCE
+	}
+	
+	/**
+	 * Counted events of a generation run.
+	 */
+	public enum Counter {
+		/** compilation units or class files whose facts got requested */
+		UNITS_SCANNED,
+		/** units whose facts came from the extraction cache */
+		CACHE_HITS,
+		/** annotated elements (types and methods) whose annotations got read */
+		ANNOTATION_PROBES,
+		BEANS_CREATED,
+		OPERATIONS_CREATED,
+		/** role lookups, the number of distinct roles is the number of roles in the model */
+		ROLES_INTERNED,
+		/** signature lookups, the number of distinct signatures is the number of signatures in the model */
+		SIGNATURES_INTERNED,
+		/** supertype hierarchies computed to find inherited bean methods, one per base class not seen before */
+		SUPERTYPE_HIERARCHIES,
+		/** deployment descriptors merged over the annotations */
+		DESCRIPTORS,
+		BYTES_WRITTEN,
+		/** model files or directories replaced, not counted if the written model equals the existing one */
+		MODELS_REPLACED
+	}
+	
+	/**
+	 * Instance recording nothing.
+	 */
+	public static final GenerationMetrics DISABLED = new GenerationMetrics(false);
+	
+	private final boolean enabled;
+	private final LongAdder[] phaseNanos;
+	private final LongAdder[] counters;
+	
+	/**
+	 * Creates an enabled, empty instance.
+	 */
+	public GenerationMetrics(){
+		this(true);
+	}
+	
+	private GenerationMetrics(boolean enabled){
+		this.enabled = enabled;
+		this.phaseNanos = new LongAdder[Phase.values().length];
+		this.counters = new LongAdder[Counter.values().length];
+		for(int i = 0; i < phaseNanos.length; i++){
+			phaseNanos[i] = new LongAdder();
+		}
+		for(int i = 0; i < counters.length; i++){
+			counters[i] = new LongAdder();
+		}
+	}
+	
+	/**
+	 * @return true if this instance records anything
+	 */
+	public boolean isEnabled(){
+		return enabled;
+	}
+	
+	/**
+	 * Starts timing a phase.
+	 * @return start time to pass to {@link #stop(Phase, long)}, 0 if disabled
+	 */
+	public long start(){
+		return enabled ? System.nanoTime() : 0;
+	}
+	
+	/**
+	 * Adds the time since the given start to a phase.
+	 * @param phase measured phase
+	 * @param start value returned by {@link #start()}
+	 */
+	public void stop(Phase phase, long start){
+		if(enabled){
+			phaseNanos[phase.ordinal()].add(System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Increments a counter.
+	 * @param counter
+	 * @param amount value to add
+	 */
+	public void count(Counter counter, long amount){
+		if(enabled){
+			counters[counter.ordinal()].add(amount);
+		}
+	}
+	
+	/**
+	 * @param phase
+	 * @return time spent in the phase in milliseconds
+	 */
+	public long getMillis(Phase phase){
+		return phaseNanos[phase.ordinal()].sum() / 1000000;
+	}
+	
+	/**
+	 * @param counter
+	 * @return value of the counter
+	 */
+	public long get(Counter counter){
+		return counters[counter.ordinal()].sum();
+	}
+	
+	/**
+	 * Formats the metrics as a single line of key=value pairs, easy to grep and parse.
+	 * @param project name of the generated project
+	 * @return summary line
+	 */
+	public String getSummary(String project){
+		StringBuilder sb = new StringBuilder("METRICS project=").append(project);
+		for(Phase phase : Phase.values()){
+			sb.append(' ').append(phase.name().toLowerCase()).append("_ms=").append(getMillis(phase));
+		}
+		for(Counter counter : Counter.values()){
+			sb.append(' ').append(counter.name().toLowerCase()).append('=').append(get(counter));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,120 @@
+package ejb.securitymodel.generation;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Totals of the metrics of all model generation runs within this JVM, exposed through JMX.
+ * Recording is off unless the system property <code>ejb.securitymodel.generation.metrics</code> is true
+ * or it gets switched on through JMX.
+ *
+ */
+public class GenerationStatistics implements GenerationStatisticsMXBean {
+	
+	public static final String OBJECT_NAME = "ejb.securitymodel.generation:type=GenerationStatistics";
+	
+	private static final GenerationStatistics INSTANCE = new GenerationStatistics();
+	static {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+		} catch (JMException | SecurityException e) {
+			//metrics are still printed per run, only the JMX view is missing
+			e.printStackTrace();
+		}
+	}
+	
+	private volatile boolean enabled = Boolean.getBoolean("ejb.securitymodel.generation.metrics");
+	private long runs;
+	private final long[] phaseMillis = new long[GenerationMetrics.Phase.values().length];
+	private final long[] counters = new long[GenerationMetrics.Counter.values().length];
+	private String lastSummary = "";
+	
+	private GenerationStatistics(){
+	}
+	
+	/**
+	 * @return the statistics of this JVM
+	 */
+	public static GenerationStatistics getInstance(){
+		return INSTANCE;
+	}
+	
+	/**
+	 * Creates the metrics for a new generation run.
+	 * @param force true to record the metrics of this run even if recording is switched off
+	 * @return enabled metrics if recording is switched on or forced, {@link GenerationMetrics#DISABLED} otherwise
+	 */
+	public GenerationMetrics newRun(boolean force){
+		return force || enabled ? new GenerationMetrics() : GenerationMetrics.DISABLED;
+	}
+	
+	/**
+	 * Adds the metrics of a finished run to the totals.
+	 * @param metrics metrics of the run
+	 * @param project name of the generated project
+	 */
+	public synchronized void add(GenerationMetrics metrics, String project){
+		if(!metrics.isEnabled()){
+			return;
+		}
+		runs++;
+		for(GenerationMetrics.Phase phase : GenerationMetrics.Phase.values()){
+			phaseMillis[phase.ordinal()] += metrics.getMillis(phase);
+		}
+		for(GenerationMetrics.Counter counter : GenerationMetrics.Counter.values()){
+			counters[counter.ordinal()] += metrics.get(counter);
+		}
+		lastSummary = metrics.getSummary(project);
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@Override
+	public synchronized long getRuns() {
+		return runs;
+	}
+
+	@Override
+	public synchronized Map<String, Long> getPhaseMillis() {
+		Map<String, Long> result = new LinkedHashMap<>();
+		for(GenerationMetrics.Phase phase : GenerationMetrics.Phase.values()){
+			result.put(phase.name(), phaseMillis[phase.ordinal()]);
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized Map<String, Long> getCounters() {
+		Map<String, Long> result = new LinkedHashMap<>();
+		for(GenerationMetrics.Counter counter : GenerationMetrics.Counter.values()){
+			result.put(counter.name(), counters[counter.ordinal()]);
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized String getLastSummary() {
+		return lastSummary;
+	}
+
+	@Override
+	public synchronized void reset() {
+		runs = 0;
+		Arrays.fill(phaseMillis, 0);
+		Arrays.fill(counters, 0);
+		lastSummary = "";
+	}
+}
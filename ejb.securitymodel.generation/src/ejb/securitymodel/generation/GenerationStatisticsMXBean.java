@@ -0,0 +1,47 @@
+package ejb.securitymodel.generation;
+
+import java.util.Map;
+
+/**
+ * JMX view on the metrics of all model generation runs within this JVM,
+ * registered as <code>ejb.securitymodel.generation:type=GenerationStatistics</code>.
+ *
+ */
+public interface GenerationStatisticsMXBean {
+	
+	/**
+	 * @return true if new generation runs record metrics
+	 */
+	boolean isEnabled();
+	
+	/**
+	 * Switches recording metrics on or off for generation runs started afterwards.
+	 * @param enabled
+	 */
+	void setEnabled(boolean enabled);
+	
+	/**
+	 * @return number of finished runs that recorded metrics
+	 */
+	long getRuns();
+	
+	/**
+	 * @return time spent per phase over all runs in milliseconds, keyed by phase name
+	 */
+	Map<String, Long> getPhaseMillis();
+	
+	/**
+	 * @return counters summed over all runs, keyed by counter name
+	 */
+	Map<String, Long> getCounters();
+	
+	/**
+	 * @return summary line of the last run, empty if there was none
+	 */
+	String getLastSummary();
+	
+	/**
+	 * Resets the totals.
+	 */
+	void reset();
+}
@@ -0,0 +1,331 @@
+package ejb.securitymodel.generation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+
+/**
+ * Headless entry point generating the security models of one or more projects without a workbench, e.g. on CI.
+ * All projects are handled within one JVM. Projects not yet part of the workspace get imported from their directory.
+ * Deployed archives and class directories given by <code>-classes</code> get a model of their own, read from the compiled classes.
+ * With <code>-permissions</code> the effective permissions get written next to each model as operations.tsv and roles.tsv.
+ * With <code>-diff &lt;old&gt; &lt;new&gt;</code> no model gets generated, instead the differences between two saved models get printed.
+ * <p>
+ * Usage: <code>eclipse -nosplash -application ejb.securitymodel.generation.headless -data &lt;workspace&gt;
+ * -project &lt;dir&gt; [-project &lt;dir&gt; ...] [-projectList &lt;file&gt;] [-classes &lt;jar|dir&gt; ...] [-output &lt;dir&gt;] [-format &lt;format&gt;]
+ * [-discovery SCAN|INDEX] [-engine JAVA_MODEL|AST|AST_BINDINGS] [-threads &lt;n&gt;] [-noCache] [-metrics] [-permissions]</code>
+ * or <code>eclipse -nosplash -application ejb.securitymodel.generation.headless -diff &lt;old model&gt; &lt;new model&gt;</code>
+ * <p>
+ * Exit code 0 if all models got generated, 1 if at least one project failed and 2 on invalid arguments,
+ * including a project directory whose project name is already taken by a workspace project at another location.
+ * A diff exits with 0 if the permissions are unchanged, 3 if they changed and 1 if a model can't be read.
+ *
+ */
+public class HeadlessGenerator implements IApplication {
+	
+	public static final Integer EXIT_FAILED = 1;
+	public static final Integer EXIT_USAGE = 2;
+	public static final Integer EXIT_PERMISSIONS_CHANGED = 3;
+	
+	private List<String> projectDirs = new ArrayList<>();
+	private List<File> classLocations = new ArrayList<>();
+	private File outputDir = new File(System.getProperty("user.home"), ModelGenerationJob.PLUGIN_ID);
+	private OutputFormat outputFormat = OutputFormat.XMI;
+	private DiscoveryMode discoveryMode = DiscoveryMode.INDEX;
+	private ExtractionEngine extractionEngine = ExtractionEngine.JAVA_MODEL;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private boolean useCache = true;
+	private boolean recordMetrics;
+	private boolean writePermissions;
+	private File[] diffModels;
+
+	@Override
+	public Object start(IApplicationContext context) throws Exception {
+		String[] args = (String[])context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+		try {
+			parseArguments(args);
+		} catch (IllegalArgumentException | IOException e) {
+			System.err.println("Invalid arguments: " + e.getMessage());
+			return EXIT_USAGE;
+		}
+		if(diffModels != null){
+			return diff(diffModels[0], diffModels[1]);
+		}
+		if(projectDirs.isEmpty() && classLocations.isEmpty()){
+			System.err.println("No project given, use -project <dir>, -projectList <file> or -classes <jar|dir>");
+			return EXIT_USAGE;
+		}
+		for(String projectDir : projectDirs){
+			try {
+				checkLocation(projectDir);
+			} catch (IllegalArgumentException e) {
+				System.err.println("Invalid arguments: " + e.getMessage());
+				return EXIT_USAGE;
+			} catch (CoreException e) {
+				//no readable project description, reported as failed project by the generation
+			}
+		}
+		
+		long start = System.nanoTime();
+		int failed = 0;
+		for(String projectDir : projectDirs){
+			if(!generate(projectDir)){
+				failed++;
+			}
+		}
+		for(File classLocation : classLocations){
+			if(!generate(classLocation)){
+				failed++;
+			}
+		}
+		try {
+			//keeps imported projects and their modification stamps for the next run
+			ResourcesPlugin.getWorkspace().save(true, new NullProgressMonitor());
+		} catch (CoreException e) {
+			e.printStackTrace();
+		}
+		System.out.println("SUMMARY projects=" + (projectDirs.size() + classLocations.size()) + " failed=" + failed
+				+ " time_ms=" + (System.nanoTime() - start) / 1000000);
+		
+		return failed == 0 ? EXIT_OK : EXIT_FAILED;
+	}
+
+	@Override
+	public void stop() {
+		//nothing to clean up, generation runs synchronously in start
+	}
+	
+	/**
+	 * Opens or imports a project and generates its security model.
+	 * @param projectDir directory containing the .project file
+	 * @return true if the model got generated
+	 */
+	private boolean generate(String projectDir){
+		long start = System.nanoTime();
+		String name = projectDir;
+		try {
+			IJavaProject project = openProject(projectDir);
+			name = project.getElementName();
+			
+			ModelGenerator generator = new ModelGenerator();
+			generator.setOutputFormat(outputFormat);
+			generator.setDiscoveryMode(discoveryMode);
+			generator.setExtractionEngine(extractionEngine);
+			generator.setParallelism(threads);
+			generator.setUseCache(useCache);
+			generator.setRecordMetrics(recordMetrics);
+			generator.setIndexPermissions(writePermissions);
+			File modelFile = generator.getModelFile(project, outputDir);
+			generator.generateModel(project, modelFile, new NullProgressMonitor());
+			writePermissions(generator, modelFile);
+			
+			System.out.println("RESULT project=" + name + " status=OK beans=" + generator.getBeanCount()
+					+ " time_ms=" + (System.nanoTime() - start) / 1000000 + " model=" + modelFile.getAbsolutePath());
+			return true;
+		} catch (CoreException | IOException | RuntimeException e) {
+			System.out.println("RESULT project=" + name + " status=FAILED time_ms=" + (System.nanoTime() - start) / 1000000
+					+ " error=" + e);
+			e.printStackTrace();
+			return false;
+		}
+	}
+	
+	/**
+	 * Generates the model of a deployed archive or class directory and prints the result.
+	 * @param classLocation JAR, WAR or EAR file or class directory
+	 * @return true if the model got generated
+	 */
+	private boolean generate(File classLocation){
+		long start = System.nanoTime();
+		String name = classLocation.getName();
+		try {
+			ModelGenerator generator = new ModelGenerator();
+			generator.setOutputFormat(outputFormat);
+			generator.setRecordMetrics(recordMetrics);
+			generator.setIndexPermissions(writePermissions);
+			//the model goes into a directory named like the archive without its extension
+			int extension = name.lastIndexOf('.');
+			File modelFile = new File(new File(outputDir, extension > 0 && classLocation.isFile() ? name.substring(0, extension) : name),
+					outputFormat.getFileName());
+			generator.generateModel(Collections.singletonList(classLocation), modelFile, new NullProgressMonitor());
+			writePermissions(generator, modelFile);
+			
+			System.out.println("RESULT project=" + name + " status=OK beans=" + generator.getBeanCount()
+					+ " time_ms=" + (System.nanoTime() - start) / 1000000 + " model=" + modelFile.getAbsolutePath());
+			return true;
+		} catch (IOException | RuntimeException e) {
+			System.out.println("RESULT project=" + name + " status=FAILED time_ms=" + (System.nanoTime() - start) / 1000000
+					+ " error=" + e);
+			e.printStackTrace();
+			return false;
+		}
+	}
+	
+	/**
+	 * Compares two saved models and prints their differences.
+	 * @param oldModel model file of the old release
+	 * @param newModel model file of the new release
+	 * @return exit code telling whether the permissions changed
+	 */
+	private Integer diff(File oldModel, File newModel){
+		long start = System.nanoTime();
+		try {
+			ModelDiff diff = ModelDiff.compare(oldModel, newModel);
+			diff.write(System.out);
+			System.out.println("SUMMARY time_ms=" + (System.nanoTime() - start) / 1000000);
+			return diff.hasPermissionChanges() ? EXIT_PERMISSIONS_CHANGED : EXIT_OK;
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Could not compare " + oldModel + " and " + newModel + ": " + e);
+			e.printStackTrace();
+			return EXIT_FAILED;
+		}
+	}
+	
+	/**
+	 * Writes the permission tables next to the model file, if requested.
+	 * @param generator generator that created the model
+	 * @param modelFile model file
+	 * @throws IOException if a table can't be written
+	 */
+	private void writePermissions(ModelGenerator generator, File modelFile) throws IOException{
+		PermissionIndex index = generator.getPermissionIndex();
+		if(index == null){
+			return;
+		}
+		try(Writer out = Files.newBufferedWriter(new File(modelFile.getParentFile(), "operations.tsv").toPath(), StandardCharsets.UTF_8)){
+			index.writeOperationTable(out);
+		}
+		try(Writer out = Files.newBufferedWriter(new File(modelFile.getParentFile(), "roles.tsv").toPath(), StandardCharsets.UTF_8)){
+			index.writeRoleTable(out);
+		}
+	}
+	
+	/**
+	 * Returns the Java project stored in the given directory, importing it into the workspace if necessary.
+	 * @param projectDir directory containing the .project file
+	 * @return opened Java project
+	 * @throws CoreException if the project can't be imported or is no Java project
+	 * @throws IllegalArgumentException if the workspace has a project of the same name at another location
+	 */
+	static IJavaProject openProject(String projectDir) throws CoreException{
+		IProject project = checkLocation(projectDir);
+		if(!project.exists()){
+			IProjectDescription description = ResourcesPlugin.getWorkspace().loadProjectDescription(
+					new Path(new File(projectDir).getAbsolutePath()).append(IProjectDescription.DESCRIPTION_FILE_NAME));
+			//link the project from its current location instead of copying it into the workspace
+			description.setLocation(new Path(new File(projectDir).getAbsolutePath()));
+			project.create(description, new NullProgressMonitor());
+		}
+		if(!project.isOpen()){
+			project.open(new NullProgressMonitor());
+		}
+		if(!project.hasNature(JavaCore.NATURE_ID)){
+			throw new IllegalArgumentException(project.getName() + " is no Java project");
+		}
+		return JavaCore.create(project);
+	}
+	
+	/**
+	 * Returns the workspace project named like the project in the given directory, which may not exist yet.
+	 * @param projectDir directory containing the .project file
+	 * @return workspace project of that name
+	 * @throws CoreException if the project description can't be read
+	 * @throws IllegalArgumentException if the workspace project exists at another location
+	 */
+	private static IProject checkLocation(String projectDir) throws CoreException{
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		Path location = new Path(new File(projectDir).getAbsolutePath());
+		IProjectDescription description = workspace.loadProjectDescription(location.append(IProjectDescription.DESCRIPTION_FILE_NAME));
+		
+		IProject project = workspace.getRoot().getProject(description.getName());
+		if(project.exists() && !location.equals(project.getLocation())){
+			//generating the other project's model instead would go unnoticed
+			throw new IllegalArgumentException("Project " + project.getName() + " of " + projectDir
+					+ " already exists in the workspace at " + project.getLocation());
+		}
+		return project;
+	}
+	
+	/**
+	 * Reads the application arguments.
+	 * @param args application arguments
+	 * @throws IllegalArgumentException on unknown or incomplete arguments
+	 * @throws IOException if a project list can't be read
+	 */
+	private void parseArguments(String[] args) throws IOException{
+		if(args == null){
+			return;
+		}
+		for(int i = 0; i < args.length; i++){
+			switch(args[i]){
+			case "-project":
+				projectDirs.add(value(args, ++i));
+				break;
+			case "-projectList":
+				//one project directory per line
+				for(String line : Files.readAllLines(new File(value(args, ++i)).toPath(), StandardCharsets.UTF_8)){
+					if(!line.trim().isEmpty()){
+						projectDirs.add(line.trim());
+					}
+				}
+				break;
+			case "-classes":
+				classLocations.add(new File(value(args, ++i)));
+				break;
+			case "-output":
+				outputDir = new File(value(args, ++i));
+				break;
+			case "-format":
+				outputFormat = OutputFormat.valueOf(value(args, ++i).toUpperCase());
+				break;
+			case "-discovery":
+				discoveryMode = DiscoveryMode.valueOf(value(args, ++i).toUpperCase());
+				break;
+			case "-engine":
+				extractionEngine = ExtractionEngine.valueOf(value(args, ++i).toUpperCase());
+				break;
+			case "-threads":
+				threads = Integer.parseInt(value(args, ++i));
+				break;
+			case "-noCache":
+				useCache = false;
+				break;
+			case "-metrics":
+				recordMetrics = true;
+				break;
+			case "-permissions":
+				writePermissions = true;
+				break;
+			case "-diff":
+				diffModels = new File[]{ new File(value(args, ++i)), new File(value(args, ++i)) };
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown argument " + args[i]);
+			}
+		}
+	}
+	
+	private static String value(String[] args, int index){
+		if(index >= args.length){
+			throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+		}
+		return args[index];
+	}
+}
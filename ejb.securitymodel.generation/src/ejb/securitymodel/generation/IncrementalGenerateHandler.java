@@ -0,0 +1,96 @@
+package ejb.securitymodel.generation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.commands.AbstractHandler;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.ui.handlers.HandlerUtil;
+
+/**
+ * Handler toggling the incremental regeneration of the security model for a selected Java project.
+ * While enabled, the model gets updated with every saved change of the project's sources.
+ * Projects with the {@link SecurityModelBuilder} enabled are kept up to date by the builder, so they don't get an updater of their own.
+ * The updater of a project gets stopped as soon as the project is closed or deleted.
+ *
+ */
+public class IncrementalGenerateHandler extends AbstractHandler {
+	
+	//running updaters per project
+	private static final Map<IJavaProject, IncrementalModelUpdater> UPDATERS = new HashMap<>();
+	//stops the updaters of projects about to be closed or deleted, registered while any updater runs
+	private static final IResourceChangeListener PROJECT_LISTENER = new IResourceChangeListener() {
+		@Override
+		public void resourceChanged(IResourceChangeEvent event) {
+			if(event.getResource() instanceof IProject){
+				stop(JavaCore.create((IProject)event.getResource()));
+			}
+		}
+	};
+
+	@Override
+	public Object execute(ExecutionEvent event) throws ExecutionException {
+		
+		//getting selected item
+		ISelection selection = HandlerUtil.getActiveWorkbenchWindow(event).getActivePage().getSelection();
+		if(selection != null && selection instanceof IStructuredSelection){
+			Object projectObj = ((IStructuredSelection) selection).getFirstElement();
+			
+			if(projectObj instanceof IJavaProject){
+				IJavaProject project = (IJavaProject)projectObj;
+				
+				synchronized(UPDATERS){
+					if(UPDATERS.containsKey(project)){
+						//switch incremental regeneration off
+						stop(project);
+					}
+					else if(!isBuilderEnabled(project)){
+						//generate the model now and keep it up to date from now on
+						IncrementalModelUpdater updater = new IncrementalModelUpdater(project, ModelGenerationJob.PLUGIN_ID);
+						if(UPDATERS.isEmpty()){
+							ResourcesPlugin.getWorkspace().addResourceChangeListener(PROJECT_LISTENER,
+									IResourceChangeEvent.PRE_CLOSE | IResourceChangeEvent.PRE_DELETE);
+						}
+						UPDATERS.put(project, updater);
+						updater.start();
+					}
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Switches the incremental regeneration of a project off, if it is running.
+	 * @param project Java project
+	 */
+	static void stop(IJavaProject project){
+		synchronized(UPDATERS){
+			IncrementalModelUpdater updater = UPDATERS.remove(project);
+			if(updater != null){
+				updater.stop();
+				if(UPDATERS.isEmpty()){
+					ResourcesPlugin.getWorkspace().removeResourceChangeListener(PROJECT_LISTENER);
+				}
+			}
+		}
+	}
+	
+	private static boolean isBuilderEnabled(IJavaProject project) throws ExecutionException{
+		try {
+			return SecurityModelBuilder.isEnabled(project.getProject());
+		} catch (CoreException e) {
+			throw new ExecutionException("Could not read the builders of " + project.getElementName(), e);
+		}
+	}
+}
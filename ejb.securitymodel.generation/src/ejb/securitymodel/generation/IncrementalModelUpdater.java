@@ -0,0 +1,246 @@
+package ejb.securitymodel.generation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Keeps the security model of a Java project up to date while its sources are edited.
+ * Listens to Java element deltas, or gets fed by the {@link SecurityModelBuilder}, and only re-extracts the beans
+ * of the compilation units that changed. A burst of changes, like saving several editors at once, is combined
+ * into a single update once the changes have settled for a short quiet period.
+ *
+ */
+public class IncrementalModelUpdater implements IElementChangedListener {
+	
+	//time without further changes before an update starts, in milliseconds
+	private static final long QUIET_PERIOD = 500;
+	
+	private final IJavaProject project;
+	private final String outputPath;
+	private final ModelGenerator generator;
+	private final Job updateJob;
+	
+	//compilation units changed since the last update, guarded by itself
+	private final Set<ICompilationUnit> changedUnits;
+	//set if the in-memory model can't be trusted anymore, e.g. after a canceled update
+	private volatile boolean fullGenerationRequired;
+	//time of the last reported change
+	private volatile long lastChange;
+	private volatile boolean stopped;
+	
+	/**
+	 * IncrementalModelUpdater constructor.
+	 * @param project Java project to keep the security model up to date for
+	 * @param outputPath path to save the model instance to
+	 */
+	public IncrementalModelUpdater(IJavaProject project, String outputPath){
+		this.project = project;
+		this.outputPath = outputPath;
+		this.generator = new ModelGenerator();
+		this.changedUnits = new LinkedHashSet<>();
+		this.fullGenerationRequired = true;
+		
+		//a single job instance, so updates never run concurrently and pending changes get combined
+		this.updateJob = new Job("Updating security model for " + project.getElementName()) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				//the update was still pending when the updater got stopped or the project got closed or deleted
+				if(stopped || !IncrementalModelUpdater.this.project.getProject().isOpen()){
+					return Status.CANCEL_STATUS;
+				}
+				//more changes came in while waiting, wait for them to settle as well
+				long remaining = lastChange + QUIET_PERIOD - System.currentTimeMillis();
+				if(remaining > 0){
+					schedule(remaining);
+					return Status.OK_STATUS;
+				}
+				return update(monitor);
+			}
+		};
+		this.updateJob.setSystem(true);
+		//the generation job and other updaters of the project may write the same model
+		this.updateJob.setRule(ModelGenerator.getOutputRule(project, outputPath));
+	}
+	
+	/**
+	 * Generates the model once and starts listening for changes afterwards.
+	 */
+	public void start(){
+		JavaCore.addElementChangedListener(this, ElementChangedEvent.POST_CHANGE);
+		updateJob.schedule();
+	}
+	
+	/**
+	 * Stops listening for changes, a pending update doesn't run anymore.
+	 */
+	public void stop(){
+		stopped = true;
+		JavaCore.removeElementChangedListener(this);
+		updateJob.cancel();
+	}
+
+	@Override
+	public void elementChanged(ElementChangedEvent event) {
+		List<ICompilationUnit> units = new ArrayList<>();
+		collectChangedUnits(event.getDelta(), units);
+		if(!units.isEmpty() || fullGenerationRequired){
+			unitsChanged(units);
+		}
+	}
+	
+	/**
+	 * Schedules an update for the given changed compilation units, after the quiet period.
+	 * @param units added, changed or removed compilation units of the project
+	 */
+	public void unitsChanged(Collection<ICompilationUnit> units){
+		synchronized(changedUnits){
+			changedUnits.addAll(units);
+		}
+		lastChange = System.currentTimeMillis();
+		updateJob.schedule(QUIET_PERIOD);
+	}
+	
+	/**
+	 * Schedules a generation of the whole model, after the quiet period.
+	 */
+	public void generateModel(){
+		fullGenerationRequired = true;
+		unitsChanged(Collections.<ICompilationUnit>emptyList());
+	}
+	
+	/**
+	 * Runs a full generation if required, otherwise updates the model for all pending changes.
+	 * @param monitor progress monitor
+	 * @return job status
+	 */
+	private IStatus update(IProgressMonitor monitor){
+		List<ICompilationUnit> units;
+		synchronized(changedUnits){
+			units = new ArrayList<>(changedUnits);
+			changedUnits.clear();
+		}
+		
+		try {
+			if(fullGenerationRequired){
+				fullGenerationRequired = false;
+				generator.generateModel(project, outputPath, monitor);
+			}
+			else if(!units.isEmpty()){
+				if(generator.canUpdateModel()){
+					generator.updateModel(units, monitor);
+				}
+				else{
+					//no model to update, e.g. because it got streamed, so generate it as a whole
+					generator.generateModel(project, outputPath, monitor);
+				}
+			}
+			return Status.OK_STATUS;
+		} catch (OperationCanceledException e) {
+			fullGenerationRequired = true;
+			return Status.CANCEL_STATUS;
+		} catch (JavaModelException e) {
+			fullGenerationRequired = true;
+			return new Status(IStatus.ERROR, ModelGenerationJob.PLUGIN_ID, "Could not read Java project " + project.getElementName(), e);
+		} catch (IOException e) {
+			//the model in memory is ahead of the file now, so the next update has to write it again
+			fullGenerationRequired = true;
+			return new Status(IStatus.ERROR, ModelGenerationJob.PLUGIN_ID, "Could not save security model of " + project.getElementName(), e);
+		} finally {
+			monitor.done();
+		}
+	}
+	
+	/**
+	 * Collects the compilation units of the project affected by the given delta.
+	 * @param delta Java element delta
+	 * @param units list to add the affected compilation units to
+	 */
+	private void collectChangedUnits(IJavaElementDelta delta, List<ICompilationUnit> units){
+		IJavaElement element = delta.getElement();
+		
+		//ignore deltas of other projects right away
+		if(element.getElementType() == IJavaElement.JAVA_PROJECT && !element.equals(project)){
+			return;
+		}
+		
+		if(element.getElementType() == IJavaElement.COMPILATION_UNIT){
+			ICompilationUnit unit = (ICompilationUnit)element;
+			//edits in working copies only matter once they are saved
+			if(!unit.isWorkingCopy() || delta.getKind() != IJavaElementDelta.CHANGED
+					|| (delta.getFlags() & IJavaElementDelta.F_PRIMARY_RESOURCE) != 0){
+				units.add(unit.getPrimary());
+			}
+			return;
+		}
+		
+		try {
+			if(delta.getKind() == IJavaElementDelta.REMOVED){
+				fullGenerationRequired = true;
+				return;
+			}
+			if(delta.getKind() == IJavaElementDelta.ADDED){
+				//added containers come without deltas for their children
+				collectUnits(element, units);
+				return;
+			}
+		} catch (JavaModelException e) {
+			fullGenerationRequired = true;
+			return;
+		}
+		
+		for(IJavaElementDelta child : delta.getAffectedChildren()){
+			collectChangedUnits(child, units);
+		}
+		if((delta.getFlags() & (IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_CLOSED)) != 0){
+			//the set of source folders may have changed
+			fullGenerationRequired = true;
+		}
+	}
+	
+	/**
+	 * Collects all compilation units within an added source folder or package.
+	 * @param element added Java element
+	 * @param units list to add the compilation units to
+	 * @throws JavaModelException
+	 */
+	private void collectUnits(IJavaElement element, List<ICompilationUnit> units) throws JavaModelException{
+		switch(element.getElementType()){
+		case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+			IPackageFragmentRoot root = (IPackageFragmentRoot)element;
+			if(root.getKind() == IPackageFragmentRoot.K_SOURCE){
+				for(IJavaElement child : root.getChildren()){
+					collectUnits(child, units);
+				}
+			}
+			break;
+		case IJavaElement.PACKAGE_FRAGMENT:
+			Collections.addAll(units, ((IPackageFragment)element).getCompilationUnits());
+			break;
+		default:
+			//added projects are generated from scratch
+			fullGenerationRequired = true;
+			break;
+		}
+	}
+}
@@ -0,0 +1,457 @@
+package ejb.securitymodel.generation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+
+import de.mkonersmann.ejb31.EnterpriseBean;
+import de.mkonersmann.ejb31.EnterpriseBeanOperationSecurity;
+import de.mkonersmann.ejb31.EnterpriseBeanSecurity;
+import de.mkonersmann.ejb31.MessageDrivenBean;
+import de.mkonersmann.ejb31.Operation;
+import de.mkonersmann.ejb31.OperationSignature;
+import de.mkonersmann.ejb31.Role;
+import de.mkonersmann.ejb31.SessionBean;
+
+/**
+ * Structural diff between two security models, e.g. of two releases.
+ * <p>
+ * Every bean, operation and security spec gets a 64-bit fingerprint hashed from its content. Beans are matched by qualified name
+ * and operations by name and parameter types within their bean, both through hash maps, so the diff takes time linear in the model size.
+ * Beans with equal fingerprints are skipped right away, only the operations of changed beans get compared.
+ * Changes of the effective access (see {@link PermissionIndex}) are classified as widened, narrowed or changed role sets.
+ *
+ */
+public class ModelDiff {
+	
+	/**
+	 * Kinds of differences between two models.
+	 */
+	public enum ChangeKind {
+		BEAN_ADDED(true),
+		BEAN_REMOVED(true),
+		/** the bean kind changed, e.g. from stateless to singleton */
+		BEAN_TYPE_CHANGED(false),
+		RUN_AS_CHANGED(true),
+		DECLARED_ROLES_CHANGED(true),
+		OPERATION_ADDED(true),
+		OPERATION_REMOVED(true),
+		/** the operation is callable by more callers than before */
+		ACCESS_WIDENED(true),
+		/** the operation is callable by fewer callers than before */
+		ACCESS_NARROWED(true),
+		/** roles got both added and removed */
+		ACCESS_CHANGED(true),
+		/** a change not affecting the permissions, e.g. an operation became asynchronous */
+		OPERATION_CHANGED(false);
+		
+		private final boolean permissionChange;
+		
+		private ChangeKind(boolean permissionChange){
+			this.permissionChange = permissionChange;
+		}
+		
+		/**
+		 * @return true if changes of this kind affect who may call what
+		 */
+		public boolean isPermissionChange(){
+			return permissionChange;
+		}
+	}
+	
+	/**
+	 * A single difference between the old and the new model.
+	 */
+	public static class Change {
+		private final ChangeKind kind;
+		private final String bean;
+		private final String operation;
+		private final String before;
+		private final String after;
+		
+		Change(ChangeKind kind, String bean, String operation, String before, String after){
+			this.kind = kind;
+			this.bean = bean;
+			this.operation = operation;
+			this.before = before;
+			this.after = after;
+		}
+		
+		/**
+		 * @return kind of the change
+		 */
+		public ChangeKind getKind(){
+			return kind;
+		}
+		
+		/**
+		 * @return qualified name of the affected bean, see {@link PermissionIndex#getBeanKey(EnterpriseBean)}
+		 */
+		public String getBean(){
+			return bean;
+		}
+		
+		/**
+		 * @return name and parameter types of the affected operation, see {@link SignatureRegistry#getMethodKey(OperationSignature)},
+		 * null for bean-level changes
+		 */
+		public String getOperation(){
+			return operation;
+		}
+		
+		/**
+		 * @return description of the old state, null if added
+		 */
+		public String getBefore(){
+			return before;
+		}
+		
+		/**
+		 * @return description of the new state, null if removed
+		 */
+		public String getAfter(){
+			return after;
+		}
+		
+		@Override
+		public String toString(){
+			StringBuilder sb = new StringBuilder(kind.name()).append(' ').append(bean);
+			if(operation != null){
+				sb.append('.').append(operation);
+			}
+			if(before != null || after != null){
+				sb.append(' ').append(before == null ? "-" : before).append(" -> ").append(after == null ? "-" : after);
+			}
+			return sb.toString();
+		}
+	}
+	
+	/**
+	 * Fingerprinted bean of one of the models.
+	 */
+	private static class BeanEntry {
+		final EnterpriseBean bean;
+		final long securityFingerprint;
+		final Map<String, OperationEntry> operations;
+		final long fingerprint;
+		
+		BeanEntry(EnterpriseBean bean){
+			this.bean = bean;
+			this.securityFingerprint = fingerprint(bean.getSecuritySpecs());
+			this.operations = new LinkedHashMap<>();
+			
+			long hash = mix(mix(FNV_OFFSET, bean.eClass().getName()), bean.getName());
+			hash = mix(hash, securityFingerprint);
+			for(Operation operation : getOperations(bean)){
+				String name = operation.getSignature() != null ? operation.getSignature().getName() : null;
+				String key = operation.getSignature() != null ? SignatureRegistry.getMethodKey(operation.getSignature()) : null;
+				OperationEntry entry = new OperationEntry(operation, name, key);
+				operations.put(key, entry);
+				hash = mix(mix(hash, key), entry.fingerprint);
+			}
+			this.fingerprint = hash;
+		}
+		
+		PermissionIndex.OperationAccess getAccess(OperationEntry operation){
+			EnterpriseBeanSecurity beanSecurity = bean.getSecuritySpecs();
+			return PermissionIndex.resolve(PermissionIndex.getBeanKey(bean), operation.name, operation.key, operation.operation.getSecuritySpecs(),
+					beanSecurity, beanSecurity == null ? null : roleName(beanSecurity.getRunAs()));
+		}
+	}
+	
+	/**
+	 * Fingerprinted operation of one of the models.
+	 */
+	private static class OperationEntry {
+		final Operation operation;
+		final String name;
+		final String key;
+		final long fingerprint;
+		
+		OperationEntry(Operation operation, String name, String key){
+			this.operation = operation;
+			this.name = name;
+			this.key = key;
+			long hash = mix(mix(FNV_OFFSET, operation.eClass().getName()), name);
+			this.fingerprint = mix(hash, fingerprint(operation.getSecuritySpecs()));
+		}
+	}
+	
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	
+	private final List<Change> changes = new ArrayList<>();
+	private int comparedBeans;
+	private int unchangedBeans;
+	
+	private ModelDiff(){
+	}
+	
+	/**
+	 * Loads two saved models and compares them.
+	 * @param oldModel model file of the old release
+	 * @param newModel model file of the new release
+	 * @return differences between the models
+	 * @throws IOException if a model can't be read
+	 */
+	public static ModelDiff compare(File oldModel, File newModel) throws IOException{
+		return compare(OutputFormat.load(oldModel), OutputFormat.load(newModel));
+	}
+	
+	/**
+	 * Compares two models.
+	 * @param oldModel resource of the old release
+	 * @param newModel resource of the new release
+	 * @return differences between the models
+	 */
+	public static ModelDiff compare(Resource oldModel, Resource newModel){
+		ModelDiff diff = new ModelDiff();
+		Map<String, BeanEntry> oldBeans = index(oldModel.getContents());
+		Map<String, BeanEntry> newBeans = index(newModel.getContents());
+		
+		for(Map.Entry<String, BeanEntry> entry : oldBeans.entrySet()){
+			BeanEntry newBean = newBeans.get(entry.getKey());
+			if(newBean == null){
+				diff.changes.add(new Change(ChangeKind.BEAN_REMOVED, entry.getKey(), null, entry.getValue().bean.eClass().getName(), null));
+			}
+			else{
+				diff.compareBeans(entry.getKey(), entry.getValue(), newBean);
+			}
+		}
+		for(Map.Entry<String, BeanEntry> entry : newBeans.entrySet()){
+			if(!oldBeans.containsKey(entry.getKey())){
+				diff.changes.add(new Change(ChangeKind.BEAN_ADDED, entry.getKey(), null, null, entry.getValue().bean.eClass().getName()));
+			}
+		}
+		return diff;
+	}
+	
+	/**
+	 * @return all differences, bean by bean in the order of the old model followed by the added beans
+	 */
+	public List<Change> getChanges(){
+		return Collections.unmodifiableList(changes);
+	}
+	
+	/**
+	 * @return true if any difference affects who may call what
+	 */
+	public boolean hasPermissionChanges(){
+		for(Change change : changes){
+			if(change.getKind().isPermissionChange()){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Writes one line per difference followed by a summary line.
+	 * @param out target of the report
+	 * @throws IOException
+	 */
+	public void write(Appendable out) throws IOException{
+		for(Change change : changes){
+			out.append(change.toString()).append('\n');
+		}
+		out.append("DIFF beans=").append(String.valueOf(comparedBeans)).append(" unchanged=").append(String.valueOf(unchangedBeans))
+		.append(" changes=").append(String.valueOf(changes.size())).append(" permission_changes=").append(String.valueOf(hasPermissionChanges())).append('\n');
+	}
+	
+	private void compareBeans(String name, BeanEntry oldBean, BeanEntry newBean){
+		comparedBeans++;
+		if(oldBean.fingerprint == newBean.fingerprint){
+			unchangedBeans++;
+			return;
+		}
+		if(!oldBean.bean.eClass().equals(newBean.bean.eClass())){
+			changes.add(new Change(ChangeKind.BEAN_TYPE_CHANGED, name, null, oldBean.bean.eClass().getName(), newBean.bean.eClass().getName()));
+		}
+		boolean securityChanged = oldBean.securityFingerprint != newBean.securityFingerprint;
+		if(securityChanged){
+			EnterpriseBeanSecurity oldSecurity = oldBean.bean.getSecuritySpecs();
+			EnterpriseBeanSecurity newSecurity = newBean.bean.getSecuritySpecs();
+			String oldRunAs = oldSecurity == null ? null : roleName(oldSecurity.getRunAs());
+			String newRunAs = newSecurity == null ? null : roleName(newSecurity.getRunAs());
+			if(oldRunAs == null ? newRunAs != null : !oldRunAs.equals(newRunAs)){
+				changes.add(new Change(ChangeKind.RUN_AS_CHANGED, name, null, oldRunAs, newRunAs));
+			}
+			Set<String> oldDeclared = oldSecurity == null ? Collections.<String>emptySet() : roleNames(oldSecurity.getRolesDeclared());
+			Set<String> newDeclared = newSecurity == null ? Collections.<String>emptySet() : roleNames(newSecurity.getRolesDeclared());
+			if(!oldDeclared.equals(newDeclared)){
+				changes.add(new Change(ChangeKind.DECLARED_ROLES_CHANGED, name, null, oldDeclared.toString(), newDeclared.toString()));
+			}
+		}
+		
+		for(Map.Entry<String, OperationEntry> entry : oldBean.operations.entrySet()){
+			OperationEntry newOperation = newBean.operations.get(entry.getKey());
+			if(newOperation == null){
+				changes.add(new Change(ChangeKind.OPERATION_REMOVED, name, entry.getKey(), describe(oldBean.getAccess(entry.getValue())), null));
+			}
+			else if(securityChanged || entry.getValue().fingerprint != newOperation.fingerprint){
+				compareOperations(name, entry.getKey(), oldBean, entry.getValue(), newBean, newOperation);
+			}
+		}
+		for(Map.Entry<String, OperationEntry> entry : newBean.operations.entrySet()){
+			if(!oldBean.operations.containsKey(entry.getKey())){
+				changes.add(new Change(ChangeKind.OPERATION_ADDED, name, entry.getKey(), null, describe(newBean.getAccess(entry.getValue()))));
+			}
+		}
+	}
+	
+	private void compareOperations(String bean, String key, BeanEntry oldBean, OperationEntry oldOperation, BeanEntry newBean, OperationEntry newOperation){
+		if(!oldOperation.operation.eClass().equals(newOperation.operation.eClass())){
+			changes.add(new Change(ChangeKind.OPERATION_CHANGED, bean, key, oldOperation.operation.eClass().getName(),
+					newOperation.operation.eClass().getName()));
+		}
+		
+		PermissionIndex.OperationAccess oldAccess = oldBean.getAccess(oldOperation);
+		PermissionIndex.OperationAccess newAccess = newBean.getAccess(newOperation);
+		Set<String> oldCallers = getCallers(oldAccess);
+		Set<String> newCallers = getCallers(newAccess);
+		boolean oldEveryone = oldCallers == null;
+		boolean newEveryone = newCallers == null;
+		
+		ChangeKind kind;
+		if(oldEveryone && newEveryone){
+			//permitted to all and unchecked let the same callers in
+			return;
+		}
+		else if(oldEveryone){
+			kind = ChangeKind.ACCESS_NARROWED;
+		}
+		else if(newEveryone){
+			kind = ChangeKind.ACCESS_WIDENED;
+		}
+		else if(oldCallers.equals(newCallers)){
+			return;
+		}
+		else if(newCallers.containsAll(oldCallers)){
+			kind = ChangeKind.ACCESS_WIDENED;
+		}
+		else if(oldCallers.containsAll(newCallers)){
+			kind = ChangeKind.ACCESS_NARROWED;
+		}
+		else{
+			kind = ChangeKind.ACCESS_CHANGED;
+		}
+		changes.add(new Change(kind, bean, key, describe(oldAccess), describe(newAccess)));
+	}
+	
+	/**
+	 * @param access effective access
+	 * @return roles allowed to call, empty if nobody may call, null if everybody may call
+	 */
+	private static Set<String> getCallers(PermissionIndex.OperationAccess access){
+		switch(access.getAccess()){
+		case DENY_ALL:
+			return Collections.emptySet();
+		case ROLES:
+			return access.getRoles();
+		default:
+			return null;
+		}
+	}
+	
+	private static String describe(PermissionIndex.OperationAccess access){
+		return access.getAccess() == PermissionIndex.Access.ROLES ? access.getRoles().toString() : access.getAccess().name();
+	}
+	
+	/**
+	 * Fingerprints the beans among the given root objects, keyed by qualified bean name.
+	 */
+	private static Map<String, BeanEntry> index(Collection<EObject> contents){
+		Map<String, BeanEntry> beans = new LinkedHashMap<>();
+		for(EObject object : contents){
+			if(object instanceof EnterpriseBean){
+				EnterpriseBean bean = (EnterpriseBean)object;
+				String key = String.valueOf(PermissionIndex.getBeanKey(bean));
+				//only models saved without the qualified bean names can repeat a key, for beans of the same name
+				for(int duplicate = 2; beans.containsKey(key); duplicate++){
+					key = PermissionIndex.getBeanKey(bean) + "[" + duplicate + "]";
+				}
+				beans.put(key, new BeanEntry(bean));
+			}
+		}
+		return beans;
+	}
+	
+	private static List<? extends Operation> getOperations(EnterpriseBean bean){
+		if(bean instanceof SessionBean){
+			return ((SessionBean)bean).getOwnedOperations();
+		}
+		if(bean instanceof MessageDrivenBean){
+			return ((MessageDrivenBean)bean).getOwnedOperations();
+		}
+		return Collections.emptyList();
+	}
+	
+	private static long fingerprint(EnterpriseBeanSecurity security){
+		if(security == null){
+			return 0;
+		}
+		long hash = mix(FNV_OFFSET, (security.isDenyAll() ? 1 : 0) | (security.isPermitAll() ? 2 : 0));
+		hash = mixRoles(hash, security.getRolesAllowed());
+		hash = mixRoles(hash, security.getRolesDeclared());
+		return mix(hash, roleName(security.getRunAs()));
+	}
+	
+	private static long fingerprint(EnterpriseBeanOperationSecurity security){
+		if(security == null){
+			return 0;
+		}
+		long hash = mix(FNV_OFFSET, (security.isDenyAll() ? 1 : 0) | (security.isPermitAll() ? 2 : 0));
+		return mixRoles(hash, security.getRolesAllowed());
+	}
+	
+	/**
+	 * Mixes a set of roles into a hash independently of their order.
+	 */
+	private static long mixRoles(long hash, List<Role> roles){
+		long sum = 0;
+		for(Role role : roles){
+			sum += mix(FNV_OFFSET, role.getName());
+		}
+		return mix(mix(hash, roles.size()), sum);
+	}
+	
+	private static long mix(long hash, String value){
+		if(value == null){
+			return mix(hash, 0);
+		}
+		for(int i = 0; i < value.length(); i++){
+			hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+		}
+		return mix(hash, value.length() + 1);
+	}
+	
+	private static long mix(long hash, long value){
+		for(int i = 0; i < 8; i++){
+			hash = (hash ^ (value & 0xFF)) * FNV_PRIME;
+			value >>>= 8;
+		}
+		return hash;
+	}
+	
+	private static Set<String> roleNames(List<Role> roles){
+		Set<String> names = new LinkedHashSet<>();
+		for(Role role : roles){
+			names.add(role.getName());
+		}
+		return names;
+	}
+	
+	private static String roleName(Role role){
+		return role == null ? null : role.getName();
+	}
+}
@@ -0,0 +1,93 @@
+package ejb.securitymodel.generation;
+
+import java.io.IOException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Background job generating the security model for a Java project, so the workbench stays responsive.
+ *
+ */
+public class ModelGenerationJob extends Job {
+	
+	public static final String PLUGIN_ID = "ejb.securitymodel.generation";
+	
+	private IJavaProject project;
+	private String outputPath;
+	private int parallelism;
+	//results of the last run
+	private volatile long durationMillis;
+	private volatile int beanCount;
+	
+	/**
+	 * ModelGenerationJob constructor.
+	 * @param project Java project to generate the security model for
+	 * @param outputPath path to save the created model instance to
+	 */
+	public ModelGenerationJob(IJavaProject project, String outputPath){
+		super("Generating security model for " + project.getElementName());
+		this.project = project;
+		this.outputPath = outputPath;
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+		setUser(true);
+		//the incremental updater and the builder may write the same model
+		setRule(ModelGenerator.getOutputRule(project, outputPath));
+	}
+	
+	/**
+	 * Sets the number of threads extracting the beans of the project.
+	 * @param parallelism number of threads, all available processors by default
+	 */
+	public void setParallelism(int parallelism){
+		this.parallelism = parallelism;
+	}
+	
+	/**
+	 * @return the Java project the model gets generated for
+	 */
+	public IJavaProject getProject(){
+		return project;
+	}
+	
+	/**
+	 * @return wall-clock time of the last run in milliseconds
+	 */
+	public long getDurationMillis(){
+		return durationMillis;
+	}
+	
+	/**
+	 * @return number of Java Beans found in the last run
+	 */
+	public int getBeanCount(){
+		return beanCount;
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		long start = System.nanoTime();
+		ModelGenerator generator = new ModelGenerator();
+		try {
+			generator.setParallelism(parallelism);
+			generator.generateModel(project, outputPath, monitor);
+			return Status.OK_STATUS;
+		} catch (OperationCanceledException e) {
+			return Status.CANCEL_STATUS;
+		} catch (JavaModelException e) {
+			return new Status(IStatus.ERROR, PLUGIN_ID, "Could not read Java project " + project.getElementName(), e);
+		} catch (IOException e) {
+			return new Status(IStatus.ERROR, PLUGIN_ID, "Could not save security model of " + project.getElementName(), e);
+		} finally {
+			durationMillis = (System.nanoTime() - start) / 1000000;
+			beanCount = generator.getBeanCount();
+			monitor.done();
+		}
+	}
+	
+}
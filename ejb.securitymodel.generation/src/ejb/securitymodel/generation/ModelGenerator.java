@@ -1,31 +1,75 @@
 package ejb.securitymodel.generation;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
-import org.eclipse.emf.ecore.util.EcoreUtil;
-import org.eclipse.jdt.core.IAnnotation;
+import org.eclipse.emf.ecore.util.InternalEList;
 import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
-import org.eclipse.jdt.core.IMemberValuePair;
-import org.eclipse.jdt.core.IMethod;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.IJavaSearchScope;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchMatch;
+import org.eclipse.jdt.core.search.SearchParticipant;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.SearchRequestor;
 
+import de.mkonersmann.ejb31.DataType;
 import de.mkonersmann.ejb31.Ejb31Factory;
 import de.mkonersmann.ejb31.EnterpriseBean;
 import de.mkonersmann.ejb31.EnterpriseBeanOperationSecurity;
 import de.mkonersmann.ejb31.EnterpriseBeanSecurity;
 import de.mkonersmann.ejb31.MessageDrivenBean;
 import de.mkonersmann.ejb31.MessageDrivenBeanOperation;
+import de.mkonersmann.ejb31.Operation;
+import de.mkonersmann.ejb31.OperationParameter;
 import de.mkonersmann.ejb31.OperationSignature;
 import de.mkonersmann.ejb31.Role;
 import de.mkonersmann.ejb31.SessionBean;
@@ -39,9 +83,44 @@ import de.mkonersmann.ejb31.SessionBeanOperation;
  */
 public class ModelGenerator {
 	
+	//annotations marking a class as Java Bean
+	private static final SecurityAnnotation[] BEAN_ANNOTATIONS = { SecurityAnnotation.STATELESS,
+			SecurityAnnotation.STATEFUL, SecurityAnnotation.SINGLETON, SecurityAnnotation.MESSAGEDRIVEN };
+	
 	private Ejb31Factory factory;
 	private Resource resource;
-	private List<Role> createdRoles;
+	private RoleRegistry roleRegistry;
+	private SignatureRegistry signatureRegistry;
+	//facts of the compilation units, read once per unit
+	private Map<ICompilationUnit, BeanFacts> unitFacts;
+	private ExtractionCache cache;
+	//superclasses of the beans of the current project, null for compiled classes
+	private SupertypeCache supertypeCache;
+	//values of the constants role values refer to
+	private ConstantResolver constants;
+	//security given by the deployment descriptors of the current project, overriding the annotations
+	private DeploymentDescriptor descriptor;
+	private DiscoveryMode discoveryMode;
+	private ExtractionEngine extractionEngine;
+	private int parallelism;
+	private boolean useCache;
+	private OutputFormat outputFormat;
+	//set while a streaming output format writes the model
+	private StreamingModelWriter streamWriter;
+	private int beanCount;
+	//false if the last run left the existing model file untouched
+	private boolean modelChanged;
+	private boolean indexPermissions;
+	//effective permissions of the current or last model, if requested
+	private PermissionIndex permissionIndex;
+	private boolean recordMetrics;
+	//metrics of the current or last run
+	private GenerationMetrics metrics;
+	//state of the last generated model, kept for incremental updates
+	private File modelFile;
+	private Map<ICompilationUnit, BeanExtraction> extractions;
+	//number of references to the roles, signatures and data types shared between beans
+	private Map<EObject, Integer> sharedReferences;
 	
 	public String URI_PATH;
 	
@@ -51,7 +130,91 @@ public class ModelGenerator {
 	 */
 	public ModelGenerator(){
 		this.factory = Ejb31Factory.eINSTANCE;
-		this.createdRoles = new ArrayList<>();
+		this.roleRegistry = new RoleRegistry(factory);
+		this.signatureRegistry = new SignatureRegistry(factory);
+		this.constants = new ConstantResolver();
+		this.unitFacts = new ConcurrentHashMap<>();
+		this.discoveryMode = DiscoveryMode.INDEX;
+		this.extractionEngine = ExtractionEngine.JAVA_MODEL;
+		this.parallelism = 1;
+		this.useCache = true;
+		this.outputFormat = OutputFormat.XMI;
+		this.metrics = GenerationMetrics.DISABLED;
+		this.descriptor = new DeploymentDescriptor();
+		this.extractions = new HashMap<>();
+		this.sharedReferences = new HashMap<>();
+	}
+	
+	/**
+	 * Sets the strategy used to find the Java Beans of a project.
+	 * @param discoveryMode discovery strategy, INDEX by default
+	 */
+	public void setDiscoveryMode(DiscoveryMode discoveryMode){
+		this.discoveryMode = discoveryMode;
+	}
+	
+	/**
+	 * Sets the way the facts of the compilation units are read.
+	 * @param extractionEngine extraction engine, JAVA_MODEL by default
+	 */
+	public void setExtractionEngine(ExtractionEngine extractionEngine){
+		this.extractionEngine = extractionEngine;
+	}
+	
+	/**
+	 * Sets whether the facts extracted per compilation unit are persisted between runs, so unchanged units don't have to be analysed again.
+	 * @param useCache true (the default) to use the project's extraction cache
+	 */
+	public void setUseCache(boolean useCache){
+		this.useCache = useCache;
+	}
+	
+	/**
+	 * Sets the format the model gets persisted in.
+	 * @param outputFormat output format, XMI by default
+	 */
+	public void setOutputFormat(OutputFormat outputFormat){
+		this.outputFormat = outputFormat;
+	}
+	
+	/**
+	 * Sets whether the effective permissions get indexed while generating the model, for any output format.
+	 * @param indexPermissions true to build the index available from {@link #getPermissionIndex()}, false by default
+	 */
+	public void setIndexPermissions(boolean indexPermissions){
+		this.indexPermissions = indexPermissions;
+	}
+	
+	/**
+	 * @return effective permissions of the last generated or updated model, null if not requested
+	 */
+	public PermissionIndex getPermissionIndex(){
+		return permissionIndex;
+	}
+	
+	/**
+	 * Sets whether the runs of this generator record metrics even if they aren't switched on for the whole JVM.
+	 * The metrics of a run are printed as summary line, added to the {@link GenerationStatistics} and available from {@link #getMetrics()}.
+	 * @param recordMetrics true to always record metrics, false (the default) to follow {@link GenerationStatistics#isEnabled()}
+	 */
+	public void setRecordMetrics(boolean recordMetrics){
+		this.recordMetrics = recordMetrics;
+	}
+	
+	/**
+	 * @return metrics of the last run, disabled if it recorded none
+	 */
+	public GenerationMetrics getMetrics(){
+		return metrics;
+	}
+	
+	/**
+	 * Sets the number of worker threads extracting beans in parallel.
+	 * The generated model is the same for any number of threads.
+	 * @param parallelism number of threads, 1 (the default) extracts all beans on the calling thread
+	 */
+	public void setParallelism(int parallelism){
+		this.parallelism = Math.max(1, parallelism);
 	}
 	
 	
@@ -60,108 +223,991 @@ public class ModelGenerator {
 	 * @param project Java project
 	 * @param outputPath path within workspace to save the created model instance to
 	 * @throws JavaModelException
+	 * @throws IOException if the model could not be persisted
+	 */
+	public void generateModel(IJavaProject project, String outputPath) throws JavaModelException, IOException{
+		generateModel(project, outputPath, new NullProgressMonitor());
+	}
+	
+	/**
+	 * Creates a security model for the specified Java project, reporting progress to the given monitor.
+	 * The model file is only replaced once it has been written completely, so cancelling leaves any previous model untouched.
+	 * @param project Java project
+	 * @param outputPath path within workspace to save the created model instance to
+	 * @param monitor progress monitor, may be canceled
+	 * @throws JavaModelException
+	 * @throws IOException if the model could not be persisted
+	 * @throws OperationCanceledException if the monitor got canceled
+	 */
+	public void generateModel(IJavaProject project, String outputPath, IProgressMonitor monitor) throws JavaModelException, IOException{
+		generateModel(project, new File(getOutputDirectory(project, outputPath), outputFormat.getFileName()), monitor);
+	}
+	
+	/**
+	 * Returns the directory the model of a project gets saved to for a path within the user's home directory.
+	 * @param project Java project
+	 * @param outputPath path within the user's home directory
+	 * @return the project's subdirectory of the output path
+	 */
+	public static File getOutputDirectory(IJavaProject project, String outputPath){
+		return new File(new File(System.getProperty("user.home"), outputPath), project.getElementName());
+	}
+	
+	/**
+	 * Returns the scheduling rule of the model of a project, which every job writing that model has to hold.
+	 * @param project Java project
+	 * @param outputPath path within the user's home directory
+	 * @return rule of the project's output directory
 	 */
-	public void generateModel(IJavaProject project, String outputPath) throws JavaModelException{
-			//preparations to save the model
-			StringBuilder sb = new StringBuilder();
-			sb.append("file:///").append(System.getProperty("user.home").replace('\\', '/'))
-			.append('/').append(outputPath).append('/')
-			.append(project.getElementName()).append("/SecurityModel.xmi");
+	public static ModelOutputRule getOutputRule(IJavaProject project, String outputPath){
+		return new ModelOutputRule(getOutputDirectory(project, outputPath));
+	}
+	
+	/**
+	 * Returns the file the model of a project gets saved to within an output directory.
+	 * @param project Java project
+	 * @param outputDir output directory
+	 * @return model file in the project's subdirectory of the output directory
+	 */
+	public File getModelFile(IJavaProject project, File outputDir){
+		return new File(new File(outputDir, project.getElementName()), outputFormat.getFileName());
+	}
+	
+	/**
+	 * Creates a security model for the specified Java project and saves it to the given file.
+	 * The model file is only replaced once it has been written completely, so cancelling leaves any previous model untouched.
+	 * @param project Java project
+	 * @param modelFile file to save the created model instance to
+	 * @param monitor progress monitor, may be canceled
+	 * @throws JavaModelException
+	 * @throws IOException if the model could not be persisted
+	 * @throws OperationCanceledException if the monitor got canceled
+	 */
+	public void generateModel(IJavaProject project, File modelFile, IProgressMonitor monitor) throws JavaModelException, IOException{
+			SubMonitor subMonitor = SubMonitor.convert(monitor, "Generating security model for " + project.getElementName(), 100);
 			
-			URI_PATH = sb.toString();
-
-	        ResourceSet resSet = new ResourceSetImpl();
-	        this.resource = resSet.createResource(URI.createURI(URI_PATH));
+			prepareModel(modelFile);
+	        cache = useCache ? ExtractionCache.load(project, extractionEngine) : null;
+	        supertypeCache = SupertypeCache.of(project);
+	        supertypeCache.setMetrics(metrics);
+	        supertypeCache.setConstants(constants);
+	        descriptor = DeploymentDescriptor.of(project);
+	        metrics.count(GenerationMetrics.Counter.DESCRIPTORS, descriptor.getDescriptorCount());
+			
+	        subMonitor.setTaskName("Discovering Java Beans in " + project.getElementName());
+	        long discoveryStart = metrics.start();
+			List<ICompilationUnit> beans = getJavaBeans(project, subMonitor.split(30));
+			metrics.stop(GenerationMetrics.Phase.DISCOVERY, discoveryStart);
+			beanCount = 0;
+			for(ICompilationUnit unit : beans){
+				beanCount += getFacts(unit).getBeans().size();
+			}
 			
-			List<ICompilationUnit> beans = getJavaBeans(project);
-			buildModelInstance(beans);
+			final List<ICompilationUnit> beanUnits = beans;
+			writeModel(new BeanSource() {
+				@Override
+				public void build(IProgressMonitor monitor) throws JavaModelException, IOException {
+					buildModelInstance(beanUnits, monitor);
+				}
+			}, subMonitor.split(70));
+			
+			if(cache != null){
+				//units not visited anymore got deleted or don't contain beans
+				cache.retainTouched();
+				saveCache();
+			}
 			
 			System.out.println("Model successfully created: " + URI_PATH);
+			reportMetrics(project.getElementName());
+	}
+	
+	/**
+	 * Creates a security model from compiled classes and saves it to the given file, for applications available as deployed archives only.
+	 * The model is built the same way as from the sources, the incremental update and the extraction cache are not available for it.
+	 * @param locations class directories and JAR, WAR or EAR files
+	 * @param modelFile file to save the created model instance to
+	 * @param monitor progress monitor, may be canceled
+	 * @throws IOException if a location can't be read or the model could not be persisted
+	 * @throws OperationCanceledException if the monitor got canceled
+	 */
+	public void generateModel(List<File> locations, File modelFile, IProgressMonitor monitor) throws IOException{
+		SubMonitor subMonitor = SubMonitor.convert(monitor, "Generating security model from compiled classes", 100);
+		
+		prepareModel(modelFile);
+		cache = null;
+		supertypeCache = null;
+		
+		subMonitor.setTaskName("Scanning compiled classes for Java Beans");
+		long scanStart = metrics.start();
+		ClassFileScanner scanner = new ClassFileScanner();
+		final List<BeanFacts> beans = scanner.scan(locations, subMonitor.split(30));
+		descriptor = scanner.getDescriptor();
+		//the scan reads and classifies every class file in one go, so there is no classification time of its own
+		metrics.stop(GenerationMetrics.Phase.DISCOVERY, scanStart);
+		metrics.count(GenerationMetrics.Counter.UNITS_SCANNED, scanner.getClassCount());
+		metrics.count(GenerationMetrics.Counter.ANNOTATION_PROBES, scanner.getParsedCount());
+		metrics.count(GenerationMetrics.Counter.DESCRIPTORS, descriptor.getDescriptorCount());
+		beanCount = beans.size();
+		
+		try {
+			writeModel(new BeanSource() {
+				@Override
+				public void build(IProgressMonitor monitor) throws JavaModelException, IOException {
+					List<BeanTask> tasks = new ArrayList<>(beans.size());
+					for(final BeanFacts facts : beans){
+						tasks.add(new BeanTask(facts.getName()) {
+							@Override
+							public BeanExtraction call() {
+								BeanExtraction extraction = new BeanExtraction(null);
+								extractBean(descriptor.merge(facts), extraction);
+								return extraction;
+							}
+						});
+					}
+					extractBeans(tasks, monitor);
+				}
+			}, subMonitor.split(70));
+		} catch (JavaModelException e) {
+			//can't happen without the Java model
+			throw new IOException(e);
+		}
+		//compiled classes can't be updated incrementally
+		this.resource = null;
+		
+		System.out.println("Model successfully created: " + URI_PATH);
+		reportMetrics(modelFile.getParentFile().getName());
+	}
+	
+	/**
+	 * Source of the beans of a model, building them in the configured order.
+	 */
+	private interface BeanSource {
+		/**
+		 * Extracts all beans and hands them over to {@link ModelGenerator#acceptBean(BeanExtraction)}.
+		 * @param monitor progress monitor, may be canceled
+		 */
+		void build(IProgressMonitor monitor) throws JavaModelException, IOException;
+	}
+	
+	/**
+	 * Extraction of the beans of one compilation unit or compiled class, run on the calling thread or on a worker thread.
+	 */
+	private abstract class BeanTask implements Callable<BeanExtraction> {
+		private final String name;
+		
+		BeanTask(String name){
+			this.name = name;
+		}
+		
+		@Override
+		public abstract BeanExtraction call() throws JavaModelException;
+	}
+	
+	/**
+	 * Forgets about any previously generated model and creates the resource of a new one.
+	 * Package visible to measure it in the {@link GenerationBenchmark}.
+	 * @param modelFile file the model gets saved to
+	 */
+	void prepareModel(File modelFile){
+		metrics = GenerationStatistics.getInstance().newRun(recordMetrics);
+		
+		//preparations to save the model
+		this.modelFile = modelFile;
+		URI_PATH = URI.createFileURI(modelFile.getAbsolutePath()).toString();
+
+        ResourceSet resSet = new ResourceSetImpl();
+        this.resource = outputFormat.createResource(URI.createURI(URI_PATH));
+        resSet.getResources().add(resource);
+        
+        //forget about any previously generated model
+        roleRegistry = new RoleRegistry(factory);
+        signatureRegistry = new SignatureRegistry(factory);
+        constants = new ConstantResolver();
+        descriptor = new DeploymentDescriptor();
+        unitFacts.clear();
+        extractions.clear();
+        sharedReferences.clear();
+        permissionIndex = indexPermissions ? new PermissionIndex() : null;
+	}
+	
+	/**
+	 * Prints the metrics of the finished run and adds them to the statistics of this JVM.
+	 * @param name name of the generated project
+	 */
+	private void reportMetrics(String name){
+		if(metrics.isEnabled()){
+			System.out.println(metrics.getSummary(name));
+			GenerationStatistics.getInstance().add(metrics, name);
+		}
+	}
+	
+	/**
+	 * Builds the model from the given beans and writes it to the model file, either streamed bean by bean or saved as a whole.
+	 * @param beans source of the beans
+	 * @param monitor progress monitor, may be canceled
+	 * @throws JavaModelException
+	 * @throws IOException if the model could not be persisted
+	 */
+	private void writeModel(BeanSource beans, IProgressMonitor monitor) throws JavaModelException, IOException{
+		SubMonitor subMonitor = SubMonitor.convert(monitor, 70);
+		if(outputFormat.isStreaming()){
+			subMonitor.setTaskName("Writing security model to " + URI_PATH);
+			streamModel(beans, modelFile, subMonitor.split(70));
+			//nothing to update incrementally
+			this.resource = null;
+		}
+		else{
+			subMonitor.setTaskName("Building security model");
+			beans.build(subMonitor.split(60));
+			
+			subMonitor.setTaskName("Saving security model to " + URI_PATH);
+			saveModel(modelFile, subMonitor.split(10));
+		}
+	}
+	
+	/**
+	 * @return number of Java Beans found while generating the last model
+	 */
+	public int getBeanCount(){
+		return beanCount;
+	}
+	
+	/**
+	 * @return true if the last run wrote a new model file, false if the model had the same content as the existing file
+	 */
+	public boolean isModelChanged(){
+		return modelChanged;
+	}
+	
+	/**
+	 * @return true if there is a model in memory for {@link #updateModel(Collection, IProgressMonitor)} to update,
+	 * false if no model has been generated yet or it got written by a streaming output format
+	 */
+	public boolean canUpdateModel(){
+		return resource != null;
+	}
+	
+	/**
+	 * Updates the previously generated model for the given changed compilation units and saves it again.
+	 * Only the beans of these units and the beans inheriting from their classes get removed, re-extracted or added,
+	 * roles and signatures no longer referenced by any bean are dropped from the model.
+	 * If none of the units declares a bean, or did so before, the model file isn't touched at all.
+	 * @param units added, changed or removed compilation units
+	 * @param monitor progress monitor, may be canceled
+	 * @throws JavaModelException
+	 * @throws IOException if the model could not be persisted
+	 * @throws IllegalStateException if {@link #canUpdateModel()} is false
+	 */
+	public void updateModel(Collection<ICompilationUnit> units, IProgressMonitor monitor) throws JavaModelException, IOException{
+		if(resource == null){
+			throw new IllegalStateException("No model generated yet");
+		}
+		metrics = GenerationStatistics.getInstance().newRun(recordMetrics);
+		supertypeCache.setMetrics(metrics);
+		
+		//beans inheriting from a changed class or referring to its constants have to be extracted again as well
+		Set<String> changedTypes = getTypeNames(units);
+		units = new LinkedHashSet<>(units);
+		Collection<ICompilationUnit> dependentUnits = constants.getDependentUnits(changedTypes);
+		units.addAll(dependentUnits);
+		changedTypes.addAll(getTypeNames(dependentUnits));
+		constants.invalidate(changedTypes);
+		supertypeCache.invalidate(changedTypes);
+		for(Map.Entry<ICompilationUnit, BeanExtraction> entry : extractions.entrySet()){
+			if(!Collections.disjoint(entry.getValue().getSupertypes(), changedTypes)){
+				units.add(entry.getKey());
+			}
+		}
+		//reading the units again records the dependencies they still have
+		constants.removeDependencies(units);
+		SubMonitor subMonitor = SubMonitor.convert(monitor, "Updating security model " + URI_PATH, units.size() + 1);
+		
+		//drop the outdated beans first, so roles moving from one bean to another don't get lost
+		boolean beansChanged = false;
+		for(ICompilationUnit unit : units){
+			unitFacts.remove(unit);
+			BeanExtraction extraction = extractions.remove(unit);
+			if(extraction != null){
+				removeBean(extraction);
+				beansChanged = true;
+			}
+		}
+		
+		List<ICompilationUnit> existingUnits = new ArrayList<>(units.size());
+		for(ICompilationUnit unit : units){
+			if(unit.exists()){
+				existingUnits.add(unit);
+			}
+		}
+		readFacts(existingUnits, new NullProgressMonitor());
+		
+		for(ICompilationUnit unit : units){
+			subMonitor.split(1);
+			//removed units and units without bean annotations simply don't show up in the model anymore
+			if(unit.exists() && isJavaBean(unit)){
+				mergeBean(extractBean(unit));
+				beansChanged = true;
+			}
+		}
+		
+		saveCache();
+		if(!beansChanged){
+			//none of the units declares a bean or did before, so the model is still the same
+			modelChanged = false;
+			reportMetrics(modelFile.getParentFile().getName());
+			return;
+		}
+		saveModel(modelFile, subMonitor.split(1));
+		if(indexPermissions){
+			//operations of changed beans may have moved anywhere, so index the whole model again
+			permissionIndex = PermissionIndex.of(resource);
+		}
+		System.out.println("Model successfully updated: " + URI_PATH);
+		reportMetrics(modelFile.getParentFile().getName());
+	}
+	
+	/**
+	 * Returns the qualified names of the types declared by the given compilation units, including their nested types.
+	 * @param units compilation units, possibly removed ones
+	 * @return qualified type names
+	 * @throws JavaModelException
+	 */
+	private static Set<String> getTypeNames(Collection<ICompilationUnit> units) throws JavaModelException{
+		Set<String> names = new HashSet<>();
+		for(ICompilationUnit unit : units){
+			if(unit.exists()){
+				for(IType type : unit.getAllTypes()){
+					names.add(type.getFullyQualifiedName('.'));
+				}
+			}
+			else{
+				//only the name of the main type is known for removed units
+				String packageName = unit.getParent().getElementName();
+				String typeName = unit.getElementName().split(".java")[0];
+				names.add(packageName.isEmpty() ? typeName : packageName + "." + typeName);
+			}
+		}
+		return names;
+	}
+	
+	/**
+	 * Writes the extraction cache back to disk, a failure only costs the next run some time.
+	 */
+	private void saveCache(){
+		if(cache != null){
+			try {
+				cache.save();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 	}
 	
 	
 	/**
 	 * Sets the model data for a given list of Java Beans.
+	 * Package visible to measure it in the {@link GenerationBenchmark}.
 	 * @param beans
+	 * @param monitor progress monitor, one unit of work per bean
+	 * @throws JavaModelException
+	 * @throws IOException if a streaming output format failed writing a bean
+	 */
+	void buildModelInstance(List<ICompilationUnit> beans, IProgressMonitor monitor) throws JavaModelException, IOException{
+		List<BeanTask> tasks = new ArrayList<>(beans.size());
+		for(final ICompilationUnit unit : beans){
+			tasks.add(new BeanTask(unit.getElementName()) {
+				@Override
+				public BeanExtraction call() throws JavaModelException {
+					return extractBean(unit);
+				}
+			});
+		}
+		extractBeans(tasks, monitor);
+	}
+	
+	/**
+	 * Runs the given bean extractions, on worker threads if a parallelism is set, and hands the beans over in list order.
+	 * @param tasks extractions of the beans
+	 * @param monitor progress monitor, one unit of work per task
 	 * @throws JavaModelException
+	 * @throws IOException if a streaming output format failed writing a bean
 	 */
-	private void buildModelInstance(List<ICompilationUnit> beans) throws JavaModelException{
+	private void extractBeans(List<BeanTask> tasks, IProgressMonitor monitor) throws JavaModelException, IOException{
+		SubMonitor subMonitor = SubMonitor.convert(monitor, tasks.size());
 		
-		for(ICompilationUnit unit : beans){
-			
-			//bean to add
-			EnterpriseBean bean;
-			JavaBeanType beanType;
-			boolean asyncBean = false;
+		if(parallelism == 1 || tasks.size() < 2){
+			for(BeanTask task : tasks){
+				//throws OperationCanceledException as soon as the user cancels
+				subMonitor.split(1);
+				subMonitor.subTask(task.name);
+				acceptBean(task.call());
+			}
+			return;
+		}
+		
+		//extract the beans on a bounded pool, but merge them in list order to get the same model as a sequential run
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()));
+		try {
+			//only keep a few extractions ahead of the merge, so finished but not yet merged beans don't pile up in memory
+			int window = parallelism * 4;
+			Deque<Future<BeanExtraction>> pending = new ArrayDeque<>(window);
+			int submitted = 0;
+			for(BeanTask task : tasks){
+				while(submitted < tasks.size() && pending.size() < window){
+					pending.add(executor.submit(tasks.get(submitted++)));
+				}
+				subMonitor.split(1);
+				subMonitor.subTask(task.name);
+				acceptBean(getExtraction(pending.poll()));
+			}
+		} finally {
+			//stops outstanding extractions on cancellation or failure
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Writes the model for the given Java Beans bean by bean, without building it in memory first.
+	 * Just like saving, the model is written to a temporary file first and only replaces the old model once complete.
+	 * @param beans
+	 * @param modelFile file to write the model to
+	 * @param monitor progress monitor
+	 * @throws JavaModelException
+	 * @throws IOException if the model could not be written
+	 */
+	private void streamModel(BeanSource beans, File modelFile, IProgressMonitor monitor) throws JavaModelException, IOException{
+		SubMonitor subMonitor = SubMonitor.convert(monitor, 10);
+		Path tempFile = createTempFile(modelFile);
+		try {
+			MessageDigest digest = newDigest();
+			try(OutputStream out = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 64 * 1024), digest)){
+				streamWriter = new StreamingModelWriter(out);
+				beans.build(subMonitor.split(9));
+				long closeStart = metrics.start();
+				streamWriter.close();
+				metrics.stop(GenerationMetrics.Phase.PERSISTENCE, closeStart);
+			}
+			long size = Files.size(tempFile);
+			metrics.count(GenerationMetrics.Counter.BYTES_WRITTEN, size);
+			modelChanged = !hasContent(modelFile.toPath(), digest.digest(), size);
+			if(modelChanged){
+				replaceFile(tempFile, modelFile);
+				metrics.count(GenerationMetrics.Counter.MODELS_REPLACED, 1);
+			}
+			subMonitor.worked(1);
+		} finally {
+			streamWriter = null;
+			//only left over if writing failed or got canceled
+			Files.deleteIfExists(tempFile);
+		}
+	}
+	
+	/**
+	 * Hands an extracted bean over to the streaming writer if one is active, merges it into the resource otherwise.
+	 * @param extraction extracted bean
+	 * @throws IOException if the streaming writer failed
+	 */
+	private void acceptBean(BeanExtraction extraction) throws IOException{
+		if(permissionIndex != null){
+			for(EnterpriseBean bean : extraction.getBeans()){
+				permissionIndex.add(bean);
+			}
+		}
+		if(streamWriter != null){
+			long start = metrics.start();
+			streamWriter.writeBean(extraction);
+			metrics.stop(GenerationMetrics.Phase.PERSISTENCE, start);
+			//the facts aren't needed anymore, don't let them accumulate
+			if(extraction.getUnit() != null){
+				unitFacts.remove(extraction.getUnit());
+			}
+		}
+		else{
+			mergeBean(extraction);
+		}
+	}
+	
+	/**
+	 * Waits for a bean extraction running on a worker thread.
+	 * @param extraction pending extraction
+	 * @return extraction result
+	 * @throws JavaModelException if the extraction failed reading the Java model
+	 */
+	private BeanExtraction getExtraction(Future<BeanExtraction> extraction) throws JavaModelException{
+		try {
+			return extraction.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} catch (CancellationException e) {
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof JavaModelException){
+				throw (JavaModelException)e.getCause();
+			}
+			if(e.getCause() instanceof RuntimeException){
+				throw (RuntimeException)e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+	
+	/**
+	 * Adds the extracted beans to the resource, preceded by the roles and signatures they refer to that aren't part of the resource yet.
+	 * @param extraction extracted beans
+	 */
+	private void mergeBean(BeanExtraction extraction){
+		if(extraction.getBeans().isEmpty()){
+			return;
+		}
+		for(EObject rootObject : extraction.getRootObjects()){
+			//roles, signatures and data types are shared between beans and only get added on first reference
+			if(rootObject.eResource() == null){
+				resource.getContents().add(rootObject);
+			}
+			Integer references = sharedReferences.get(rootObject);
+			sharedReferences.put(rootObject, references == null ? 1 : references + 1);
+		}
+		//adding created beans to resource object, which gets persisted after all required objects for the model are created
+		resource.getContents().addAll(extraction.getBeans());
+		if(extraction.getUnit() != null){
+			extractions.put(extraction.getUnit(), extraction);
+		}
+	}
+	
+	/**
+	 * Removes previously merged beans from the resource, along with the roles, signatures and data types only they referred to.
+	 * @param extraction extraction of the beans to remove
+	 */
+	private void removeBean(BeanExtraction extraction){
+		resource.getContents().removeAll(extraction.getBeans());
+		for(EObject rootObject : extraction.getRootObjects()){
+			Integer references = sharedReferences.get(rootObject);
+			if(references != null && references > 1){
+				sharedReferences.put(rootObject, references - 1);
+				continue;
+			}
+			//no other bean refers to this object anymore
+			sharedReferences.remove(rootObject);
+			if(rootObject instanceof Role){
+				roleRegistry.remove((Role)rootObject);
+			}
+			else if(rootObject instanceof OperationSignature){
+				signatureRegistry.remove((OperationSignature)rootObject);
+			}
+			else if(rootObject instanceof DataType){
+				signatureRegistry.remove((DataType)rootObject);
+			}
+			resource.getContents().remove(rootObject);
+		}
+	}
+	
+	/**
+	 * Creates the bean objects for the Java Beans of a unit without touching the resource, so several beans may be extracted concurrently.
+	 * Business methods the beans inherit from their superclasses are part of the bean objects,
+	 * the security given by the deployment descriptors overrides the annotations.
+	 * @param unit Java Bean class file
+	 * @return extracted beans along with the roles and signatures they refer to
+	 * @throws JavaModelException
+	 */
+	private BeanExtraction extractBean(ICompilationUnit unit) throws JavaModelException{
+		BeanExtraction extraction = new BeanExtraction(unit);
+		for(BeanFacts facts : getFacts(unit).getBeans()){
+			BeanFacts resolved = supertypeCache != null ? supertypeCache.resolve(unit, facts, extraction) : facts;
+			extractBean(descriptor.merge(resolved), extraction);
+		}
+		return extraction;
+	}
+	
+	/**
+	 * Creates the bean object from the facts of a Java Bean.
+	 * @param facts facts of the Java Bean
+	 * @param extraction extraction recording the bean along with the roles and signatures it refers to
+	 */
+	private void extractBean(BeanFacts facts, BeanExtraction extraction){
+		long start = metrics.start();
+		
+		//bean to add
+		EnterpriseBean bean;
+		JavaBeanType beanType;
+		boolean asyncBean = false;
+		AnnotationSnapshot classAnnotations = facts.getClassAnnotations();
+		
+		switch(facts.getBeanType()){
+		case STATELESS:
+			bean = factory.createStatelessSessionBean();
+			beanType = JavaBeanType.STATELESS;
+			break;
+		case STATEFUL:
+			bean = factory.createStatefulSessionBean();
+			beanType = JavaBeanType.STATEFUL;
+			break;
+		case SINGLETON:
+			bean = factory.createSingletonSessionBean();
+			beanType = JavaBeanType.SINGLETON;
+			break;
+		case MESSAGEDRIVEN:
+			bean = factory.createMessageDrivenBean();
+			beanType = JavaBeanType.MESSAGEDRIVEN;
+			break;
+		default:
+			//only the facts of Java Beans get extracted
+			return;
+		}
+		
+		//initialize bean fields
+		bean.setName(facts.getName());
+		//the qualified name tells beans of the same name in different packages apart
+		bean.setId(facts.getQualifiedName());
+		
+		//set bean-level security
+		EnterpriseBeanSecurity beanSecuritySpecs = createEnterpriseBeanSecuritySpecs(classAnnotations, extraction);
+		bean.setSecuritySpecs(beanSecuritySpecs);
+		
+		//check at class level if all bean methods will be asynchronous
+		asyncBean = classAnnotations.has(SecurityAnnotation.ASYNCHRONOUS);
+		
+		//setting bean methods
+		for(BeanFacts.MethodFacts method : facts.getMethods()){
+			if(beanType == JavaBeanType.MESSAGEDRIVEN){		//if it's a message driven bean, create MessageDrivenBeanOperation and add it
+				((MessageDrivenBean)bean).getOwnedOperations().add(createMessageDrivenBeanOperation(method, extraction));
+			}
+			else{											//if it's a session bean, create SessionBeanOperation and add it
+				((SessionBean)bean).getOwnedOperations().add(createSessionBeanOperation(method, asyncBean, extraction));
+			}
+		}
+		
+		extraction.addBean(bean);
+		metrics.count(GenerationMetrics.Counter.BEANS_CREATED, 1);
+		metrics.count(GenerationMetrics.Counter.OPERATIONS_CREATED, facts.getMethods().size());
+		metrics.stop(GenerationMetrics.Phase.SECURITY_EXTRACTION, start);
+	}
+	
+	/**
+	 * Persists the created content to the given file.
+	 * The model is written to a temporary file next to the target first and then moved over it,
+	 * so that neither a cancellation nor a failure can leave a half-written model behind.
+	 * The root objects are saved in canonical order, and if the existing file has the same content hash
+	 * it is left untouched, so builders and caches watching it aren't triggered by an unchanged model.
+	 * Package visible to measure it in the {@link GenerationBenchmark}.
+	 * @param modelFile file to save the model to
+	 * @param monitor progress monitor
+	 * @throws IOException if the model could not be written
+	 */
+	void saveModel(File modelFile, IProgressMonitor monitor) throws IOException{
+		SubMonitor subMonitor = SubMonitor.convert(monitor, 2);
+		sortModel();
+		if(outputFormat.isSplit()){
+			saveSplitModel(modelFile, subMonitor);
+			return;
+		}
+		
+		Path tempFile = createTempFile(modelFile);
+		try {
+			long start = metrics.start();
+			outputFormat.prepareSave(resource);
+			MessageDigest digest = newDigest();
+			try(OutputStream out = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 64 * 1024), digest)){
+				resource.save(out, outputFormat.getSaveOptions());
+			}
+			metrics.stop(GenerationMetrics.Phase.PERSISTENCE, start);
+			long size = Files.size(tempFile);
+			metrics.count(GenerationMetrics.Counter.BYTES_WRITTEN, size);
+			modelChanged = !hasContent(modelFile.toPath(), digest.digest(), size);
+			subMonitor.split(1);
 			
-			switch(checkJavaBeanType(unit)){
-			case STATELESS:
-				bean = factory.createStatelessSessionBean();
-				beanType = JavaBeanType.STATELESS;
-				break;
-			case STATEFUL:
-				bean = factory.createStatefulSessionBean();
-				beanType = JavaBeanType.STATEFUL;
-				break;
-			case SINGLETON:
-				bean = factory.createSingletonSessionBean();
-				beanType = JavaBeanType.SINGLETON;
-				break;
-			case MESSAGEDRIVEN:
-				bean = factory.createMessageDrivenBean();
-				beanType = JavaBeanType.MESSAGEDRIVEN;
-				break;
-			default:
-				System.out.println("This should not get printed, because all compilation units should be java beans at this point");
+			if(modelChanged){
+				replaceFile(tempFile, modelFile);
+				metrics.count(GenerationMetrics.Counter.MODELS_REPLACED, 1);
+			}
+			subMonitor.worked(1);
+		} finally {
+			//only left over if saving failed or got canceled
+			Files.deleteIfExists(tempFile);
+		}
+	}
+	
+	/**
+	 * Persists the created content as split model, one resource per bean, into the given directory.
+	 * Just like a single model file, the resources are written to a temporary directory first, which then replaces the old one.
+	 * @param modelDir directory to save the model to
+	 * @param monitor progress monitor
+	 * @throws IOException if the model could not be written
+	 */
+	private void saveSplitModel(File modelDir, SubMonitor monitor) throws IOException{
+		Path tempDir = createTempFile(modelDir);
+		Files.delete(tempDir);
+		Files.createDirectory(tempDir);
+		try {
+			long start = metrics.start();
+			SplitModel.write(resource, tempDir.toFile());
+			metrics.stop(GenerationMetrics.Phase.PERSISTENCE, start);
+			long size = 0;
+			File[] files = tempDir.toFile().listFiles();
+			for(File file : files){
+				size += file.length();
+			}
+			metrics.count(GenerationMetrics.Counter.BYTES_WRITTEN, size);
+			modelChanged = !hasContent(modelDir.toPath(), hash(tempDir), size);
+			monitor.split(1);
+			if(!modelChanged){
 				return;
 			}
 			
-			//initialize bean fields
-			bean.setName(unit.getElementName().split(".java")[0]);	//set name without ~.java at end
-			
-			//set bean-level security
-			EnterpriseBeanSecurity beanSecuritySpecs = createEnterpriseBeanSecuritySpecs(unit);
-			bean.setSecuritySpecs(beanSecuritySpecs);
-			
-			//check at class level if all bean methods will be asynchronous
-			asyncBean = isAsyncBean(unit);
-			
-			//setting bean methods
-			IType beanClass = unit.getAllTypes()[0];
-			//getting all methods declared in the bean class
-			IMethod[] methods = beanClass.getMethods();
-			for(IMethod method : methods){
-				if(beanType == JavaBeanType.MESSAGEDRIVEN){		//if it's a message driven bean, create MessageDrivenBeanOperation and add it
-					((MessageDrivenBean)bean).getOwnedOperations().add(createMessageDrivenBeanOperation(method));
+			//the old model is moved aside as a whole and only deleted once the new one is in place
+			Path oldDir = null;
+			if(modelDir.exists()){
+				oldDir = createTempFile(modelDir);
+				Files.delete(oldDir);
+				Files.move(modelDir.toPath(), oldDir, StandardCopyOption.ATOMIC_MOVE);
+			}
+			try {
+				Files.move(tempDir, modelDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				//put the old model back, so a failed save doesn't leave no model at all
+				if(oldDir != null){
+					try {
+						Files.move(oldDir, modelDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+					} catch (IOException restoreFailure) {
+						e.addSuppressed(restoreFailure);
+					}
 				}
-				else{											//if it's a session bean, create SessionBeanOperation and add it
-					((SessionBean)bean).getOwnedOperations().add(createSessionBeanOperation(method, asyncBean));
+				throw e;
+			}
+			if(oldDir != null){
+				deleteDirectory(oldDir);
+			}
+			metrics.count(GenerationMetrics.Counter.MODELS_REPLACED, 1);
+			monitor.worked(1);
+		} finally {
+			//only left over if saving failed or got canceled
+			deleteDirectory(tempDir);
+		}
+	}
+	
+	/**
+	 * Puts the root objects of the resource into an order that doesn't depend on the order beans were discovered,
+	 * extracted or updated in, so the same model always gets saved the same way: the roles and then the data types sorted
+	 * by name, followed by the beans, each preceded by the shared signatures it is the first to refer to. Beans are ordered by the path of
+	 * their compilation unit like in a full run, so an incrementally updated model is saved like a newly generated one.
+	 * Beans of compiled classes keep the order they were scanned in.
+	 */
+	private void sortModel(){
+		List<BeanExtraction> sortedExtractions = new ArrayList<>(extractions.values());
+		Collections.sort(sortedExtractions, new Comparator<BeanExtraction>() {
+			@Override
+			public int compare(BeanExtraction extraction1, BeanExtraction extraction2) {
+				return extraction1.getUnit().getPath().toString().compareTo(extraction2.getUnit().getPath().toString());
+			}
+		});
+		final Map<EnterpriseBean, Integer> beanRanks = new HashMap<>();
+		for(BeanExtraction extraction : sortedExtractions){
+			for(EnterpriseBean bean : extraction.getBeans()){
+				beanRanks.put(bean, beanRanks.size());
+			}
+		}
+		
+		List<Role> roles = new ArrayList<>();
+		List<DataType> dataTypes = new ArrayList<>();
+		List<EnterpriseBean> beans = new ArrayList<>();
+		for(EObject object : resource.getContents()){
+			if(object instanceof Role){
+				roles.add((Role)object);
+			}
+			else if(object instanceof DataType){
+				dataTypes.add((DataType)object);
+			}
+			else if(object instanceof EnterpriseBean){
+				beans.add((EnterpriseBean)object);
+			}
+		}
+		Collections.sort(roles, new Comparator<Role>() {
+			@Override
+			public int compare(Role role1, Role role2) {
+				return String.valueOf(role1.getName()).compareTo(String.valueOf(role2.getName()));
+			}
+		});
+		Collections.sort(dataTypes, new Comparator<DataType>() {
+			@Override
+			public int compare(DataType dataType1, DataType dataType2) {
+				return String.valueOf(dataType1.getName()).compareTo(String.valueOf(dataType2.getName()));
+			}
+		});
+		//stable, beans without extraction keep their relative order
+		Collections.sort(beans, new Comparator<EnterpriseBean>() {
+			@Override
+			public int compare(EnterpriseBean bean1, EnterpriseBean bean2) {
+				Integer rank1 = beanRanks.get(bean1);
+				Integer rank2 = beanRanks.get(bean2);
+				return Integer.compare(rank1 == null ? Integer.MAX_VALUE : rank1, rank2 == null ? Integer.MAX_VALUE : rank2);
+			}
+		});
+		
+		Set<EObject> sorted = new LinkedHashSet<>(resource.getContents().size());
+		sorted.addAll(roles);
+		sorted.addAll(dataTypes);
+		//shared signatures precede the first bean referring to them
+		for(EnterpriseBean bean : beans){
+			for(Iterator<EObject> contents = bean.eAllContents(); contents.hasNext();){
+				EObject content = contents.next();
+				if(content instanceof Operation){
+					OperationSignature signature = ((Operation)content).getSignature();
+					if(signature != null && signature.eResource() == resource){
+						sorted.add(signature);
+					}
 				}
 			}
-			
-			//adding created bean to resource object, which gets persisted after all required objects for the model are created
-			resource.getContents().add(bean);
-			
-		} //end for-loop over all beans
+			sorted.add(bean);
+		}
+		//anything else goes last, in its current order
+		sorted.addAll(resource.getContents());
 		
-		//persisting the created content
+		//moving objects one by one is quadratic for large models, re-adding them isn't
+		resource.getContents().clear();
+		((InternalEList<EObject>)resource.getContents()).addAllUnique(sorted);
+	}
+	
+	/**
+	 * Checks whether the existing model already has the content just written, in which case it doesn't need to be replaced.
+	 * @param model model file or directory of a split model
+	 * @param hash content hash of the model just written
+	 * @param size size of the model just written, in bytes
+	 * @return true if the model exists and has the same content hash
+	 * @throws IOException if the existing model can't be read
+	 */
+	private static boolean hasContent(Path model, byte[] hash, long size) throws IOException{
+		//a different size is a different content, no need to read it
+		if(!Files.exists(model) || getSize(model) != size){
+			return false;
+		}
+		return Arrays.equals(hash(model), hash);
+	}
+	
+	/**
+	 * @param model model file or directory of a split model
+	 * @return size of the file, or of all files in the directory, in bytes
+	 * @throws IOException
+	 */
+	private static long getSize(Path model) throws IOException{
+		if(!Files.isDirectory(model)){
+			return Files.size(model);
+		}
+		long size = 0;
+		File[] files = model.toFile().listFiles();
+		if(files != null){
+			for(File file : files){
+				size += file.length();
+			}
+		}
+		return size;
+	}
+	
+	/**
+	 * Computes the content hash of a model. The hash of a split model covers the names and contents of all its files.
+	 * @param model model file or directory of a split model
+	 * @return SHA-256 hash
+	 * @throws IOException if the model can't be read
+	 */
+	private static byte[] hash(Path model) throws IOException{
+		MessageDigest digest = newDigest();
+		if(Files.isDirectory(model)){
+			String[] names = model.toFile().list();
+			Arrays.sort(names);
+			for(String name : names){
+				digest.update(name.getBytes(StandardCharsets.UTF_8));
+				//separates the name from the content
+				digest.update((byte)0);
+				update(digest, model.resolve(name));
+			}
+		}
+		else{
+			update(digest, model);
+		}
+		return digest.digest();
+	}
+	
+	/**
+	 * @param digest digest to feed
+	 * @param file file to feed the content of into the digest
+	 * @throws IOException
+	 */
+	private static void update(MessageDigest digest, Path file) throws IOException{
+		byte[] buffer = new byte[64 * 1024];
+		try(InputStream in = Files.newInputStream(file)){
+			for(int read = in.read(buffer); read >= 0; read = in.read(buffer)){
+				digest.update(buffer, 0, read);
+			}
+		}
+	}
+	
+	/**
+	 * @return digest computing the content hash of a model
+	 */
+	private static MessageDigest newDigest(){
 		try {
-			resource.save(Collections.EMPTY_MAP);
-		} catch (IOException e) {
-			e.printStackTrace();
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			//every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Deletes a directory of a split model along with its files, if it exists.
+	 * @param directory model directory
+	 * @throws IOException
+	 */
+	private static void deleteDirectory(Path directory) throws IOException{
+		File[] files = directory.toFile().listFiles();
+		if(files == null){
+			return;
+		}
+		for(File file : files){
+			Files.deleteIfExists(file.toPath());
+		}
+		Files.deleteIfExists(directory);
+	}
+	
+	/**
+	 * Creates a temporary file next to the model file, creating the output directory if necessary.
+	 * @param modelFile model file
+	 * @return path of the temporary file
+	 * @throws IOException
+	 */
+	private Path createTempFile(File modelFile) throws IOException{
+		File outputDir = modelFile.getParentFile();
+		if(!outputDir.isDirectory() && !outputDir.mkdirs()){
+			throw new IOException("Could not create output directory " + outputDir);
+		}
+		return Files.createTempFile(outputDir.toPath(), modelFile.getName(), ".tmp");
+	}
+	
+	/**
+	 * Replaces the model file by the completely written temporary file in one step.
+	 * @param tempFile temporary file
+	 * @param modelFile model file
+	 * @throws IOException
+	 */
+	private void replaceFile(Path tempFile, File modelFile) throws IOException{
+		try {
+			Files.move(tempFile, modelFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tempFile, modelFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
 		}
 	}
 	
 	/** Creates an operation object for a given method of a session bean.
 	 * @param method
 	 * @param asyncBean true if class level Asynchronous annotation applied
+	 * @param extraction extraction of the bean the method belongs to
 	 * @return session bean operation object
 	 */
-	private SessionBeanOperation createSessionBeanOperation(IMethod method, boolean asyncBean){
+	private SessionBeanOperation createSessionBeanOperation(BeanFacts.MethodFacts method, boolean asyncBean, BeanExtraction extraction){
 		boolean asyncMethod = false;
+		AnnotationSnapshot methodAnnotations = method.getAnnotations();
 		
 		//determine if its an asynchronous method
-		if( asyncBean || method.getAnnotation("Asynchronous").exists() || method.getAnnotation("javax.ejb.Asynchronous").exists()){
+		if( asyncBean || methodAnnotations.has(SecurityAnnotation.ASYNCHRONOUS)){
 			asyncMethod = true;
 		}
 		
@@ -169,8 +1215,8 @@ public class ModelGenerator {
 		SessionBeanOperation op = asyncMethod ? factory.createAsynchronousOperation() : factory.createSynchronousOperation();
 		
 		//setting signature and security specs
-		op.setSignature(createOperationSignature(method));
-		op.setSecuritySpecs(createEnterpriseBeanOperationSecurity(method));
+		op.setSignature(createOperationSignature(method, extraction));
+		op.setSecuritySpecs(createEnterpriseBeanOperationSecurity(methodAnnotations, extraction));
 		
 		return op;
 	}
@@ -178,281 +1224,250 @@ public class ModelGenerator {
 	/** 
 	 * Creates an operation object for a given method of a message driven bean.
 	 * @param method
+	 * @param extraction extraction of the bean the method belongs to
 	 * @return message driven bean operation object
 	 */
-	private MessageDrivenBeanOperation createMessageDrivenBeanOperation(IMethod method){
+	private MessageDrivenBeanOperation createMessageDrivenBeanOperation(BeanFacts.MethodFacts method, BeanExtraction extraction){
 		MessageDrivenBeanOperation op = factory.createMessageDrivenBeanOperation();
 		
 		//setting signature and security specs
-		op.setSignature(createOperationSignature(method));
-		op.setSecuritySpecs(createEnterpriseBeanOperationSecurity(method));
+		op.setSignature(createOperationSignature(method, extraction));
+		op.setSecuritySpecs(createEnterpriseBeanOperationSecurity(method.getAnnotations(), extraction));
 		return op;
 	}
 	
 	/**
 	 * Creates the method-level security spec-object for a given EJB method.
-	 * @param method
+	 * @param methodAnnotations annotations of the method
+	 * @param extraction extraction of the bean the method belongs to
 	 * @return bean operation security spec-object
 	 */
-	private EnterpriseBeanOperationSecurity createEnterpriseBeanOperationSecurity(IMethod method){
+	private EnterpriseBeanOperationSecurity createEnterpriseBeanOperationSecurity(AnnotationSnapshot methodAnnotations, BeanExtraction extraction){
 		EnterpriseBeanOperationSecurity secOp = factory.createEnterpriseBeanOperationSecurity();
 		
 		//check method for @PermitAll and @DenyAll
-		if(method.getAnnotation("PermitAll").exists() || method.getAnnotation("javax.annotation.security.PermitAll").exists()){
+		if(methodAnnotations.has(SecurityAnnotation.PERMIT_ALL)){
 			secOp.setPermitAll(true);
 		}
-		if(method.getAnnotation("DenyAll").exists() || method.getAnnotation("javax.annotation.security.DenyAll").exists()){
+		if(methodAnnotations.has(SecurityAnnotation.DENY_ALL)){
 			secOp.setDenyAll(true);
 		}
 		
 		//check method for @RolesAllowed
-		if(method.getAnnotation("RolesAllowed").exists() || method.getAnnotation("javax.annotation.security.RolesAllowed").exists()){
-			Object[] annotationValues;
+		if(methodAnnotations.has(SecurityAnnotation.ROLES_ALLOWED)){
 			//get the allowed roles from the annotation values
-			if(method.getAnnotation("RolesAllowed").exists()){
-				annotationValues = getAnnotationValues(method.getAnnotation("RolesAllowed"));
-			}
-			else {
-				annotationValues = getAnnotationValues(method.getAnnotation("javax.annotation.security.RolesAllowed"));
-			}
+			String[] annotationValues = methodAnnotations.getValues(SecurityAnnotation.ROLES_ALLOWED);
 			
-			if(annotationValues != null){
-				//add Role objects
-				for(Object role : annotationValues){
-					Role allowedRole = factory.createRole();
-					allowedRole.setName((String)role);
-					//check if role already exists
-					if(createdRoles.isEmpty()){
-						//if no role is created yet, add this one
-						secOp.getRolesAllowed().add(allowedRole);
-						createdRoles.add(allowedRole);
-						resource.getContents().add(allowedRole);
-					}
-					else{
-						//check created roles for this particular role
-						//use already existing role if present, create new if not
-						boolean roleFound = false;
-						for(Role existingRole : createdRoles){
-							if(EcoreUtil.equals(existingRole, allowedRole)){
-								secOp.getRolesAllowed().add(existingRole);
-								roleFound = true;
-							}
-						}
-						if(!roleFound){
-							secOp.getRolesAllowed().add(allowedRole);
-							createdRoles.add(allowedRole);
-							resource.getContents().add(allowedRole);
-						}
-					}
-				}
-			}
+			//add Role objects
+			internRoles(annotationValues, secOp.getRolesAllowed(), extraction);
 		}
 		
 		return secOp;
 	}
 	
-	/** Creates the operation signature for a given method.
+	/**
+	 * Adds the roles with the given names to a role list, reusing already created roles.
+	 * @param names role names, may be null
+	 * @param roles list to add the roles to
+	 * @param extraction extraction of the bean referring to the roles
+	 */
+	private void internRoles(String[] names, List<Role> roles, BeanExtraction extraction){
+		if(names == null){
+			return;
+		}
+		for(String name : names){
+			Role role = internRole(name, extraction);
+			//the same role may be listed twice in one annotation
+			if(!roles.contains(role)){
+				roles.add(role);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the role with the given name, creating it if it doesn't exist yet.
+	 * The role gets added to the resource along with the referring bean.
+	 * @param name role name
+	 * @param extraction extraction of the bean referring to the role
+	 * @return role object
+	 */
+	private Role internRole(String name, BeanExtraction extraction){
+		long start = metrics.start();
+		Role role = roleRegistry.intern(name);
+		metrics.stop(GenerationMetrics.Phase.ROLE_INTERNING, start);
+		metrics.count(GenerationMetrics.Counter.ROLES_INTERNED, 1);
+		extraction.addRootObject(role);
+		return role;
+	}
+	
+	/** Returns the operation signature for a given method, creating it if no other method has the same signature yet.
+	 * The signature and its data types get added to the resource along with the bean.
 	 * @param method
+	 * @param extraction extraction of the bean the method belongs to
 	 * @return operation signature of the given method
 	 */
-	private OperationSignature createOperationSignature(IMethod method){
-		OperationSignature sig = factory.createOperationSignature();
-		sig.setName(method.getElementName());
-		resource.getContents().add(sig);
+	private OperationSignature createOperationSignature(BeanFacts.MethodFacts method, BeanExtraction extraction){
+		OperationSignature sig = signatureRegistry.intern(method);
+		metrics.count(GenerationMetrics.Counter.SIGNATURES_INTERNED, 1);
+		for(OperationParameter parameter : sig.getParameters()){
+			extraction.addRootObject(parameter.getApplicationDataType());
+		}
+		if(sig.getReturnApplicationType() != null){
+			extraction.addRootObject(sig.getReturnApplicationType());
+		}
+		extraction.addRootObject(sig);
 		return sig;
 	}
 	
 	/**
 	 * Creates the bean-level security spec-object for a given Java Bean class file.
-	 * @param unit Java Bean class file
+	 * @param classAnnotations annotations of the Java Bean class
+	 * @param extraction extraction of the bean
 	 * @return security spec-object containing respective information
 	 */
-	private EnterpriseBeanSecurity createEnterpriseBeanSecuritySpecs(ICompilationUnit unit){
+	private EnterpriseBeanSecurity createEnterpriseBeanSecuritySpecs(AnnotationSnapshot classAnnotations, BeanExtraction extraction){
 		EnterpriseBeanSecurity beanSecuritySpecs = factory.createEnterpriseBeanSecurity();
 		
-		try {
-			IType beanType = unit.getTypes()[0];
+		//check class for @PermitAll and @DenyAll
+		if(classAnnotations.has(SecurityAnnotation.PERMIT_ALL)){
+			beanSecuritySpecs.setPermitAll(true);
+		}
+		if(classAnnotations.has(SecurityAnnotation.DENY_ALL)){
+			beanSecuritySpecs.setDenyAll(true);
+		}
+		
+		//check class for @DeclareRoles
+		if(classAnnotations.has(SecurityAnnotation.DECLARE_ROLES)){
+			//get the declared roles from the annotation values
+			String[] annotationValues = classAnnotations.getValues(SecurityAnnotation.DECLARE_ROLES);
 			
-			//check class for @PermitAll and @DenyAll
-			if(beanType.getAnnotation("PermitAll").exists() || beanType.getAnnotation("javax.annotation.security.PermitAll").exists()){
-				beanSecuritySpecs.setPermitAll(true);
-			}
-			if(beanType.getAnnotation("DenyAll").exists() || beanType.getAnnotation("javax.annotation.security.DenyAll").exists()){
-				beanSecuritySpecs.setDenyAll(true);
-			}
+			//add Role objects
+			internRoles(annotationValues, beanSecuritySpecs.getRolesDeclared(), extraction);
+		}
+		
+		//check class for @RolesAllowed
+		if(classAnnotations.has(SecurityAnnotation.ROLES_ALLOWED)){
+			//get the allowed roles from the annotation values
+			String[] annotationValues = classAnnotations.getValues(SecurityAnnotation.ROLES_ALLOWED);
 			
-			//check class for @DeclareRoles
-			if(beanType.getAnnotation("DeclareRoles").exists() || beanType.getAnnotation("javax.annotation.security.DeclareRoles").exists()){
-				Object[] annotationValues;
-				//get the declared roles from the annotation values
-				if(beanType.getAnnotation("DeclareRoles").exists()){
-					annotationValues = getAnnotationValues(beanType.getAnnotation("DeclareRoles"));
-				}
-				else {
-					annotationValues = getAnnotationValues(beanType.getAnnotation("javax.annotation.security.DeclareRoles"));
-				}
-				
-				if(annotationValues != null){
-					//add Role objects
-					for(Object role : annotationValues){
-						Role declaredRole = factory.createRole();
-						declaredRole.setName((String)role);
-						//check if role already exists
-						if(createdRoles.isEmpty()){
-							//if no role is created yet, add this one
-							beanSecuritySpecs.getRolesDeclared().add(declaredRole);
-							createdRoles.add(declaredRole);
-							resource.getContents().add(declaredRole);
-						}
-						else{
-							//check created roles for this particular role
-							//use already existing role if present, create new if not
-							boolean roleFound = false;
-							for(Role existingRole : createdRoles){
-								if(EcoreUtil.equals(existingRole, declaredRole)){
-									beanSecuritySpecs.getRolesDeclared().add(existingRole);
-									roleFound = true;
-								}
-							}
-							if(!roleFound){
-								beanSecuritySpecs.getRolesDeclared().add(declaredRole);
-								createdRoles.add(declaredRole);
-								resource.getContents().add(declaredRole);
-							}
-						}
-					}
-				}
-			}
+			//add Role objects
+			internRoles(annotationValues, beanSecuritySpecs.getRolesAllowed(), extraction);
+		}
+		
+		//check class for @RunAs
+		if(classAnnotations.has(SecurityAnnotation.RUN_AS)){
+			//get the declared roles from the annotation values
+			String[] annotationValues = classAnnotations.getValues(SecurityAnnotation.RUN_AS);
 			
-			//check class for @RolesAllowed
-			if(beanType.getAnnotation("RolesAllowed").exists() || beanType.getAnnotation("javax.annotation.security.RolesAllowed").exists()){
-				Object[] annotationValues;
-				//get the allowed roles from the annotation values
-				if(beanType.getAnnotation("RolesAllowed").exists()){
-					annotationValues = getAnnotationValues(beanType.getAnnotation("RolesAllowed"));
-				}
-				else {
-					annotationValues = getAnnotationValues(beanType.getAnnotation("javax.annotation.security.RolesAllowed"));
-				}
-				
-				if(annotationValues != null){
-					//add Role objects
-					for(Object role : annotationValues){
-						Role allowedRole = factory.createRole();
-						allowedRole.setName((String)role);
-						//check if role already exists
-						if(createdRoles.isEmpty()){
-							//if no role is created yet, add this one
-							beanSecuritySpecs.getRolesAllowed().add(allowedRole);
-							createdRoles.add(allowedRole);
-							resource.getContents().add(allowedRole);
-						}
-						else{
-							//check created roles for this particular role
-							//use already existing role if present, create new if not
-							boolean roleFound = false;
-							for(Role existingRole : createdRoles){
-								if(EcoreUtil.equals(existingRole, allowedRole)){
-									beanSecuritySpecs.getRolesAllowed().add(existingRole);
-									roleFound = true;
-								}
-							}
-							if(!roleFound){
-								beanSecuritySpecs.getRolesAllowed().add(allowedRole);
-								createdRoles.add(allowedRole);
-								resource.getContents().add(allowedRole);
-							}
-						}
-					}
-				}
+			if(annotationValues != null && annotationValues.length > 0){
+				//add Role object
+				beanSecuritySpecs.setRunAs(internRole(annotationValues[0], extraction));
 			}
-			
-			//check class for @RunAs
-			if(beanType.getAnnotation("RunAs").exists() || beanType.getAnnotation("javax.annotation.security.RunAs").exists()){
-				Object[] annotationValues;
-				//get the declared roles from the annotation values
-				if(beanType.getAnnotation("RunAs").exists()){
-					annotationValues = getAnnotationValues(beanType.getAnnotation("RunAs"));
-				}
-				else {
-					annotationValues = getAnnotationValues(beanType.getAnnotation("javax.annotation.security.RunAs"));
-				}
-				
-				if(annotationValues != null){
-					//add Role object
-					Role runAsRole = factory.createRole();
-					runAsRole.setName((String)annotationValues[0]);
-					
-					if(createdRoles.isEmpty()){
-						//if no role is created yet, add this one
-						beanSecuritySpecs.setRunAs(runAsRole);
-						createdRoles.add(runAsRole);
-						resource.getContents().add(runAsRole);
-					}
-					else{
-						//check created roles for this particular role
-						//use already existing role if present, create new if not
-						boolean roleFound = false;
-						for(Role existingRole : createdRoles){
-							if(EcoreUtil.equals(existingRole, runAsRole)){
-								beanSecuritySpecs.setRunAs(existingRole);
-								roleFound = true;
-							}
-						}
-						if(!roleFound){
-							beanSecuritySpecs.setRunAs(runAsRole);
-							createdRoles.add(runAsRole);
-							resource.getContents().add(runAsRole);
-						}
-					}
-				}
-			}
-			
-		} catch (JavaModelException e) {
-			e.printStackTrace();
 		}
 		
 		return beanSecuritySpecs;
 	}
 	
 	/**
-	 * Checks if all methods are asynchronous for a given Bean class file.
-	 * @param unit bean class file
-	 * @return true if Asynchronous-annotation is applied to bean, false otherwise
+	 * Identifies all Java Beans within the respective Java project, using the configured discovery mode.
+	 * Package visible to measure it in the {@link GenerationBenchmark}.
+	 * @param monitor progress monitor
+	 * @return List of beans
 	 */
-	private boolean isAsyncBean(ICompilationUnit unit){
-		try {
-			IType beanType = unit.getTypes()[0];
-			
-			//check class for @Asnychronous
-			if(beanType.getAnnotation("Asynchronous").exists() || beanType.getAnnotation("javax.ejb.Asynchronous").exists()){
-				return true;
+	List<ICompilationUnit> getJavaBeans(IJavaProject project, IProgressMonitor monitor) {
+		if(discoveryMode == DiscoveryMode.INDEX){
+			try {
+				return searchJavaBeans(project, monitor);
+			} catch (CoreException e) {
+				//fall back to scanning the whole project if the index can't be queried
+				e.printStackTrace();
 			}
-		} catch (JavaModelException e) {
-			e.printStackTrace();
 		}
-		return false;
+		return scanJavaBeans(project, monitor);
 	}
-
+	
 	/**
-	 * Identifies all Java Beans within the respective Java project.
+	 * Identifies all Java Beans within the respective Java project by querying the JDT search index for references to the bean annotations.
+	 * Only the compilation units containing such a reference get opened to confirm they declare a Java Bean.
+	 * @param monitor progress monitor
+	 * @return List of beans
+	 * @throws CoreException if the search failed
+	 */
+	private List<ICompilationUnit> searchJavaBeans(IJavaProject project, IProgressMonitor monitor) throws CoreException {
+		SubMonitor subMonitor = SubMonitor.convert(monitor, 100);
+		
+		//one pattern matching references to any of the bean annotations, by simple name to also match unresolved annotation types
+		SearchPattern pattern = null;
+		for(SecurityAnnotation annotation : BEAN_ANNOTATIONS){
+			SearchPattern annotationPattern = SearchPattern.createPattern(annotation.getSimpleName(), IJavaSearchConstants.ANNOTATION_TYPE,
+					IJavaSearchConstants.ANNOTATION_TYPE_REFERENCE, SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE);
+			pattern = pattern == null ? annotationPattern : SearchPattern.createOrPattern(pattern, annotationPattern);
+		}
+		IJavaSearchScope scope = SearchEngine.createJavaSearchScope(new IJavaElement[]{ project }, IJavaSearchScope.SOURCES);
+		
+		//collect the compilation units containing a match
+		final Set<ICompilationUnit> candidates = new LinkedHashSet<>();
+		SearchRequestor requestor = new SearchRequestor() {
+			@Override
+			public void acceptSearchMatch(SearchMatch match) {
+				if(match.getElement() instanceof IJavaElement){
+					IJavaElement unit = ((IJavaElement)match.getElement()).getAncestor(IJavaElement.COMPILATION_UNIT);
+					if(unit != null){
+						candidates.add((ICompilationUnit)unit);
+					}
+				}
+			}
+		};
+		new SearchEngine().search(pattern, new SearchParticipant[]{ SearchEngine.getDefaultSearchParticipant() },
+				scope, requestor, subMonitor.split(70));
+		
+		//the annotation may be placed on another type or member, so confirm the candidates
+		List<ICompilationUnit> beans = new ArrayList<>();
+		readFacts(new ArrayList<>(candidates), subMonitor.split(20));
+		SubMonitor candidateMonitor = subMonitor.split(10).setWorkRemaining(candidates.size());
+		for(ICompilationUnit unit : candidates){
+			candidateMonitor.split(1);
+			if(isJavaBean(unit)){
+				beans.add(unit);
+			}
+		}
+		
+		//the order of the matches depends on the index, so sort by path to keep the order of the generated model stable
+		Collections.sort(beans, new Comparator<ICompilationUnit>() {
+			@Override
+			public int compare(ICompilationUnit unit1, ICompilationUnit unit2) {
+				return unit1.getPath().toString().compareTo(unit2.getPath().toString());
+			}
+		});
+		return beans;
+	}
+	
+	/**
+	 * Identifies all Java Beans within the respective Java project by checking every compilation unit.
+	 * @param monitor progress monitor, one subtask per package
 	 * @return List of beans
-	 * @throws JavaModelException
 	 */
-	private List<ICompilationUnit> getJavaBeans(IJavaProject project) {
+	private List<ICompilationUnit> scanJavaBeans(IJavaProject project, IProgressMonitor monitor) {
 		List<ICompilationUnit> beans = new ArrayList<>();
 		
 		try {
 			//get all packages in the project
 			IPackageFragment[] packages = project.getPackageFragments();
+			SubMonitor subMonitor = SubMonitor.convert(monitor, packages.length);
 			
 			//find all classes in these packages that represent Java Beans
 			for(IPackageFragment p : packages){
+				SubMonitor packageMonitor = subMonitor.split(1);
 				//check if it contains source files
 				if(p.getKind() == IPackageFragmentRoot.K_SOURCE){
+					subMonitor.subTask(p.getElementName());
+					ICompilationUnit[] units = p.getCompilationUnits();
+					packageMonitor.setWorkRemaining(units.length * 2);
+					readFacts(Arrays.asList(units), packageMonitor.split(units.length));
 					//go through all class-files
-					for(ICompilationUnit unit : p.getCompilationUnits()){
-						if(checkJavaBeanType(unit) != JavaBeanType.NONE){
+					for(ICompilationUnit unit : units){
+						packageMonitor.split(1);
+						if(isJavaBean(unit)){
 							//if java bean found, add to list
 							beans.add(unit);
 						}
@@ -467,73 +1482,101 @@ public class ModelGenerator {
 	}
 	
 	/**
-	 * Checks if the given class is a Java Bean
+	 * Checks if the given class is a Java Bean or declares one as secondary or nested type
 	 * @param unit
 	 * @return true if class is a Java Bean, false otherwise
-	 * @throws JavaModelException 
 	 */
-	private JavaBeanType checkJavaBeanType(ICompilationUnit unit){
-
-		try {
-			//get the first defined class in compilation unit
-			// --> ignoring possible additional classes defined in the same .java
-			IType classType = unit.getTypes()[0];
-			
-			//check if class is a stateless session bean
-			if(classType.getAnnotation("Stateless").exists() || classType.getAnnotation("javax.ejb.Stateless").exists()){
-				return JavaBeanType.STATELESS;
-			}
-			//check if class is a stateful session bean
-			else if(classType.getAnnotation("Stateful").exists() || classType.getAnnotation("javax.ejb.Stateful").exists()){
-				return JavaBeanType.STATEFUL;
+	private boolean isJavaBean(ICompilationUnit unit){
+		return !getFacts(unit).getBeans().isEmpty();
+	}
+	
+	/**
+	 * Reads the facts of the given compilation units in one go if an AST extraction engine is configured.
+	 * Units with facts already known or cached are skipped. With the Java model engine the facts are read lazily unit by unit instead.
+	 * @param units compilation units of the project
+	 * @param monitor progress monitor, may be canceled
+	 */
+	private void readFacts(List<ICompilationUnit> units, IProgressMonitor monitor){
+		if(extractionEngine == ExtractionEngine.JAVA_MODEL || units.isEmpty()){
+			return;
+		}
+		List<ICompilationUnit> unknownUnits = new ArrayList<>();
+		for(ICompilationUnit unit : units){
+			if(unitFacts.containsKey(unit)){
+				continue;
 			}
-			//check if class is a singleton bean
-			else if(classType.getAnnotation("Singleton").exists() || classType.getAnnotation("javax.ejb.Singleton").exists()){
-				return JavaBeanType.SINGLETON;
+			BeanFacts facts = cache != null ? cache.getCachedFacts(unit) : null;
+			if(facts != null){
+				unitFacts.put(unit, facts);
+				metrics.count(GenerationMetrics.Counter.UNITS_SCANNED, 1);
+				metrics.count(GenerationMetrics.Counter.CACHE_HITS, 1);
 			}
-			//check if class is a message driven bean
-			else if(classType.getAnnotation("MessageDriven").exists() || classType.getAnnotation("javax.ejb.MessageDriven").exists()){
-				return JavaBeanType.MESSAGEDRIVEN;
+			else{
+				unknownUnits.add(unit);
 			}
-		} catch (JavaModelException e) {
-			e.printStackTrace();
+		}
+		if(unknownUnits.isEmpty()){
+			return;
 		}
 		
-		//if none of these annotations are found, the class is no Java Bean
-		return JavaBeanType.NONE;
+		long start = metrics.start();
+		AstFactsReader reader = new AstFactsReader(extractionEngine == ExtractionEngine.AST_BINDINGS, constants);
+		Map<ICompilationUnit, BeanFacts> parsedFacts = reader.read(unknownUnits.get(0).getJavaProject(), unknownUnits, monitor);
+		for(Map.Entry<ICompilationUnit, BeanFacts> entry : parsedFacts.entrySet()){
+			unitFacts.put(entry.getKey(), entry.getValue());
+			metrics.count(GenerationMetrics.Counter.ANNOTATION_PROBES, countProbes(entry.getValue()));
+			//facts referring to constants of other units change along with those units
+			if(cache != null && !constants.hasDependencies(entry.getKey())){
+				cache.putFacts(entry.getKey(), entry.getValue());
+			}
+		}
+		metrics.count(GenerationMetrics.Counter.UNITS_SCANNED, unknownUnits.size());
+		metrics.stop(GenerationMetrics.Phase.CLASSIFICATION, start);
 	}
 	
+	/**
+	 * Returns the facts of the given compilation unit, reading them from the cache or the Java model only on first access.
+	 * @param unit
+	 * @return facts of the unit
+	 */
+	private BeanFacts getFacts(ICompilationUnit unit){
+		BeanFacts facts = unitFacts.get(unit);
+		if(facts == null){
+			long start = metrics.start();
+			metrics.count(GenerationMetrics.Counter.UNITS_SCANNED, 1);
+			facts = cache != null ? cache.getCachedFacts(unit) : null;
+			if(facts != null){
+				metrics.count(GenerationMetrics.Counter.CACHE_HITS, 1);
+			}
+			else{
+				try {
+					facts = BeanFacts.of(unit, constants);
+					metrics.count(GenerationMetrics.Counter.ANNOTATION_PROBES, countProbes(facts));
+					if(cache != null && !constants.hasDependencies(unit)){
+						cache.putFacts(unit, facts);
+					}
+				} catch (JavaModelException e) {
+					e.printStackTrace();
+					//treat units that can't be read as no Java Bean
+					facts = new BeanFacts(unit.getElementName(), AnnotationSnapshot.NONE, Collections.<BeanFacts.MethodFacts>emptyList());
+				}
+			}
+			unitFacts.put(unit, facts);
+			metrics.stop(GenerationMetrics.Phase.CLASSIFICATION, start);
+		}
+		return facts;
+	}
 	
 	/**
-	 * Returns an array of the specified annotation values.
-	 * Only one element if the annotation has just one value, multiple elements otherwise.
-	 * @param annotation
-	 * @return array of annotation values
+	 * @param facts freshly read facts
+	 * @return number of elements whose annotations got read: the types and, for beans, their methods
 	 */
-	private Object[] getAnnotationValues(IAnnotation annotation){
-		Object[] result;
-		
-		try {
-	    	IMemberValuePair[] valuePairs = annotation.getMemberValuePairs();
-	        for (IMemberValuePair valuePair : valuePairs) {
-	            if ("value".equals(valuePair.getMemberName())) {
-	            	if(valuePair.getValue() instanceof Object[]){	//multiple annotation values via Array declaration
-		        		result = (Object[])valuePair.getValue();
-		        		return result;
-		        	}
-	            	else{											//only one annotation value via single String declaration
-	            		result = new String[1];
-	            		result[0] = valuePair.getValue();
-	            		return result;
-	            	}
-	            }
-	        }
-	    } catch (JavaModelException ex) {
-	    	//this can get triggered if the annotation doesnt exist, so just ignore it then and return null
-	    	return null;
-	    }
-		
-		return null;
+	private static int countProbes(BeanFacts facts){
+		int probes = 1 + facts.getMethods().size();
+		for(BeanFacts secondaryBean : facts.getSecondaryBeans()){
+			probes += 1 + secondaryBean.getMethods().size();
+		}
+		return probes;
 	}
 
 }
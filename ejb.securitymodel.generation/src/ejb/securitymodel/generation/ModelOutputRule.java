@@ -0,0 +1,38 @@
+package ejb.securitymodel.generation;
+
+import java.io.File;
+
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+
+/**
+ * Scheduling rule of the directory a project's model is written to.
+ * The generation job, the incremental updater and the builder all use it, so jobs writing the same model run one after another.
+ *
+ */
+public class ModelOutputRule implements ISchedulingRule {
+	
+	private final File directory;
+	
+	/**
+	 * ModelOutputRule constructor.
+	 * @param directory output directory of a project's model
+	 */
+	public ModelOutputRule(File directory){
+		this.directory = directory.getAbsoluteFile();
+	}
+	
+	@Override
+	public boolean contains(ISchedulingRule rule) {
+		return isConflicting(rule);
+	}
+	
+	@Override
+	public boolean isConflicting(ISchedulingRule rule) {
+		return rule == this || (rule instanceof ModelOutputRule && directory.equals(((ModelOutputRule)rule).directory));
+	}
+	
+	@Override
+	public String toString() {
+		return "ModelOutputRule[" + directory + "]";
+	}
+}
@@ -0,0 +1,230 @@
+package ejb.securitymodel.generation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMLParserPoolImpl;
+
+import de.mkonersmann.ejb31.DataType;
+import de.mkonersmann.ejb31.Ejb31Package;
+import de.mkonersmann.ejb31.EnterpriseBean;
+import de.mkonersmann.ejb31.OperationSignature;
+import de.mkonersmann.ejb31.Role;
+
+/**
+ * Enum representing the formats the security model can be persisted in.
+ *
+ */
+public enum OutputFormat {
+	/** plain XMI as written by default, with positional references like rolesAllowed="/4" */
+	XMI("SecurityModel.xmi"),
+	/** UTF-8 XMI with ID-based references and cached save/load lookups, much faster to write and read for large models */
+	XMI_TUNED("SecurityModel.xmi"),
+	/** tuned XMI compressed into a zip entry */
+	XMI_ZIP("SecurityModel.xmi.zip"),
+	/** EMF binary resource, smallest and fastest to load, but not human readable */
+	BINARY("SecurityModel.bin"),
+	/** XMI with ID-based references, written bean by bean during extraction instead of building the whole model in memory */
+	XMI_STREAM("SecurityModel.xmi"),
+	/** directory with one tuned XMI resource per bean and one for the roles, see {@link SplitModel} */
+	XMI_SPLIT("SecurityModel");
+	
+	//shared between all loads, the pool is thread-safe
+	private static final XMLParserPoolImpl PARSER_POOL = new XMLParserPoolImpl();
+	//2000-01-01, zip entries can't be dated before 1980
+	private static final long ZIP_ENTRY_TIME = 946684800000L;
+	
+	private final String fileName;
+	
+	private OutputFormat(String fileName){
+		this.fileName = fileName;
+	}
+	
+	/**
+	 * @return name of the model file in this format, the name of the model directory for a split model
+	 */
+	public String getFileName(){
+		return fileName;
+	}
+	
+	/**
+	 * Determines the format to read a model file with from its name.
+	 * All XMI variants are read alike, so any .xmi file is read as tuned XMI.
+	 * @param file model file or directory
+	 * @return format of the file
+	 */
+	public static OutputFormat forFile(File file){
+		if(SplitModel.isSplitModel(file)){
+			return XMI_SPLIT;
+		}
+		String name = file.getName();
+		if(name.endsWith(".bin")){
+			return BINARY;
+		}
+		if(name.endsWith(".zip")){
+			return XMI_ZIP;
+		}
+		return XMI_TUNED;
+	}
+	
+	/**
+	 * Loads a previously saved model, in the format given by its file name.
+	 * A split model gets loaded completely into a single resource, use {@link SplitModel} to load single beans.
+	 * @param file model file or directory
+	 * @return loaded resource, with all references resolved
+	 * @throws IOException if the file can't be read
+	 */
+	public static Resource load(File file) throws IOException{
+		OutputFormat format = forFile(file);
+		if(format == XMI_SPLIT){
+			return new SplitModel(file).loadAll();
+		}
+		ResourceSet resourceSet = new ResourceSetImpl();
+		resourceSet.getPackageRegistry().put(Ejb31Package.eNS_URI, Ejb31Package.eINSTANCE);
+		Resource resource = format.createResource(URI.createFileURI(file.getAbsolutePath()));
+		resourceSet.getResources().add(resource);
+		resource.load(format.getLoadOptions());
+		EcoreUtil.resolveAll(resource);
+		return resource;
+	}
+	
+	/**
+	 * @return true if the model is saved as a directory of resources instead of a single file
+	 */
+	public boolean isSplit(){
+		return this == XMI_SPLIT;
+	}
+	
+	/**
+	 * @return true if the model is written while being extracted, without a resource holding all of it
+	 */
+	public boolean isStreaming(){
+		return this == XMI_STREAM;
+	}
+	
+	/**
+	 * Creates an empty resource able to persist this format.
+	 * @param uri URI of the model file
+	 * @return resource
+	 */
+	public Resource createResource(URI uri){
+		if(this == BINARY){
+			return new BinaryResourceImpl(uri);
+		}
+		if(this == XMI_ZIP){
+			return new XMIResourceImpl(uri){
+				@Override
+				protected ZipEntry newContentZipEntry() {
+					//without a fixed time the same model would get written to different bytes every time
+					ZipEntry entry = super.newContentZipEntry();
+					entry.setTime(ZIP_ENTRY_TIME);
+					return entry;
+				}
+			};
+		}
+		return new XMIResourceImpl(uri);
+	}
+	
+	/**
+	 * @return options to pass to Resource.save for this format
+	 */
+	public Map<Object, Object> getSaveOptions(){
+		Map<Object, Object> options = new HashMap<>();
+		switch(this){
+		case XMI:
+			break;
+		case XMI_ZIP:
+			options.put(Resource.OPTION_ZIP, Boolean.TRUE);
+			//$FALL-THROUGH$
+		case XMI_TUNED:
+		case XMI_SPLIT:
+			options.put(XMLResource.OPTION_ENCODING, "UTF-8");
+			options.put(XMLResource.OPTION_USE_CACHED_LOOKUP_TABLE, new ArrayList<Object>());
+			options.put(XMLResource.OPTION_CONFIGURATION_CACHE, Boolean.TRUE);
+			break;
+		case BINARY:
+			options.put(BinaryResourceImpl.OPTION_VERSION, BinaryResourceImpl.BinaryIO.Version.VERSION_1_1);
+			break;
+		case XMI_STREAM:
+			break;
+		}
+		return options;
+	}
+	
+	/**
+	 * Returns the options to read a model in this format. The name lookups get filled while loading and aren't
+	 * thread-safe, so every call returns a map of its own, to be used for one load or the resources of one resource set.
+	 * @return options to pass to Resource.load when reading a model in this format
+	 */
+	public Map<Object, Object> getLoadOptions(){
+		Map<Object, Object> options = new HashMap<>();
+		switch(this){
+		case XMI:
+			break;
+		case XMI_ZIP:
+			options.put(Resource.OPTION_ZIP, Boolean.TRUE);
+			//$FALL-THROUGH$
+		case XMI_TUNED:
+		case XMI_STREAM:
+		case XMI_SPLIT:
+			options.put(XMLResource.OPTION_DEFER_IDREF_RESOLUTION, Boolean.TRUE);
+			options.put(XMLResource.OPTION_USE_PARSER_POOL, PARSER_POOL);
+			options.put(XMLResource.OPTION_USE_XML_NAME_TO_FEATURE_MAP, new HashMap<Object, Object>());
+			options.put(XMLResource.OPTION_USE_DEPRECATED_METHODS, Boolean.FALSE);
+			break;
+		case BINARY:
+			break;
+		}
+		return options;
+	}
+	
+	/**
+	 * Prepares the resource content for saving. For the tuned XMI formats the root objects get IDs,
+	 * so references are written and resolved by ID instead of by their position in the resource.
+	 * The IDs follow the order of the contents, which the generator keeps canonical, so they are the same for the same model.
+	 * @param resource resource about to be saved
+	 */
+	public void prepareSave(Resource resource){
+		if(this != XMI_TUNED && this != XMI_ZIP){
+			return;
+		}
+		XMLResource xmlResource = (XMLResource)resource;
+		int index = 0;
+		for(EObject object : resource.getContents()){
+			xmlResource.setID(object, idPrefix(object) + index++);
+		}
+	}
+	
+	/**
+	 * @param object root object
+	 * @return short, readable prefix for the IDs of this kind of object
+	 */
+	private static String idPrefix(EObject object){
+		if(object instanceof Role){
+			return "R";
+		}
+		if(object instanceof OperationSignature){
+			return "S";
+		}
+		if(object instanceof DataType){
+			return "T";
+		}
+		if(object instanceof EnterpriseBean){
+			return "B";
+		}
+		return "O";
+	}
+}
@@ -0,0 +1,417 @@
+package ejb.securitymodel.generation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+
+import de.mkonersmann.ejb31.EnterpriseBean;
+import de.mkonersmann.ejb31.EnterpriseBeanOperationSecurity;
+import de.mkonersmann.ejb31.EnterpriseBeanSecurity;
+import de.mkonersmann.ejb31.MessageDrivenBean;
+import de.mkonersmann.ejb31.Operation;
+import de.mkonersmann.ejb31.OperationSignature;
+import de.mkonersmann.ejb31.Role;
+import de.mkonersmann.ejb31.SessionBean;
+
+/**
+ * In-memory index of the effective access to every bean operation of a security model.
+ * <p>
+ * The effective access of an operation follows the EJB rules: method-level annotations override the class-level ones,
+ * and on the same level <code>@DenyAll</code> takes precedence over <code>@PermitAll</code>, which takes precedence over
+ * <code>@RolesAllowed</code>. Operations without any security annotation on either level are unchecked, i.e. callable by everyone.
+ * The <code>@RunAs</code> role of the bean is recorded as the identity its operations call other beans with.
+ * <p>
+ * Looking up the operations of a role and the access of an operation takes constant time.
+ *
+ */
+public class PermissionIndex {
+	
+	/**
+	 * Kinds of effective access to an operation.
+	 */
+	public enum Access {
+		/** nobody may call the operation */
+		DENY_ALL,
+		/** everybody may call the operation */
+		PERMIT_ALL,
+		/** only the listed roles may call the operation */
+		ROLES,
+		/** no security annotation applies, the container lets everybody call the operation */
+		UNCHECKED
+	}
+	
+	/**
+	 * Effective access to a single bean operation.
+	 */
+	public static class OperationAccess {
+		private final String bean;
+		private final String operation;
+		private final String key;
+		private final Access access;
+		private final Set<String> roles;
+		private final String runAs;
+		
+		OperationAccess(String bean, String operation, String key, Access access, Set<String> roles, String runAs){
+			this.bean = bean;
+			this.operation = operation;
+			this.key = key;
+			this.access = access;
+			this.roles = Collections.unmodifiableSet(roles);
+			this.runAs = runAs;
+		}
+		
+		/**
+		 * @return qualified name of the bean, see {@link PermissionIndex#getBeanKey(EnterpriseBean)}
+		 */
+		public String getBean(){
+			return bean;
+		}
+		
+		/**
+		 * @return name of the operation, without the parameter types
+		 */
+		public String getOperation(){
+			return operation;
+		}
+		
+		/**
+		 * @return unique key of the operation, see {@link PermissionIndex#getKey(String, OperationSignature)}
+		 */
+		public String getKey(){
+			return key;
+		}
+		
+		/**
+		 * @return kind of effective access
+		 */
+		public Access getAccess(){
+			return access;
+		}
+		
+		/**
+		 * @return roles allowed to call the operation, only filled for {@link Access#ROLES}
+		 */
+		public Set<String> getRoles(){
+			return roles;
+		}
+		
+		/**
+		 * @return role the operation calls other beans with, null if it propagates the caller's identity
+		 */
+		public String getRunAs(){
+			return runAs;
+		}
+		
+		/**
+		 * @param role role name
+		 * @return true if a caller in the given role may call the operation
+		 */
+		public boolean isAllowed(String role){
+			switch(access){
+			case DENY_ALL:
+				return false;
+			case ROLES:
+				return roles.contains(role);
+			default:
+				return true;
+			}
+		}
+	}
+	
+	//all operations by key, in model order
+	private final Map<String, OperationAccess> operations = new LinkedHashMap<>();
+	//operations explicitly granted to a role
+	private final Map<String, List<OperationAccess>> operationsByRole = new HashMap<>();
+	//operations running as a role
+	private final Map<String, List<OperationAccess>> operationsByRunAs = new HashMap<>();
+	//operations callable by everyone
+	private final List<OperationAccess> unrestrictedOperations = new ArrayList<>();
+	//roles declared or referenced anywhere in the model
+	private final Set<String> roles = new LinkedHashSet<>();
+	
+	/**
+	 * Creates an empty index, to be filled bean by bean.
+	 */
+	public PermissionIndex(){
+	}
+	
+	/**
+	 * Creates the index of a generated or loaded model.
+	 * @param resource resource containing the model
+	 * @return permission index
+	 */
+	public static PermissionIndex of(Resource resource){
+		return of(resource.getContents());
+	}
+	
+	/**
+	 * Creates the index of the beans among the given root objects.
+	 * @param contents root objects of a model
+	 * @return permission index
+	 */
+	public static PermissionIndex of(Collection<EObject> contents){
+		PermissionIndex index = new PermissionIndex();
+		for(EObject object : contents){
+			if(object instanceof Role){
+				index.roles.add(((Role)object).getName());
+			}
+			else if(object instanceof EnterpriseBean){
+				index.add((EnterpriseBean)object);
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Loads a saved security model and creates its index.
+	 * @param modelFile model file in any of the output formats
+	 * @return permission index
+	 * @throws IOException if the model can't be read
+	 */
+	public static PermissionIndex load(File modelFile) throws IOException{
+		return of(OutputFormat.load(modelFile));
+	}
+	
+	/**
+	 * Adds the operations of a bean to the index.
+	 * @param bean enterprise bean
+	 */
+	public void add(EnterpriseBean bean){
+		EnterpriseBeanSecurity beanSecurity = bean.getSecuritySpecs();
+		String runAs = null;
+		if(beanSecurity != null){
+			runAs = roleName(beanSecurity.getRunAs());
+			for(Role role : beanSecurity.getRolesDeclared()){
+				roles.add(role.getName());
+			}
+		}
+		
+		List<? extends Operation> beanOperations;
+		if(bean instanceof SessionBean){
+			beanOperations = ((SessionBean)bean).getOwnedOperations();
+		}
+		else if(bean instanceof MessageDrivenBean){
+			beanOperations = ((MessageDrivenBean)bean).getOwnedOperations();
+		}
+		else{
+			return;
+		}
+		
+		String beanKey = getBeanKey(bean);
+		for(Operation operation : beanOperations){
+			String name = operation.getSignature() != null ? operation.getSignature().getName() : null;
+			String key = getKey(beanKey, operation.getSignature());
+			//only models saved without the qualified bean names can repeat a key, for beans of the same name
+			for(int duplicate = 2; operations.containsKey(key); duplicate++){
+				key = getKey(beanKey, operation.getSignature()) + "[" + duplicate + "]";
+			}
+			
+			OperationAccess access = resolve(beanKey, name, key, operation.getSecuritySpecs(), beanSecurity, runAs);
+			operations.put(key, access);
+			roles.addAll(access.getRoles());
+			if(access.getAccess() == Access.ROLES){
+				for(String role : access.getRoles()){
+					getList(operationsByRole, role).add(access);
+				}
+			}
+			else if(access.getAccess() != Access.DENY_ALL){
+				unrestrictedOperations.add(access);
+			}
+			if(runAs != null){
+				getList(operationsByRunAs, runAs).add(access);
+			}
+		}
+	}
+	
+	/**
+	 * Resolves the effective access of an operation from the method-level and class-level security.
+	 * @param bean qualified bean name
+	 * @param operation operation name
+	 * @param key key of the operation
+	 * @param methodSecurity method-level security of the operation, may be null
+	 * @param beanSecurity class-level security of the bean, may be null
+	 * @param runAs role the bean runs as, may be null
+	 * @return effective access
+	 */
+	static OperationAccess resolve(String bean, String operation, String key, EnterpriseBeanOperationSecurity methodSecurity,
+			EnterpriseBeanSecurity beanSecurity, String runAs){
+		Set<String> allowed = new LinkedHashSet<>();
+		Access access;
+		if(methodSecurity != null && (methodSecurity.isDenyAll() || methodSecurity.isPermitAll() || !methodSecurity.getRolesAllowed().isEmpty())){
+			//method-level annotations override the class-level ones completely
+			access = resolve(methodSecurity.isDenyAll(), methodSecurity.isPermitAll(), methodSecurity.getRolesAllowed(), allowed);
+		}
+		else if(beanSecurity != null){
+			access = resolve(beanSecurity.isDenyAll(), beanSecurity.isPermitAll(), beanSecurity.getRolesAllowed(), allowed);
+		}
+		else{
+			access = Access.UNCHECKED;
+		}
+		return new OperationAccess(bean, operation, key, access, allowed, runAs);
+	}
+	
+	private static Access resolve(boolean denyAll, boolean permitAll, List<Role> rolesAllowed, Set<String> allowed){
+		if(denyAll){
+			return Access.DENY_ALL;
+		}
+		if(permitAll){
+			return Access.PERMIT_ALL;
+		}
+		if(rolesAllowed.isEmpty()){
+			return Access.UNCHECKED;
+		}
+		for(Role role : rolesAllowed){
+			allowed.add(role.getName());
+		}
+		return Access.ROLES;
+	}
+	
+	/**
+	 * Builds the key identifying an operation within the index from the qualified bean name and the operation's name and parameter types,
+	 * e.g. <code>com.acme.OrderBean.order(Item,int)</code>.
+	 * @param bean qualified bean name, see {@link #getBeanKey(EnterpriseBean)}
+	 * @param signature signature of the operation, may be null
+	 * @return key of the operation
+	 */
+	public static String getKey(String bean, OperationSignature signature){
+		return bean + "." + (signature == null ? null : SignatureRegistry.getMethodKey(signature));
+	}
+	
+	/**
+	 * Returns the name a bean's operations are keyed by.
+	 * @param bean enterprise bean
+	 * @return qualified name of the bean, its simple name for models saved without the qualified names
+	 */
+	public static String getBeanKey(EnterpriseBean bean){
+		return bean.getId() != null ? bean.getId() : bean.getName();
+	}
+	
+	/**
+	 * @param key operation key
+	 * @return effective access of the operation, null if there is no such operation
+	 */
+	public OperationAccess getOperation(String key){
+		return operations.get(key);
+	}
+	
+	/**
+	 * @return effective access of all operations, in model order
+	 */
+	public Collection<OperationAccess> getOperations(){
+		return Collections.unmodifiableCollection(operations.values());
+	}
+	
+	/**
+	 * Returns the operations a role is explicitly allowed to call.
+	 * Operations callable by everyone are not included, see {@link #getUnrestrictedOperations()}.
+	 * @param role role name
+	 * @return operations listing the role in their allowed roles
+	 */
+	public List<OperationAccess> getOperationsAllowed(String role){
+		List<OperationAccess> result = operationsByRole.get(role);
+		return result == null ? Collections.<OperationAccess>emptyList() : Collections.unmodifiableList(result);
+	}
+	
+	/**
+	 * @param role role name
+	 * @return operations of beans running as the given role
+	 */
+	public List<OperationAccess> getOperationsRunningAs(String role){
+		List<OperationAccess> result = operationsByRunAs.get(role);
+		return result == null ? Collections.<OperationAccess>emptyList() : Collections.unmodifiableList(result);
+	}
+	
+	/**
+	 * @return operations callable by everyone, either permitted to all or unchecked
+	 */
+	public List<OperationAccess> getUnrestrictedOperations(){
+		return Collections.unmodifiableList(unrestrictedOperations);
+	}
+	
+	/**
+	 * @return names of all roles of the model
+	 */
+	public Set<String> getRoles(){
+		return Collections.unmodifiableSet(roles);
+	}
+	
+	/**
+	 * Writes one tab-separated line per operation: key, access, allowed roles separated by spaces and the runAs role.
+	 * @param out target of the table
+	 * @throws IOException
+	 */
+	public void writeOperationTable(Appendable out) throws IOException{
+		out.append("operation\taccess\troles\trunAs\n");
+		for(OperationAccess access : operations.values()){
+			out.append(access.getKey()).append('\t').append(access.getAccess().name()).append('\t');
+			appendJoined(out, access.getRoles());
+			out.append('\t').append(access.getRunAs() == null ? "" : access.getRunAs()).append('\n');
+		}
+	}
+	
+	/**
+	 * Writes one tab-separated line per role: role name, the keys of the operations it is explicitly allowed to call
+	 * and of those running as the role, each separated by spaces. Operations callable by everyone are listed under <code>*</code>.
+	 * @param out target of the table
+	 * @throws IOException
+	 */
+	public void writeRoleTable(Appendable out) throws IOException{
+		out.append("role\tallowed\trunAs\n");
+		//sorted to keep the table comparable between runs
+		List<String> sortedRoles = new ArrayList<>(roles);
+		Collections.sort(sortedRoles);
+		for(String role : sortedRoles){
+			out.append(role).append('\t');
+			appendKeys(out, getOperationsAllowed(role));
+			out.append('\t');
+			appendKeys(out, getOperationsRunningAs(role));
+			out.append('\n');
+		}
+		out.append("*\t");
+		appendKeys(out, unrestrictedOperations);
+		out.append("\t\n");
+	}
+	
+	private static void appendJoined(Appendable out, Collection<String> values) throws IOException{
+		boolean first = true;
+		for(String value : values){
+			if(!first){
+				out.append(' ');
+			}
+			out.append(value);
+			first = false;
+		}
+	}
+	
+	private static void appendKeys(Appendable out, List<OperationAccess> accesses) throws IOException{
+		List<String> keys = new ArrayList<>(accesses.size());
+		for(OperationAccess access : accesses){
+			keys.add(access.getKey());
+		}
+		appendJoined(out, keys);
+	}
+	
+	private static List<OperationAccess> getList(Map<String, List<OperationAccess>> map, String key){
+		List<OperationAccess> list = map.get(key);
+		if(list == null){
+			list = new ArrayList<>();
+			map.put(key, list);
+		}
+		return list;
+	}
+	
+	private static String roleName(Role role){
+		return role == null ? null : role.getName();
+	}
+}
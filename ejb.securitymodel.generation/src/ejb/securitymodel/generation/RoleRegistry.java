@@ -0,0 +1,53 @@
+package ejb.securitymodel.generation;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.mkonersmann.ejb31.Ejb31Factory;
+import de.mkonersmann.ejb31.Role;
+
+/**
+ * Registry interning Role objects by their name, so every role exists exactly once within a model.
+ * Lookups and insertions are constant time and may be done from several threads.
+ *
+ */
+public class RoleRegistry {
+	
+	private final Ejb31Factory factory;
+	private final ConcurrentMap<String, Role> roles;
+	
+	/**
+	 * RoleRegistry constructor.
+	 * @param factory factory to create new roles with
+	 */
+	public RoleRegistry(Ejb31Factory factory){
+		this.factory = factory;
+		this.roles = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Returns the role with the given name, creating it on first request.
+	 * @param name role name
+	 * @return the one role object for this name
+	 */
+	public Role intern(String name){
+		Role role = roles.get(name);
+		if(role == null){
+			Role newRole = factory.createRole();
+			newRole.setName(name);
+			role = roles.putIfAbsent(name, newRole);
+			if(role == null){
+				role = newRole;
+			}
+		}
+		return role;
+	}
+	
+	/**
+	 * Removes a role no longer referred to, a later request for its name creates a new role.
+	 * @param role role to remove
+	 */
+	public void remove(Role role){
+		roles.remove(role.getName(), role);
+	}
+}
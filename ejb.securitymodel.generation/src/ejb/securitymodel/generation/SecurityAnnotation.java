@@ -0,0 +1,65 @@
+package ejb.securitymodel.generation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Enum representing the annotations relevant for identifying Java Beans and their security specs.
+ * Each annotation may be written with its simple or with its fully qualified name,
+ * in the <code>javax</code> namespace of Java EE or the <code>jakarta</code> namespace of Jakarta EE 9 and later.
+ *
+ */
+public enum SecurityAnnotation {
+	STATELESS("javax.ejb.Stateless", "jakarta.ejb.Stateless"),
+	STATEFUL("javax.ejb.Stateful", "jakarta.ejb.Stateful"),
+	SINGLETON("javax.ejb.Singleton", "jakarta.ejb.Singleton"),
+	MESSAGEDRIVEN("javax.ejb.MessageDriven", "jakarta.ejb.MessageDriven"),
+	ASYNCHRONOUS("javax.ejb.Asynchronous", "jakarta.ejb.Asynchronous"),
+	PERMIT_ALL("javax.annotation.security.PermitAll", "jakarta.annotation.security.PermitAll"),
+	DENY_ALL("javax.annotation.security.DenyAll", "jakarta.annotation.security.DenyAll"),
+	ROLES_ALLOWED("javax.annotation.security.RolesAllowed", "jakarta.annotation.security.RolesAllowed"),
+	DECLARE_ROLES("javax.annotation.security.DeclareRoles", "jakarta.annotation.security.DeclareRoles"),
+	RUN_AS("javax.annotation.security.RunAs", "jakarta.annotation.security.RunAs");
+	
+	//lookup table for simple and qualified names
+	private static final Map<String, SecurityAnnotation> BY_NAME = new HashMap<>();
+	static {
+		for(SecurityAnnotation annotation : values()){
+			BY_NAME.put(annotation.simpleName, annotation);
+			for(String qualifiedName : annotation.qualifiedNames){
+				BY_NAME.put(qualifiedName, annotation);
+			}
+		}
+	}
+	
+	private final String simpleName;
+	private final String[] qualifiedNames;
+	
+	private SecurityAnnotation(String... qualifiedNames){
+		this.qualifiedNames = qualifiedNames;
+		this.simpleName = qualifiedNames[0].substring(qualifiedNames[0].lastIndexOf('.') + 1);
+	}
+	
+	/**
+	 * @return name of the annotation without package
+	 */
+	public String getSimpleName(){
+		return simpleName;
+	}
+	
+	/**
+	 * @return fully qualified names of the annotation
+	 */
+	public String[] getQualifiedNames(){
+		return qualifiedNames.clone();
+	}
+	
+	/**
+	 * Returns the annotation for a name as written in the source code.
+	 * @param name simple or fully qualified annotation name
+	 * @return respective annotation, null if the name denotes no relevant annotation
+	 */
+	public static SecurityAnnotation forName(String name){
+		return BY_NAME.get(name);
+	}
+}
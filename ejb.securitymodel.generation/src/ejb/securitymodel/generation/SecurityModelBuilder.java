@@ -0,0 +1,160 @@
+package ejb.securitymodel.generation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.ICommand;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+
+/**
+ * Project builder keeping the security model up to date as part of the build.
+ * <p>
+ * The builder itself only walks the resource delta for added, removed or edited Java sources and hands them to an
+ * {@link IncrementalModelUpdater}, which updates the model in the background once a burst of saves has settled.
+ * Builds without source changes, e.g. after only markers or class files changed, schedule nothing at all. A changed
+ * deployment descriptor may affect any bean, so it schedules a generation of the whole model. Whether an
+ * edited unit declares a bean is decided by the update, which leaves the model file untouched if no bean changed.
+ * The model and the extraction cache are written outside of the workspace resources, so the builder never sees its own output.
+ *
+ */
+public class SecurityModelBuilder extends IncrementalProjectBuilder {
+	
+	/**
+	 * ID of the builder, as registered in the plugin.xml.
+	 */
+	public static final String BUILDER_ID = ModelGenerationJob.PLUGIN_ID + ".securityModelBuilder";
+	
+	//lives as long as the builder instance, i.e. as long as the project is open and the builder configured
+	private IncrementalModelUpdater updater;
+	
+	@Override
+	protected IProject[] build(int kind, Map<String, String> args, IProgressMonitor monitor) throws CoreException {
+		IJavaProject project = JavaCore.create(getProject());
+		if(!project.exists()){
+			return null;
+		}
+		if(updater == null){
+			updater = new IncrementalModelUpdater(project, ModelGenerationJob.PLUGIN_ID);
+		}
+		
+		IResourceDelta delta = kind == FULL_BUILD ? null : getDelta(getProject());
+		if(delta == null){
+			//no delta to go by
+			updater.generateModel();
+			return null;
+		}
+		boolean[] descriptorChanged = { false };
+		List<ICompilationUnit> units = collectChangedUnits(delta, project, descriptorChanged);
+		if(descriptorChanged[0]){
+			//the security of any bean may have changed
+			updater.generateModel();
+		}
+		else if(!units.isEmpty()){
+			updater.unitsChanged(units);
+		}
+		return null;
+	}
+	
+	/**
+	 * Collects the compilation units whose content changed, skipping build output and changes of markers or properties only.
+	 * @param delta resource delta of the project
+	 * @param project Java project
+	 * @param descriptorChanged set to true if a deployment descriptor got added, changed or removed
+	 * @return added, changed or removed compilation units on the project's source path
+	 * @throws CoreException
+	 */
+	private static List<ICompilationUnit> collectChangedUnits(IResourceDelta delta, final IJavaProject project, final boolean[] descriptorChanged) throws CoreException{
+		final List<ICompilationUnit> units = new ArrayList<>();
+		final IPath outputLocation = project.getOutputLocation();
+		delta.accept(new IResourceDeltaVisitor() {
+			@Override
+			public boolean visit(IResourceDelta child) throws CoreException {
+				IResource resource = child.getResource();
+				switch(resource.getType()){
+				case IResource.FILE:
+					//every build changes the problem markers of the sources it compiled
+					if(child.getKind() == IResourceDelta.CHANGED
+							&& (child.getFlags() & (IResourceDelta.CONTENT | IResourceDelta.REPLACED | IResourceDelta.ENCODING)) == 0){
+						return false;
+					}
+					if(DeploymentDescriptor.FILE_NAME.equals(resource.getName())
+							&& DeploymentDescriptor.isDescriptor(resource.getProjectRelativePath().toString())){
+						descriptorChanged[0] = true;
+						return false;
+					}
+					if(!"java".equals(resource.getFileExtension())){
+						return false;
+					}
+					IJavaElement element = JavaCore.create((IFile)resource);
+					if(element instanceof ICompilationUnit && project.isOnClasspath(element)){
+						units.add((ICompilationUnit)element);
+					}
+					return false;
+				case IResource.FOLDER:
+					//class files and other build output don't declare beans
+					return !resource.isDerived() && !outputLocation.isPrefixOf(resource.getFullPath());
+				default:
+					return true;
+				}
+			}
+		});
+		return units;
+	}
+	
+	/**
+	 * @param project project
+	 * @return true if the builder is part of the project's build specification
+	 * @throws CoreException if the project description can't be read
+	 */
+	public static boolean isEnabled(IProject project) throws CoreException{
+		for(ICommand command : project.getDescription().getBuildSpec()){
+			if(BUILDER_ID.equals(command.getBuilderName())){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Adds the builder to the end of the project's build specification, after the Java builder, or removes it.
+	 * @param project project
+	 * @param enabled true to add the builder, false to remove it
+	 * @throws CoreException if the project description can't be changed
+	 */
+	public static void setEnabled(IProject project, boolean enabled) throws CoreException{
+		if(isEnabled(project) == enabled){
+			return;
+		}
+		IProjectDescription description = project.getDescription();
+		List<ICommand> commands = new ArrayList<>(Arrays.asList(description.getBuildSpec()));
+		if(enabled){
+			ICommand command = description.newCommand();
+			command.setBuilderName(BUILDER_ID);
+			commands.add(command);
+		}
+		else{
+			for(int i = commands.size() - 1; i >= 0; i--){
+				if(BUILDER_ID.equals(commands.get(i).getBuilderName())){
+					commands.remove(i);
+				}
+			}
+		}
+		description.setBuildSpec(commands.toArray(new ICommand[commands.size()]));
+		project.setDescription(description, null);
+	}
+}
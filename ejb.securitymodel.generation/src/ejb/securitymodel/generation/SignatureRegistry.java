@@ -0,0 +1,133 @@
+package ejb.securitymodel.generation;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.mkonersmann.ejb31.DataType;
+import de.mkonersmann.ejb31.Ejb31Factory;
+import de.mkonersmann.ejb31.OperationParameter;
+import de.mkonersmann.ejb31.OperationSignature;
+
+/**
+ * Registry interning OperationSignature objects by their full signature, i.e. name, parameter types and return type,
+ * so every distinct signature exists exactly once within a model, no matter how many operations share it.
+ * The data types of parameters and return values are interned by their name the same way.
+ * Lookups and insertions are constant time and may be done from several threads.
+ *
+ */
+public class SignatureRegistry {
+	
+	private final Ejb31Factory factory;
+	private final ConcurrentMap<String, OperationSignature> signatures;
+	private final ConcurrentMap<String, DataType> dataTypes;
+	
+	/**
+	 * SignatureRegistry constructor.
+	 * @param factory factory to create new signatures and data types with
+	 */
+	public SignatureRegistry(Ejb31Factory factory){
+		this.factory = factory;
+		this.signatures = new ConcurrentHashMap<>();
+		this.dataTypes = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Returns the signature of the given method, creating it on first request.
+	 * @param method facts of the method
+	 * @return the one signature object for the method's full signature
+	 */
+	public OperationSignature intern(BeanFacts.MethodFacts method){
+		String key = getKey(method);
+		OperationSignature signature = signatures.get(key);
+		if(signature == null){
+			OperationSignature newSignature = factory.createOperationSignature();
+			newSignature.setName(method.getName());
+			String[] parameterTypes = method.getParameterTypes();
+			for(int i = 0; i < parameterTypes.length; i++){
+				//parameter names differ between the methods sharing the signature, so the parameters are named by position
+				OperationParameter parameter = factory.createOperationParameter();
+				parameter.setName("arg" + i);
+				parameter.setApplicationDataType(internDataType(parameterTypes[i]));
+				newSignature.getParameters().add(parameter);
+			}
+			if(method.getReturnType() != null){
+				newSignature.setReturnApplicationType(internDataType(method.getReturnType()));
+			}
+			signature = signatures.putIfAbsent(key, newSignature);
+			if(signature == null){
+				signature = newSignature;
+			}
+		}
+		return signature;
+	}
+	
+	/**
+	 * Returns the data type with the given name, creating it on first request.
+	 * @param name simple name of the type, e.g. <code>List</code> or <code>int[]</code>
+	 * @return the one data type object for this name
+	 */
+	private DataType internDataType(String name){
+		DataType dataType = dataTypes.get(name);
+		if(dataType == null){
+			DataType newDataType = factory.createDataType();
+			newDataType.setName(name);
+			dataType = dataTypes.putIfAbsent(name, newDataType);
+			if(dataType == null){
+				dataType = newDataType;
+			}
+		}
+		return dataType;
+	}
+	
+	/**
+	 * Returns the key a method's signature is interned by.
+	 * @param method facts of the method
+	 * @return method name followed by the parameter types and, unless it's a constructor, the return type
+	 */
+	public static String getKey(BeanFacts.MethodFacts method){
+		return method.getReturnType() == null ? method.getKey() : method.getKey() + ':' + method.getReturnType();
+	}
+	
+	/**
+	 * Returns the key a signature is interned by.
+	 * @param signature interned signature
+	 * @return method name followed by the parameter types and, unless it's a constructor, the return type
+	 */
+	public static String getKey(OperationSignature signature){
+		String key = getMethodKey(signature);
+		return signature.getReturnApplicationType() == null ? key : key + ':' + signature.getReturnApplicationType().getName();
+	}
+	
+	/**
+	 * Returns the key of the methods having a signature, telling overloaded methods apart.
+	 * @param signature interned signature
+	 * @return method name followed by the parameter types, like {@link BeanFacts.MethodFacts#getKey()}
+	 */
+	public static String getMethodKey(OperationSignature signature){
+		StringBuilder key = new StringBuilder(String.valueOf(signature.getName())).append('(');
+		for(int i = 0; i < signature.getParameters().size(); i++){
+			if(i > 0){
+				key.append(',');
+			}
+			DataType parameterType = signature.getParameters().get(i).getApplicationDataType();
+			key.append(parameterType == null ? null : parameterType.getName());
+		}
+		return key.append(')').toString();
+	}
+	
+	/**
+	 * Removes a signature no longer referred to, a later request for it creates a new signature.
+	 * @param signature signature to remove
+	 */
+	public void remove(OperationSignature signature){
+		signatures.remove(getKey(signature), signature);
+	}
+	
+	/**
+	 * Removes a data type no longer referred to, a later request for its name creates a new data type.
+	 * @param dataType data type to remove
+	 */
+	public void remove(DataType dataType){
+		dataTypes.remove(dataType.getName(), dataType);
+	}
+}
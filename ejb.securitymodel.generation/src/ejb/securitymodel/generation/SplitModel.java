@@ -0,0 +1,307 @@
+package ejb.securitymodel.generation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
+
+import de.mkonersmann.ejb31.DataType;
+import de.mkonersmann.ejb31.Ejb31Package;
+import de.mkonersmann.ejb31.EnterpriseBean;
+import de.mkonersmann.ejb31.OperationSignature;
+import de.mkonersmann.ejb31.Role;
+
+/**
+ * A security model split into one XMI resource per bean plus a resource holding all roles and one holding all operation
+ * signatures along with their data types, stored in one directory. Each bean resource contains only the bean and refers
+ * to roles and signatures by cross-document references like <code>href="roles.xmi#admin"</code>. Role and data type IDs
+ * are derived from their names, signature IDs from the full signature and bean files from the bean names, so they stay
+ * the same from one generation to the next.
+ * <p>
+ * Opening a split model reads nothing but the directory listing. A bean resource is only loaded when the bean is
+ * requested, and the roles and signatures resources only once a reference of a loaded bean to them gets resolved.
+ *
+ */
+public class SplitModel {
+	
+	/**
+	 * Name of the resource holding the roles.
+	 */
+	public static final String ROLES_FILE = "roles.xmi";
+	/**
+	 * Name of the resource holding the operation signatures and data types.
+	 */
+	public static final String SIGNATURES_FILE = "signatures.xmi";
+	private static final String EXTENSION = ".xmi";
+	
+	private final File directory;
+	private final ResourceSet resourceSet;
+	private final Map<Object, Object> loadOptions;
+	
+	/**
+	 * Opens a split model without loading any of its resources.
+	 * @param directory model directory
+	 * @throws IOException if the directory contains no split model
+	 */
+	public SplitModel(File directory) throws IOException{
+		if(!new File(directory, ROLES_FILE).isFile()){
+			throw new IOException(directory + " contains no split security model");
+		}
+		this.directory = directory;
+		ResourceSetImpl resourceSet = new ResourceSetImpl();
+		//looks resources up by URI in constant time instead of going through all loaded beans
+		resourceSet.setURIResourceMap(new HashMap<URI, Resource>());
+		this.resourceSet = resourceSet;
+		this.resourceSet.getPackageRegistry().put(Ejb31Package.eNS_URI, Ejb31Package.eINSTANCE);
+		this.resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("xmi", new XMIResourceFactoryImpl());
+		this.loadOptions = OutputFormat.XMI_SPLIT.getLoadOptions();
+		//cross-document proxies get loaded with the same options
+		this.resourceSet.getLoadOptions().putAll(loadOptions);
+	}
+	
+	/**
+	 * @return names of the beans' resources, i.e. the bean names unless several beans share a name, sorted by name
+	 */
+	public List<String> getBeanNames(){
+		List<String> names = new ArrayList<>();
+		String[] files = directory.list();
+		if(files != null){
+			for(String file : files){
+				if(file.endsWith(EXTENSION) && !file.equals(ROLES_FILE) && !file.equals(SIGNATURES_FILE)){
+					names.add(file.substring(0, file.length() - EXTENSION.length()));
+				}
+			}
+		}
+		Collections.sort(names);
+		return names;
+	}
+	
+	/**
+	 * Loads a single bean, if it hasn't been loaded yet. The roles and signatures it refers to get resolved on first access.
+	 * @param name bean name as returned by {@link #getBeanNames()}
+	 * @return bean, null if the model has no such bean
+	 * @throws IOException if the bean resource can't be read
+	 */
+	public EnterpriseBean getBean(String name) throws IOException{
+		File file = new File(directory, name + EXTENSION);
+		if(!file.isFile() || file.getName().equals(ROLES_FILE) || file.getName().equals(SIGNATURES_FILE)){
+			return null;
+		}
+		URI uri = URI.createFileURI(file.getAbsolutePath());
+		Resource resource = resourceSet.getResource(uri, false);
+		if(resource == null){
+			resource = resourceSet.createResource(uri);
+			resource.load(loadOptions);
+		}
+		for(EObject object : resource.getContents()){
+			if(object instanceof EnterpriseBean){
+				return (EnterpriseBean)object;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @return resource set holding the resources loaded so far
+	 */
+	public ResourceSet getResourceSet(){
+		return resourceSet;
+	}
+	
+	/**
+	 * Loads all beans, roles and signatures into a single resource that isn't backed by a file, like a model saved as one file.
+	 * @return resource holding the roles, the data types and signatures followed by the beans, all references resolved
+	 * @throws IOException if a resource can't be read
+	 */
+	public Resource loadAll() throws IOException{
+		List<Resource> beanResources = new ArrayList<>();
+		for(String name : getBeanNames()){
+			EnterpriseBean bean = getBean(name);
+			if(bean != null){
+				beanResources.add(bean.eResource());
+			}
+		}
+		EcoreUtil.resolveAll(resourceSet);
+		
+		Resource model = new XMIResourceImpl(URI.createFileURI(directory.getAbsolutePath()));
+		Resource roles = resourceSet.getResource(URI.createFileURI(new File(directory, ROLES_FILE).getAbsolutePath()), true);
+		model.getContents().addAll(roles.getContents());
+		File signaturesFile = new File(directory, SIGNATURES_FILE);
+		if(signaturesFile.isFile()){
+			Resource signatures = resourceSet.getResource(URI.createFileURI(signaturesFile.getAbsolutePath()), true);
+			model.getContents().addAll(signatures.getContents());
+		}
+		for(Resource beanResource : beanResources){
+			model.getContents().addAll(beanResource.getContents());
+		}
+		return model;
+	}
+	
+	/**
+	 * Writes a model into a directory as split model. The objects of the model are copied, the model itself stays untouched.
+	 * Beans are copied and written one at a time, so only one bean is held twice in memory.
+	 * @param model resource holding roles, data types, signatures and beans
+	 * @param directory empty target directory
+	 * @throws IOException if a resource can't be written
+	 */
+	public static void write(Resource model, File directory) throws IOException{
+		Map<Object, Object> saveOptions = OutputFormat.XMI_SPLIT.getSaveOptions();
+		ResourceSet resourceSet = new ResourceSetImpl();
+		
+		//the roles go first, the bean copies refer to their copies
+		XMLResource roles = new XMIResourceImpl(URI.createFileURI(new File(directory, ROLES_FILE).getAbsolutePath()));
+		resourceSet.getResources().add(roles);
+		Map<EObject, EObject> sharedCopies = new HashMap<>();
+		for(EObject object : model.getContents()){
+			if(object instanceof Role){
+				EObject copy = EcoreUtil.copy(object);
+				roles.getContents().add(copy);
+				roles.setID(copy, getRoleId((Role)object));
+				sharedCopies.put(object, copy);
+			}
+		}
+		roles.save(saveOptions);
+		
+		//signatures are shared between beans as well, so they get a resource of their own
+		XMLResource signatures = new XMIResourceImpl(URI.createFileURI(new File(directory, SIGNATURES_FILE).getAbsolutePath()));
+		resourceSet.getResources().add(signatures);
+		EcoreUtil.Copier signatureCopier = new EcoreUtil.Copier();
+		for(EObject object : getSortedSignatures(model)){
+			EObject copy = signatureCopier.copy(object);
+			signatures.getContents().add(copy);
+			signatures.setID(copy, object instanceof DataType ? URI.encodeFragment(String.valueOf(((DataType)object).getName()), false)
+					: URI.encodeFragment(SignatureRegistry.getKey((OperationSignature)object), false));
+		}
+		signatureCopier.copyReferences();
+		signatures.save(saveOptions);
+		sharedCopies.putAll(signatureCopier);
+		
+		Set<String> fileNames = new HashSet<>();
+		for(EObject object : model.getContents()){
+			if(!(object instanceof EnterpriseBean)){
+				continue;
+			}
+			EnterpriseBean bean = (EnterpriseBean)object;
+			String fileName = getFileName(bean.getName());
+			//beans of the same name in different packages
+			for(int duplicate = 2; !fileNames.add(fileName.toLowerCase()); duplicate++){
+				fileName = getFileName(bean.getName()) + "_" + duplicate;
+			}
+			
+			XMLResource beanResource = new XMIResourceImpl(URI.createFileURI(new File(directory, fileName + EXTENSION).getAbsolutePath()));
+			resourceSet.getResources().add(beanResource);
+			EcoreUtil.Copier copier = new BeanCopier(sharedCopies);
+			EObject beanCopy = copier.copy(bean);
+			beanResource.getContents().add(beanCopy);
+			beanResource.setID(beanCopy, "B");
+			copier.copyReferences();
+			beanResource.save(saveOptions);
+			//nothing refers to the bean, so it can be dropped right away, without turning the copies into proxies as unload() would
+			resourceSet.getResources().remove(beanResource);
+			beanResource.getContents().clear();
+		}
+	}
+	
+	/**
+	 * Copier of a single bean, looking up the copies of roles and signatures in the map shared by all beans
+	 * instead of taking them into its own map, so copying a bean takes time proportional to the bean only.
+	 */
+	private static class BeanCopier extends EcoreUtil.Copier {
+		private static final long serialVersionUID = 1L;
+		
+		private final Map<EObject, EObject> sharedCopies;
+		
+		BeanCopier(Map<EObject, EObject> sharedCopies){
+			this.sharedCopies = sharedCopies;
+		}
+		
+		@Override
+		public EObject get(Object key){
+			EObject copy = super.get(key);
+			return copy != null ? copy : sharedCopies.get(key);
+		}
+	}
+	
+	/**
+	 * Collects the data types and signatures of a model, each sorted by name, so the signatures resource is written the same way for the same model.
+	 * @param model resource holding roles, data types, signatures and beans
+	 * @return data types followed by the signatures
+	 */
+	private static List<EObject> getSortedSignatures(Resource model){
+		final Map<EObject, String> keys = new HashMap<>();
+		List<EObject> dataTypes = new ArrayList<>();
+		List<EObject> signatures = new ArrayList<>();
+		for(EObject object : model.getContents()){
+			if(object instanceof DataType){
+				keys.put(object, String.valueOf(((DataType)object).getName()));
+				dataTypes.add(object);
+			}
+			else if(object instanceof OperationSignature){
+				keys.put(object, SignatureRegistry.getKey((OperationSignature)object));
+				signatures.add(object);
+			}
+		}
+		Comparator<EObject> byKey = new Comparator<EObject>() {
+			@Override
+			public int compare(EObject object1, EObject object2) {
+				return keys.get(object1).compareTo(keys.get(object2));
+			}
+		};
+		Collections.sort(dataTypes, byKey);
+		Collections.sort(signatures, byKey);
+		dataTypes.addAll(signatures);
+		return dataTypes;
+	}
+	
+	/**
+	 * @param role role
+	 * @return ID of the role, derived from its name so references stay stable
+	 */
+	private static String getRoleId(Role role){
+		return URI.encodeFragment(String.valueOf(role.getName()), false);
+	}
+	
+	/**
+	 * @param beanName bean name
+	 * @return name usable as file name on all platforms
+	 */
+	private static String getFileName(String beanName){
+		StringBuilder fileName = new StringBuilder(beanName == null ? "Bean" : beanName);
+		for(int i = 0; i < fileName.length(); i++){
+			char c = fileName.charAt(i);
+			if(!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.' && c != '$'){
+				fileName.setCharAt(i, '_');
+			}
+		}
+		//keep roles.xmi and signatures.xmi reserved for the roles and signatures
+		if(fileName.toString().equalsIgnoreCase(ROLES_FILE.substring(0, ROLES_FILE.length() - EXTENSION.length()))
+				|| fileName.toString().equalsIgnoreCase(SIGNATURES_FILE.substring(0, SIGNATURES_FILE.length() - EXTENSION.length()))){
+			fileName.append('_');
+		}
+		return fileName.toString();
+	}
+	
+	/**
+	 * @param file directory or file
+	 * @return true if the directory holds a split model
+	 */
+	static boolean isSplitModel(File file){
+		return file.isDirectory() && new File(file, ROLES_FILE).isFile();
+	}
+}
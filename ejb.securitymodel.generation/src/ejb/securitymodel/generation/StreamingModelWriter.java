@@ -0,0 +1,220 @@
+package ejb.securitymodel.generation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+import de.mkonersmann.ejb31.DataType;
+import de.mkonersmann.ejb31.Ejb31Package;
+import de.mkonersmann.ejb31.EnterpriseBean;
+import de.mkonersmann.ejb31.Role;
+
+/**
+ * Writes the security model as XMI while it is being extracted, so only the bean currently written is held in memory.
+ * Each bean is written as soon as it is extracted, directly followed by the operation signatures and data types
+ * it refers to that weren't written before, as signatures are shared between beans and get written only once.
+ * The roles are shared between beans as well and get written once in a trailing section. All references use XMI IDs,
+ * so the written file loads like any other model in EMF.
+ *
+ */
+public class StreamingModelWriter implements Closeable {
+	
+	private static final String XMI_NS = "http://www.omg.org/XMI";
+	private static final String XSI_NS = "http://www.w3.org/2001/XMLSchema-instance";
+	private static final String INDENT = "  ";
+	
+	private final XMLStreamWriter writer;
+	private final String prefix;
+	//roles referred to so far, written at the end
+	private final Map<Role, String> roleIds;
+	//signatures and data types written so far
+	private final Map<EObject, String> signatureIds;
+	private int dataTypeCount;
+	
+	/**
+	 * StreamingModelWriter constructor, writes the XMI header right away.
+	 * @param out stream to write the model to, not closed by this writer
+	 * @throws IOException
+	 */
+	public StreamingModelWriter(OutputStream out) throws IOException{
+		this.prefix = Ejb31Package.eINSTANCE.getNsPrefix();
+		this.roleIds = new LinkedHashMap<>();
+		this.signatureIds = new HashMap<>();
+		try {
+			this.writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+			writer.writeStartDocument("UTF-8", "1.0");
+			writer.writeCharacters("\n");
+			writer.writeStartElement("xmi", "XMI", XMI_NS);
+			writer.writeNamespace("xmi", XMI_NS);
+			writer.writeNamespace("xsi", XSI_NS);
+			writer.writeNamespace(prefix, Ejb31Package.eNS_URI);
+			writer.writeAttribute("xmi", XMI_NS, "version", "2.0");
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+	
+	/**
+	 * Writes the extracted beans of a unit followed by the operation signatures and data types they introduce.
+	 * @param extraction extracted beans, ignored if it holds no bean
+	 * @throws IOException
+	 */
+	public void writeBean(BeanExtraction extraction) throws IOException{
+		if(extraction.getBeans().isEmpty()){
+			return;
+		}
+		try {
+			//signatures and data types not seen before get written right after the beans
+			List<EObject> introduced = new ArrayList<>();
+			for(EObject rootObject : extraction.getRootObjects()){
+				if(rootObject instanceof Role){
+					if(!roleIds.containsKey(rootObject)){
+						roleIds.put((Role)rootObject, "R" + roleIds.size());
+					}
+				}
+				else if(!signatureIds.containsKey(rootObject)){
+					signatureIds.put(rootObject, rootObject instanceof DataType ? "T" + dataTypeCount++ : "S" + (signatureIds.size() - dataTypeCount));
+					introduced.add(rootObject);
+				}
+			}
+			
+			for(EnterpriseBean bean : extraction.getBeans()){
+				writeObject(bean, null, null, 1);
+			}
+			for(EObject rootObject : introduced){
+				writeObject(rootObject, null, signatureIds.get(rootObject), 1);
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+	
+	/**
+	 * Writes the trailing role section and finishes the document.
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException{
+		try {
+			for(Map.Entry<Role, String> role : roleIds.entrySet()){
+				writeObject(role.getKey(), null, role.getValue(), 1);
+			}
+			writer.writeCharacters("\n");
+			writer.writeEndElement();
+			writer.writeEndDocument();
+			writer.flush();
+			writer.close();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+	
+	/**
+	 * Writes an object along with its attributes, references and contained objects.
+	 * @param object object to write
+	 * @param containment feature containing the object, null for root objects
+	 * @param id XMI ID of the object, null if it is not referred to
+	 * @param depth nesting depth for indentation
+	 */
+	private void writeObject(EObject object, EReference containment, String id, int depth) throws XMLStreamException{
+		EClass eClass = object.eClass();
+		List<EReference> children = new ArrayList<>();
+		for(EReference reference : eClass.getEAllContainments()){
+			if(!reference.isTransient() && object.eIsSet(reference)){
+				children.add(reference);
+			}
+		}
+		
+		indent(depth);
+		String elementName = containment == null ? prefix + ":" + eClass.getName() : containment.getName();
+		if(children.isEmpty()){
+			writer.writeEmptyElement(elementName);
+		}
+		else{
+			writer.writeStartElement(elementName);
+		}
+		if(containment != null && eClass != containment.getEReferenceType()){
+			writer.writeAttribute("xsi", XSI_NS, "type", prefix + ":" + eClass.getName());
+		}
+		if(id != null){
+			writer.writeAttribute("xmi", XMI_NS, "id", id);
+		}
+		
+		for(EStructuralFeature feature : eClass.getEAllStructuralFeatures()){
+			if(feature.isTransient() || feature.isDerived() || !object.eIsSet(feature)){
+				continue;
+			}
+			if(feature instanceof EAttribute){
+				EAttribute attribute = (EAttribute)feature;
+				writer.writeAttribute(feature.getName(), EcoreUtil.convertToString(attribute.getEAttributeType(), object.eGet(feature)));
+			}
+			else if(!((EReference)feature).isContainment()){
+				writer.writeAttribute(feature.getName(), referenceIds(object, (EReference)feature));
+			}
+		}
+		
+		if(children.isEmpty()){
+			return;
+		}
+		for(EReference reference : children){
+			for(EObject child : values(object, reference)){
+				writeObject(child, reference, null, depth + 1);
+			}
+		}
+		indent(depth);
+		writer.writeEndElement();
+	}
+	
+	/**
+	 * @return space separated IDs of the objects referred to by the given non-containment reference
+	 */
+	private String referenceIds(EObject object, EReference reference){
+		StringBuilder sb = new StringBuilder();
+		for(EObject target : values(object, reference)){
+			String id = target instanceof Role ? roleIds.get(target) : signatureIds.get(target);
+			if(id == null){
+				throw new IllegalStateException("Reference to an object not recorded for " + object);
+			}
+			if(sb.length() > 0){
+				sb.append(' ');
+			}
+			sb.append(id);
+		}
+		return sb.toString();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static List<EObject> values(EObject object, EReference reference){
+		Object value = object.eGet(reference);
+		if(reference.isMany()){
+			return (List<EObject>)value;
+		}
+		List<EObject> result = new ArrayList<>(1);
+		result.add((EObject)value);
+		return result;
+	}
+	
+	private void indent(int depth) throws XMLStreamException{
+		StringBuilder sb = new StringBuilder("\n");
+		for(int i = 0; i < depth; i++){
+			sb.append(INDENT);
+		}
+		writer.writeCharacters(sb.toString());
+	}
+}
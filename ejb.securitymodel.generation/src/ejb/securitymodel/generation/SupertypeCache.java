@@ -0,0 +1,310 @@
+package ejb.securitymodel.generation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.core.Flags;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.ITypeHierarchy;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.Signature;
+
+/**
+ * Memoized superclasses of the bean classes of a project, used to add the business methods a bean inherits
+ * from abstract base classes along with the security specified on them.
+ * <p>
+ * Computing a supertype hierarchy is expensive, so it is only done for a bean whose superclass hasn't been seen before.
+ * All superclasses on that hierarchy are memoized with their business methods already resolved, so beans sharing
+ * a base class just look it up by name. The cache is bounded by the number of compilation units of the project,
+ * which every project's own base classes fit into, and evicts the least recently used superclasses beyond that.
+ *
+ */
+public class SupertypeCache {
+	
+	//room for base classes from libraries, on top of the project's own compilation units
+	private static final int LIBRARY_TYPES = 64;
+	
+	/**
+	 * A resolved superclass. Also used by the {@link ClassFileScanner}, so compiled beans inherit the same way.
+	 */
+	static class Supertype {
+		//this class followed by its superclasses, nearest first
+		final List<String> names;
+		//public instance methods of this class and the ones it inherits, with their effective security
+		final List<BeanFacts.MethodFacts> methods;
+		//roles declared on this class and its superclasses
+		final Set<String> declaredRoles;
+		
+		private Supertype(List<String> names, List<BeanFacts.MethodFacts> methods, Set<String> declaredRoles){
+			this.names = names;
+			this.methods = methods;
+			this.declaredRoles = declaredRoles;
+		}
+		
+		/**
+		 * Combines the business methods of a superclass with the ones it inherits.
+		 * @param name qualified name of the superclass
+		 * @param classAnnotations annotations of the superclass
+		 * @param businessMethods public instance methods declared by the superclass, with their own annotations
+		 * @param parent resolved superclass of the superclass, null if it extends Object
+		 * @return resolved superclass
+		 */
+		static Supertype of(String name, AnnotationSnapshot classAnnotations, List<BeanFacts.MethodFacts> businessMethods, Supertype parent){
+			List<String> names = new ArrayList<>();
+			names.add(name);
+			List<BeanFacts.MethodFacts> methods = new ArrayList<>();
+			Set<String> methodKeys = new HashSet<>();
+			for(BeanFacts.MethodFacts method : businessMethods){
+				methods.add(method.withAnnotations(method.getAnnotations().inheritPermissions(classAnnotations)));
+				methodKeys.add(method.getKey());
+			}
+			
+			Set<String> declaredRoles = new LinkedHashSet<>();
+			if(classAnnotations.getValues(SecurityAnnotation.DECLARE_ROLES) != null){
+				Collections.addAll(declaredRoles, classAnnotations.getValues(SecurityAnnotation.DECLARE_ROLES));
+			}
+			if(parent != null){
+				names.addAll(parent.names);
+				for(BeanFacts.MethodFacts method : parent.methods){
+					if(!methodKeys.contains(method.getKey())){
+						methods.add(method);
+					}
+				}
+				declaredRoles.addAll(parent.declaredRoles);
+			}
+			return new Supertype(names, methods, declaredRoles);
+		}
+		
+		/**
+		 * Adds the business methods and declared roles a bean class inherits from this superclass to the bean's facts.
+		 * Methods overridden by the bean class are left out.
+		 * @param facts facts of the bean class
+		 * @return facts including the inherited methods
+		 */
+		BeanFacts inherit(BeanFacts facts){
+			Set<String> ownMethods = new HashSet<>();
+			for(BeanFacts.MethodFacts method : facts.getMethods()){
+				ownMethods.add(method.getKey());
+			}
+			List<BeanFacts.MethodFacts> inherited = new ArrayList<>(facts.getMethods());
+			for(BeanFacts.MethodFacts method : this.methods){
+				if(!ownMethods.contains(method.getKey())){
+					inherited.add(method);
+				}
+			}
+			return new BeanFacts(facts.getName(), facts.getQualifiedName(), facts.getClassAnnotations().declareRoles(declaredRoles),
+					inherited, Collections.<BeanFacts>emptyList());
+		}
+	}
+	
+	private final Map<String, Supertype> supertypes;
+	private GenerationMetrics metrics;
+	//resolver for role values given as constants, null to keep the names of the constants
+	private ConstantResolver constants;
+	
+	/**
+	 * SupertypeCache constructor.
+	 * @param capacity maximum number of memoized superclasses
+	 */
+	public SupertypeCache(final int capacity){
+		this.supertypes = new LinkedHashMap<String, Supertype>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Supertype> eldest) {
+				return size() > capacity;
+			}
+		};
+		this.metrics = GenerationMetrics.DISABLED;
+	}
+	
+	/**
+	 * Creates a cache fitting all base classes of the given project.
+	 * @param project Java project
+	 * @return empty cache
+	 * @throws JavaModelException
+	 */
+	public static SupertypeCache of(IJavaProject project) throws JavaModelException{
+		int units = 0;
+		for(IPackageFragmentRoot root : project.getPackageFragmentRoots()){
+			if(root.getKind() == IPackageFragmentRoot.K_SOURCE){
+				for(IJavaElement fragment : root.getChildren()){
+					units += ((IPackageFragment)fragment).getCompilationUnits().length;
+				}
+			}
+		}
+		return new SupertypeCache(units + LIBRARY_TYPES);
+	}
+	
+	/**
+	 * @param metrics metrics of the current run, counting the computed hierarchies
+	 */
+	public void setMetrics(GenerationMetrics metrics){
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @param constants resolver for role values given as constants, shared with the extraction of the beans
+	 */
+	public void setConstants(ConstantResolver constants){
+		this.constants = constants;
+	}
+	
+	/**
+	 * Adds the business methods and declared roles a bean class inherits from its superclasses to the bean's facts.
+	 * Methods overridden by the bean class are left out. The names of the superclasses are recorded in the extraction,
+	 * so the bean can be extracted again once one of them changes.
+	 * @param unit compilation unit declaring the bean
+	 * @param facts facts of the bean class
+	 * @param extraction extraction of the bean
+	 * @return facts including the inherited methods, the given facts if the bean class has no superclass
+	 * @throws JavaModelException
+	 */
+	public BeanFacts resolve(ICompilationUnit unit, BeanFacts facts, BeanExtraction extraction) throws JavaModelException{
+		IType type = findType(unit, facts.getQualifiedName());
+		//the superclass name is known from the source without resolving anything, most beans extend Object
+		if(type == null || !type.isClass() || type.getSuperclassName() == null){
+			return facts;
+		}
+		Supertype supertype = getSupertype(type);
+		if(supertype == null){
+			return facts;
+		}
+		for(String name : supertype.names){
+			extraction.addSupertype(name);
+		}
+		return supertype.inherit(facts);
+	}
+	
+	/**
+	 * Drops the superclasses based on any of the given types, e.g. because their compilation units changed.
+	 * @param names qualified names of the changed types
+	 */
+	public synchronized void invalidate(Collection<String> names){
+		for(Iterator<Supertype> iterator = supertypes.values().iterator(); iterator.hasNext();){
+			if(!Collections.disjoint(iterator.next().names, names)){
+				iterator.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the resolved superclass of a type, computing its supertype hierarchy if the superclass isn't known yet.
+	 * @param type class with a declared superclass
+	 * @return resolved superclass, null if it can't be found or is Object
+	 * @throws JavaModelException
+	 */
+	private Supertype getSupertype(IType type) throws JavaModelException{
+		String superclassName = resolveSuperclass(type);
+		if("java.lang.Object".equals(superclassName)){
+			//written out as "extends Object", nothing to inherit
+			return null;
+		}
+		if(superclassName != null){
+			Supertype supertype = get(superclassName);
+			if(supertype != null){
+				return supertype;
+			}
+		}
+		
+		//unknown base class, resolve the whole superclass chain at once and memoize every class on it
+		ITypeHierarchy hierarchy = type.newSupertypeHierarchy(null);
+		metrics.count(GenerationMetrics.Counter.SUPERTYPE_HIERARCHIES, 1);
+		IType[] superclasses = hierarchy.getAllSuperclasses(type);
+		Supertype supertype = null;
+		for(int i = superclasses.length - 1; i >= 0; i--){
+			String name = superclasses[i].getFullyQualifiedName('.');
+			if("java.lang.Object".equals(name)){
+				continue;
+			}
+			Supertype known = get(name);
+			if(known == null){
+				known = create(superclasses[i], name, supertype);
+				put(name, known);
+			}
+			supertype = known;
+		}
+		return supertype;
+	}
+	
+	/**
+	 * Resolves the superclass of a type from the imports of its compilation unit, which is much cheaper than a hierarchy.
+	 * @param type class
+	 * @return qualified name of the superclass, null if it can't be resolved unambiguously
+	 * @throws JavaModelException
+	 */
+	private static String resolveSuperclass(IType type) throws JavaModelException{
+		String superclassName = Signature.getTypeErasure(type.getSuperclassName());
+		if(type.isBinary()){
+			return superclassName;
+		}
+		String[][] resolved = type.resolveType(superclassName);
+		if(resolved == null || resolved.length != 1){
+			return null;
+		}
+		return resolved[0][0].isEmpty() ? resolved[0][1] : resolved[0][0] + "." + resolved[0][1];
+	}
+	
+	/**
+	 * Reads a superclass and combines its business methods with the ones it inherits.
+	 * @param type superclass
+	 * @param name qualified name of the superclass
+	 * @param parent resolved superclass of the superclass, null if it extends Object
+	 * @return resolved superclass
+	 * @throws JavaModelException
+	 */
+	private Supertype create(IType type, String name, Supertype parent) throws JavaModelException{
+		List<BeanFacts.MethodFacts> methods = new ArrayList<>();
+		for(IMethod method : type.getMethods()){
+			int flags = method.getFlags();
+			//business methods are public instance methods
+			if(method.isConstructor() || !Flags.isPublic(flags) || Flags.isStatic(flags) || Flags.isSynthetic(flags) || Flags.isBridge(flags)){
+				continue;
+			}
+			methods.add(BeanFacts.MethodFacts.of(method, constants));
+		}
+		return Supertype.of(name, AnnotationSnapshot.of(type, constants), methods, parent);
+	}
+	
+	/**
+	 * Finds a type of a compilation unit by its qualified name.
+	 * @param unit compilation unit
+	 * @param qualifiedName qualified name of the type, with dots separating nested types
+	 * @return type, null if the unit doesn't declare it
+	 */
+	private static IType findType(ICompilationUnit unit, String qualifiedName){
+		if(unit == null || qualifiedName == null){
+			return null;
+		}
+		String packageName = unit.getParent().getElementName();
+		String typeName = packageName.isEmpty() ? qualifiedName : qualifiedName.substring(packageName.length() + 1);
+		String[] names = typeName.split("\\.");
+		IType type = unit.getType(names[0]);
+		for(int i = 1; i < names.length; i++){
+			type = type.getType(names[i]);
+		}
+		return type.exists() ? type : null;
+	}
+	
+	private synchronized Supertype get(String name){
+		return supertypes.get(name);
+	}
+	
+	private synchronized void put(String name, Supertype supertype){
+		supertypes.put(name, supertype);
+	}
+}
@@ -0,0 +1,222 @@
+package ejb.securitymodel.generation;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.IJavaProject;
+
+/**
+ * Writes synthetic EJB projects of configurable size and annotation density, used to measure the model generation.
+ * The same settings and seed always produce the same sources.
+ * <p>
+ * The bean types rotate through stateless, stateful, singleton and message-driven beans. Units not declaring a bean
+ * are plain classes with the same number of methods, so discovery has to tell them apart.
+ *
+ */
+public class SyntheticProjectGenerator {
+	
+	private static final String PACKAGE_PREFIX = "synthetic.p";
+	private static final int UNITS_PER_PACKAGE = 100;
+	private static final String[] BEAN_ANNOTATIONS = { "Stateless", "Stateful", "Singleton", "MessageDriven" };
+	
+	private int units = 1000;
+	private double beanRatio = 0.5;
+	private int methods = 10;
+	private int roles = 50;
+	private double rolesAllowedDensity = 0.5;
+	private double runAsDensity = 0.1;
+	private double asyncDensity = 0.1;
+	private long seed = 42;
+	
+	/**
+	 * @param units number of compilation units, 1000 by default
+	 */
+	public void setUnits(int units){
+		this.units = units;
+	}
+	
+	/**
+	 * @param beanRatio share of the units declaring a Java Bean, 0.5 by default
+	 */
+	public void setBeanRatio(double beanRatio){
+		this.beanRatio = beanRatio;
+	}
+	
+	/**
+	 * @param methods number of methods per unit, 10 by default
+	 */
+	public void setMethods(int methods){
+		this.methods = methods;
+	}
+	
+	/**
+	 * @return number of methods per unit
+	 */
+	public int getMethods(){
+		return methods;
+	}
+	
+	/**
+	 * @param roles number of distinct roles, 50 by default
+	 */
+	public void setRoles(int roles){
+		this.roles = Math.max(1, roles);
+	}
+	
+	/**
+	 * @return number of distinct roles
+	 */
+	public int getRoles(){
+		return roles;
+	}
+	
+	/**
+	 * @param rolesAllowedDensity share of the bean methods annotated with <code>@RolesAllowed</code>, 0.5 by default
+	 */
+	public void setRolesAllowedDensity(double rolesAllowedDensity){
+		this.rolesAllowedDensity = rolesAllowedDensity;
+	}
+	
+	/**
+	 * @param runAsDensity share of the beans annotated with <code>@RunAs</code>, 0.1 by default
+	 */
+	public void setRunAsDensity(double runAsDensity){
+		this.runAsDensity = runAsDensity;
+	}
+	
+	/**
+	 * @param asyncDensity share of the session beans and their methods annotated with <code>@Asynchronous</code>, 0.1 by default
+	 */
+	public void setAsyncDensity(double asyncDensity){
+		this.asyncDensity = asyncDensity;
+	}
+	
+	/**
+	 * @param seed seed of the random annotation placement, 42 by default
+	 */
+	public void setSeed(long seed){
+		this.seed = seed;
+	}
+	
+	/**
+	 * @return project name identifying the current settings, so a generated project can be reused
+	 */
+	public String getProjectName(){
+		String settings = units + "," + beanRatio + "," + methods + "," + roles + "," + rolesAllowedDensity + ","
+				+ runAsDensity + "," + asyncDensity + "," + seed;
+		return "synthetic-" + units + "-" + Integer.toHexString(settings.hashCode());
+	}
+	
+	/**
+	 * Writes the project to a directory named after the settings and opens it in the workspace, reusing a previously written one.
+	 * @param parentDir directory to create the project directory in
+	 * @return opened Java project
+	 * @throws IOException if the sources can't be written
+	 * @throws CoreException if the project can't be imported
+	 */
+	public IJavaProject createProject(File parentDir) throws IOException, CoreException{
+		File projectDir = new File(parentDir, getProjectName());
+		File projectFile = new File(projectDir, ".project");
+		if(!projectFile.isFile()){
+			writeSources(new File(projectDir, "src"));
+			write(new File(projectDir, ".classpath"), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<classpath>\n"
+					+ "\t<classpathentry kind=\"src\" path=\"src\"/>\n"
+					+ "\t<classpathentry kind=\"con\" path=\"org.eclipse.jdt.launching.JRE_CONTAINER\"/>\n"
+					+ "\t<classpathentry kind=\"output\" path=\"bin\"/>\n</classpath>\n");
+			//written last, an interrupted run leaves no project behind that looks complete
+			write(projectFile, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<projectDescription>\n"
+					+ "\t<name>" + getProjectName() + "</name>\n\t<comment></comment>\n\t<projects></projects>\n"
+					+ "\t<buildSpec></buildSpec>\n"
+					+ "\t<natures>\n\t\t<nature>org.eclipse.jdt.core.javanature</nature>\n\t</natures>\n</projectDescription>\n");
+		}
+		return HeadlessGenerator.openProject(projectDir.getAbsolutePath());
+	}
+	
+	/**
+	 * Writes the synthetic sources.
+	 * @param sourceDir source folder to write the packages to
+	 * @throws IOException if a file can't be written
+	 */
+	public void writeSources(File sourceDir) throws IOException{
+		Random random = new Random(seed);
+		int beanCount = 0;
+		for(int unit = 0; unit < units; unit++){
+			File packageDir = new File(sourceDir, (PACKAGE_PREFIX + unit / UNITS_PER_PACKAGE).replace('.', File.separatorChar));
+			if(unit % UNITS_PER_PACKAGE == 0 && !packageDir.isDirectory() && !packageDir.mkdirs()){
+				throw new IOException("Could not create " + packageDir);
+			}
+			//spread the beans evenly over the units
+			boolean bean = (int)((unit + 1) * beanRatio) > beanCount;
+			String className = (bean ? "Bean" : "Helper") + unit;
+			try(Writer out = new BufferedWriter(Files.newBufferedWriter(new File(packageDir, className + ".java").toPath(), StandardCharsets.UTF_8))){
+				out.write("package " + PACKAGE_PREFIX + unit / UNITS_PER_PACKAGE + ";\n\n");
+				if(bean){
+					writeBean(out, className, BEAN_ANNOTATIONS[beanCount % BEAN_ANNOTATIONS.length], random);
+					beanCount++;
+				}
+				else{
+					writeHelper(out, className);
+				}
+			}
+		}
+	}
+	
+	private void writeBean(Writer out, String className, String beanAnnotation, Random random) throws IOException{
+		boolean sessionBean = !"MessageDriven".equals(beanAnnotation);
+		out.write("import javax.annotation.security.*;\nimport javax.ejb.*;\n\n");
+		out.write("@" + beanAnnotation + "\n");
+		out.write("@DeclareRoles({ " + role(random) + ", " + role(random) + " })\n");
+		if(random.nextDouble() < runAsDensity){
+			out.write("@RunAs(" + role(random) + ")\n");
+		}
+		boolean asyncBean = sessionBean && random.nextDouble() < asyncDensity;
+		if(asyncBean){
+			out.write("@Asynchronous\n");
+		}
+		out.write("public class " + className + " {\n");
+		for(int method = 0; method < methods; method++){
+			out.write("\n");
+			double security = random.nextDouble();
+			if(security < rolesAllowedDensity){
+				out.write("\t@RolesAllowed({ " + role(random) + ", " + role(random) + " })\n");
+			}
+			else if(security < rolesAllowedDensity + (1 - rolesAllowedDensity) / 2){
+				out.write("\t@PermitAll\n");
+			}
+			else if(security < rolesAllowedDensity + (1 - rolesAllowedDensity) * 3 / 4){
+				out.write("\t@DenyAll\n");
+			}
+			if(sessionBean && !asyncBean && random.nextDouble() < asyncDensity){
+				out.write("\t@Asynchronous\n");
+			}
+			out.write("\tpublic void operation" + method + "(int value) {\n\t\tSystem.out.println(value);\n\t}\n");
+		}
+		out.write("}\n");
+	}
+	
+	private void writeHelper(Writer out, String className) throws IOException{
+		out.write("public class " + className + " {\n");
+		for(int method = 0; method < methods; method++){
+			out.write("\n\t@Deprecated\n\tpublic int compute" + method + "(int value) {\n\t\treturn value * " + method + ";\n\t}\n");
+		}
+		out.write("}\n");
+	}
+	
+	private String role(Random random){
+		return "\"role" + random.nextInt(roles) + "\"";
+	}
+	
+	private static void write(File file, String content) throws IOException{
+		File dir = file.getParentFile();
+		if(!dir.isDirectory() && !dir.mkdirs()){
+			throw new IOException("Could not create " + dir);
+		}
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+}